@@ -392,6 +392,18 @@ const App = () => {
       },
       [userId]
     ),
+    onRemoteUserLeft: useCallback((fileId: string, leftUserId: string) => {
+      setRemoteUsers((prevRemoteUsers) => {
+        const usersForDoc = prevRemoteUsers[fileId];
+        if (!usersForDoc || !usersForDoc.some((u) => u.id === leftUserId)) {
+          return prevRemoteUsers;
+        }
+        return {
+          ...prevRemoteUsers,
+          [fileId]: usersForDoc.filter((u) => u.id !== leftUserId),
+        };
+      });
+    }, []),
     onConnectionStatusChange: useCallback(() => {}, []),
     onError: useCallback(
       (error: Error | string) => {
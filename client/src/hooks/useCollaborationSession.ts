@@ -45,6 +45,18 @@ interface RawParticipantData {
   selection?: { ranges?: { anchor: number; head: number }[] } | null;
 }
 
+// Maps a participant as sent by the server (state or presence event) to a RemoteUser
+const toRemoteUser = (p: RawParticipantData): RemoteUser | null => {
+  if (!p || typeof p.id !== "string") return null;
+  return {
+    id: p.id,
+    name: p.name || `User ${p.id.substring(0, 4)}`,
+    color: p.color || "#CCCCCC",
+    cursorPosition: p.cursorPosition || null,
+    selection: p.selection ? OTSelection.fromJSON(p.selection) : null,
+  };
+};
+
 export const useCollaborationSession = ({
   sessionId,
   userId,
@@ -55,6 +67,7 @@ export const useCollaborationSession = ({
   onStateReceived,
   onOperationReceived,
   onRemoteUsersUpdate,
+  onRemoteUserLeft,
   onConnectionStatusChange,
   onError,
   onChatMessageReceived,
@@ -343,23 +356,15 @@ export const useCollaborationSession = ({
               );
               return;
             }
+            if (state.sessionId && state.sessionId !== sessionId) {
+              return;
+            }
 
             // Process participants for this document
             let processedParticipants: RemoteUser[] = [];
             if (state.participants && Array.isArray(state.participants)) {
               processedParticipants = state.participants
-                .map((p: RawParticipantData): RemoteUser | null => {
-                  if (!p || typeof p.id !== "string") return null;
-                  return {
-                    id: p.id,
-                    name: p.name || `User ${p.id.substring(0, 4)}`,
-                    color: p.color || "#CCCCCC",
-                    cursorPosition: p.cursorPosition || null,
-                    selection: p.selection
-                      ? OTSelection.fromJSON(p.selection)
-                      : null,
-                  };
-                })
+                .map(toRemoteUser)
                 .filter(
                   (user: RemoteUser | null): user is RemoteUser =>
                     user !== null && user.id !== userId
@@ -444,11 +449,46 @@ export const useCollaborationSession = ({
           }
         };
 
-        // Subscribe to state topics for all relevant files
+        // Full document state is only sent to this connection (after join or
+        // get-document-state); other participants' joins/leaves arrive as presence events.
+        newSubscriptions.push(
+          stompClient.subscribe("/user/queue/state", handleIncomingState)
+        );
+
+        const handleIncomingPresence = (message: Stomp.Frame) => {
+          try {
+            const event = JSON.parse(message.body);
+            if (!event || !event.documentId || !event.userId) {
+              console.error(
+                "[Presence Handler] Invalid presence event:",
+                message.body
+              );
+              return;
+            }
+            if (event.userId === userId) {
+              return;
+            }
+            if (event.type === "LEFT") {
+              onRemoteUserLeft?.(event.documentId, event.userId);
+              return;
+            }
+            const remoteUser = toRemoteUser(event.user);
+            if (remoteUser) {
+              onRemoteUsersUpdate(event.documentId, [remoteUser]);
+            }
+          } catch (error) {
+            console.error(
+              "[Presence Handler] Error processing presence event:",
+              error
+            );
+          }
+        };
+
+        // Subscribe to presence topics for all relevant files
         filesToSubscribeState.forEach((fileId) => {
-          const stateTopic = `/topic/sessions/${sessionId}/state/document/${fileId}`;
+          const presenceTopic = `/topic/sessions/${sessionId}/presence/document/${fileId}`;
           newSubscriptions.push(
-            stompClient.subscribe(stateTopic, handleIncomingState)
+            stompClient.subscribe(presenceTopic, handleIncomingPresence)
           );
         });
 
@@ -732,180 +772,234 @@ export const useCollaborationSession = ({
 
         // Selections Handling (Only for Active File) - Re-enable this handler
         const selectionTopic = `/topic/sessions/${sessionId}/selections/document/${currentFileId}`;
-        newSubscriptions.push(
-          stompClient.subscribe(selectionTopic, (message: Stomp.Frame) => {
-            console.log("[Selection Handler] Received message:", message.body);
-            try {
-              const payload = JSON.parse(message.body) as CursorMessage;
-              console.log("[Selection Handler] Parsed payload:", payload);
-              if (
-                !payload ||
-                !payload.userInfo ||
-                !payload.userInfo.id ||
-                !payload.documentId
-              ) {
+        // Applies one remote user's cursor/selection to the editor state
+        const handleRemoteCursor = (payload: CursorMessage) => {
+          try {
+            console.log("[Selection Handler] Parsed payload:", payload);
+            if (
+              !payload ||
+              !payload.userInfo ||
+              !payload.userInfo.id ||
+              !payload.documentId
+            ) {
+              console.error(
+                "[Selection Handler] Invalid payload structure:",
+                payload
+              );
+              return;
+            }
+            const { documentId, userInfo: remoteUserInfo } = payload;
+
+            // Ignore messages from self
+            if (remoteUserInfo.id === userId) {
+              // console.log("[Selection Handler] Ignoring self message.");
+              return;
+            }
+            // Ignore messages for other documents
+            if (documentId !== currentFileIdRef.current) {
+              console.log(
+                `[Selection Handler] Ignoring message for other document: ${documentId} (current: ${currentFileIdRef.current})`
+              );
+              return;
+            }
+
+            // Parse the incoming selection
+            let incomingSelection: OTSelection | null = null;
+            if (remoteUserInfo.selection) {
+              try {
+                console.log(
+                  "[Selection Handler] Attempting to parse selection from JSON:",
+                  remoteUserInfo.selection
+                );
+                incomingSelection = OTSelection.fromJSON(
+                  remoteUserInfo.selection
+                );
+                console.log(
+                  "[Selection Handler] Successfully parsed selection:",
+                  incomingSelection
+                );
+              } catch (e) {
                 console.error(
-                  "[Selection Handler] Invalid payload structure:",
-                  payload
+                  "[Selection Handler] Error parsing OTSelection.fromJSON:",
+                  e,
+                  "Selection Data:",
+                  remoteUserInfo.selection
                 );
-                return;
+                // Don't stop processing, just log error
               }
-              const { documentId, userInfo: remoteUserInfo } = payload;
+            } else {
+              console.log(
+                "[Selection Handler] No selection data in payload."
+              );
+            }
 
-              // Ignore messages from self
-              if (remoteUserInfo.id === userId) {
-                // console.log("[Selection Handler] Ignoring self message.");
-                return;
-              }
-              // Ignore messages for other documents
-              if (documentId !== currentFileIdRef.current) {
+            // *** Crucial: Transform selection against local pending operations ***
+            let transformedSelection: OTSelection | null = incomingSelection;
+            if (clientRef.current && incomingSelection) {
+              try {
                 console.log(
-                  `[Selection Handler] Ignoring message for other document: ${documentId} (current: ${currentFileIdRef.current})`
+                  "[Selection Handler] Transforming selection against client state...",
+                  incomingSelection
                 );
-                return;
-              }
-
-              // Parse the incoming selection
-              let incomingSelection: OTSelection | null = null;
-              if (remoteUserInfo.selection) {
-                try {
-                  console.log(
-                    "[Selection Handler] Attempting to parse selection from JSON:",
-                    remoteUserInfo.selection
-                  );
-                  incomingSelection = OTSelection.fromJSON(
-                    remoteUserInfo.selection
-                  );
-                  console.log(
-                    "[Selection Handler] Successfully parsed selection:",
-                    incomingSelection
-                  );
-                } catch (e) {
-                  console.error(
-                    "[Selection Handler] Error parsing OTSelection.fromJSON:",
-                    e,
-                    "Selection Data:",
-                    remoteUserInfo.selection
-                  );
-                  // Don't stop processing, just log error
-                }
-              } else {
+                transformedSelection =
+                  clientRef.current.transformSelection(incomingSelection);
                 console.log(
-                  "[Selection Handler] No selection data in payload."
+                  "[Selection Handler] Transformed selection:",
+                  transformedSelection
                 );
+              } catch (e) {
+                console.error(
+                  "[Selection Handler] Error transforming selection:",
+                  e,
+                  "Selection:",
+                  incomingSelection
+                );
+                transformedSelection = null; // Fallback to null if transform fails
               }
+            } else if (!clientRef.current) {
+              console.warn(
+                "[Selection Handler] Cannot transform selection, clientRef is null."
+              );
+            }
+
+            // Use the explicitly sent cursor position if available, otherwise derive from transformed selection head
+            let finalCursorPosition: {
+              lineNumber: number;
+              column: number;
+            } | null = remoteUserInfo.cursorPosition ?? null; // Prefer explicitly sent cursor
+            console.log(
+              "[Selection Handler] Initial remote cursor pos:",
+              finalCursorPosition
+            );
 
-              // *** Crucial: Transform selection against local pending operations ***
-              let transformedSelection: OTSelection | null = incomingSelection;
-              if (clientRef.current && incomingSelection) {
+            if (
+              !finalCursorPosition &&
+              transformedSelection &&
+              editorInstance
+            ) {
+              console.log(
+                "[Selection Handler] Attempting to derive cursor from transformed selection head..."
+              );
+              const model = editorInstance.getModel();
+              if (model && transformedSelection.ranges.length > 0) {
                 try {
-                  console.log(
-                    "[Selection Handler] Transforming selection against client state...",
-                    incomingSelection
+                  const headPos = offsetToPosition(
+                    model,
+                    transformedSelection.ranges[0].head // Use head of *transformed* selection
                   );
-                  transformedSelection =
-                    clientRef.current.transformSelection(incomingSelection);
                   console.log(
-                    "[Selection Handler] Transformed selection:",
-                    transformedSelection
+                    "[Selection Handler] Derived head position:",
+                    headPos
                   );
-                } catch (e) {
+                  finalCursorPosition = {
+                    lineNumber: headPos.lineNumber,
+                    column: headPos.column,
+                  };
+                } catch (error) {
                   console.error(
-                    "[Selection Handler] Error transforming selection:",
-                    e,
+                    "[Selection Handler] Error deriving cursor from transformed selection:",
+                    error,
                     "Selection:",
-                    incomingSelection
+                    transformedSelection
                   );
-                  transformedSelection = null; // Fallback to null if transform fails
-                }
-              } else if (!clientRef.current) {
-                console.warn(
-                  "[Selection Handler] Cannot transform selection, clientRef is null."
-                );
-              }
-
-              // Use the explicitly sent cursor position if available, otherwise derive from transformed selection head
-              let finalCursorPosition: {
-                lineNumber: number;
-                column: number;
-              } | null = remoteUserInfo.cursorPosition ?? null; // Prefer explicitly sent cursor
-              console.log(
-                "[Selection Handler] Initial remote cursor pos:",
-                finalCursorPosition
-              );
-
-              if (
-                !finalCursorPosition &&
-                transformedSelection &&
-                editorInstance
-              ) {
-                console.log(
-                  "[Selection Handler] Attempting to derive cursor from transformed selection head..."
-                );
-                const model = editorInstance.getModel();
-                if (model && transformedSelection.ranges.length > 0) {
-                  try {
-                    const headPos = offsetToPosition(
-                      model,
-                      transformedSelection.ranges[0].head // Use head of *transformed* selection
-                    );
-                    console.log(
-                      "[Selection Handler] Derived head position:",
-                      headPos
-                    );
-                    finalCursorPosition = {
-                      lineNumber: headPos.lineNumber,
-                      column: headPos.column,
-                    };
-                  } catch (error) {
-                    console.error(
-                      "[Selection Handler] Error deriving cursor from transformed selection:",
-                      error,
-                      "Selection:",
-                      transformedSelection
-                    );
-                  }
                 }
               }
+            }
 
-              const formattedUserForApp: RemoteUser = {
-                id: remoteUserInfo.id,
-                name:
-                  remoteUserInfo.name ||
-                  `User ${remoteUserInfo.id.substring(0, 4)}`,
-                color: remoteUserInfo.color || "#CCCCCC",
-                // Use transformed selection and final cursor position
-                cursorPosition: finalCursorPosition,
-                selection: transformedSelection,
-              };
-              // Pass the single updated user info to App.tsx for state update
-              console.log(
-                "[Selection Handler] Calling onRemoteUsersUpdate with formatted user info:",
-                formattedUserForApp
-              );
-              onRemoteUsersUpdate(documentId, [formattedUserForApp]);
-              console.log("[Selection Handler] Finished processing selection.");
+            const formattedUserForApp: RemoteUser = {
+              id: remoteUserInfo.id,
+              name:
+                remoteUserInfo.name ||
+                `User ${remoteUserInfo.id.substring(0, 4)}`,
+              color: remoteUserInfo.color || "#CCCCCC",
+              // Use transformed selection and final cursor position
+              cursorPosition: finalCursorPosition,
+              selection: transformedSelection,
+            };
+            // Pass the single updated user info to App.tsx for state update
+            console.log(
+              "[Selection Handler] Calling onRemoteUsersUpdate with formatted user info:",
+              formattedUserForApp
+            );
+            onRemoteUsersUpdate(documentId, [formattedUserForApp]);
+            console.log("[Selection Handler] Finished processing selection.");
+          } catch (error) {
+            console.error(
+              "[Selection Handler] Error processing selection update:",
+              error,
+              "Payload:",
+              payload
+            );
+            handleError(`Error processing selections message: ${error}`);
+            // console.warn("[useCollaborationSession] Received message on deprecated selection topic. Ignoring.", payload);
+          }
+        };
+        newSubscriptions.push(
+          stompClient.subscribe(selectionTopic, (message: Stomp.Frame) => {
+            console.log("[Selection Handler] Received message:", message.body);
+            try {
+              const parsed = JSON.parse(message.body);
+              // The server coalesces cursor updates and sends the latest one per user in batches
+              const payloads: CursorMessage[] = Array.isArray(parsed)
+                ? parsed
+                : [parsed];
+              payloads.forEach(handleRemoteCursor);
             } catch (error) {
               console.error(
-                "[Selection Handler] Error processing overall selections message:",
+                "[Selection Handler] Error parsing selections message:",
                 error,
                 "Message Body:",
                 message.body
               );
               handleError(`Error processing selections message: ${error}`);
-              // console.warn("[useCollaborationSession] Received message on deprecated selection topic. Ignoring.", message.body);
             }
           })
         );
 
-        // ACK Handling
-        const ackTopic = `/topic/ack/${userId}`;
+        // ACK Handling: acks are addressed to this connection only and carry the
+        // revision the server assigned to our operation.
         newSubscriptions.push(
-          stompClient.subscribe(ackTopic, (message: Stomp.Frame) => {
-            if (message.body === "ack") {
-              clientRef.current?.serverAck();
-            } else {
-              // Non-ack message received on ack topic, ignore.
+          stompClient.subscribe("/user/queue/ack", (message: Stomp.Frame) => {
+            try {
+              const ack = JSON.parse(message.body);
+              if (
+                ack.sessionId === sessionId &&
+                ack.documentId === currentFileIdRef.current
+              ) {
+                clientRef.current?.serverAck();
+              }
+            } catch (error) {
+              console.error("[ACK] Error processing ack message:", error);
+            }
+          })
+        );
+
+        // Resync Handling: the server stops sending ops to a connection that falls too far
+        // behind and asks it to reload the document state instead.
+        newSubscriptions.push(
+          stompClient.subscribe("/user/queue/resync", (message: Stomp.Frame) => {
+            try {
+              const marker = JSON.parse(message.body);
+              if (marker.sessionId !== sessionId || !marker.documentId) {
+                return;
+              }
+              console.warn(
+                `[Resync] Server requested resync for ${marker.documentId} at revision ${marker.revision}`
+              );
+              if (marker.documentId === currentFileIdRef.current) {
+                // Drop the OT client so the next state message re-initializes it
+                clientRef.current = null;
+              }
+              stompClientRef.current?.send(
+                "/app/get-document-state",
+                {},
+                JSON.stringify({
+                  documentId: marker.documentId,
+                  sessionId: sessionId,
+                })
+              );
+            } catch (error) {
+              console.error("[Resync] Error processing resync message:", error);
             }
           })
         );
@@ -956,6 +1050,7 @@ export const useCollaborationSession = ({
     onStateReceived,
     onOperationReceived,
     onRemoteUsersUpdate,
+    onRemoteUserLeft,
     onChatMessageReceived,
     handleConnectionStatusChange,
     handleError,
@@ -158,6 +158,7 @@ export interface UseCollaborationSessionProps {
   ) => void;
   onOperationReceived: (fileId: string, operation: TextOperation) => void;
   onRemoteUsersUpdate: (fileId: string, users: RemoteUser[]) => void;
+  onRemoteUserLeft?: (fileId: string, userId: string) => void;
   onConnectionStatusChange?: (isConnected: boolean) => void;
   onError?: (error: Error | string) => void;
   onChatMessageReceived?: (message: ChatMessageType) => void;
@@ -1,13 +1,36 @@
 package com.codecafe.backend.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
     @Bean
     public RestTemplate restTemplate() {
         return new RestTemplate();
     }
+
+    // Runs every @Scheduled job without its own scheduler. Several of them wait on Redis, so
+    // one slow call must not hold up the others (Spring's default is a single thread).
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(@Value("${codecafe.scheduling.pool-size:4}") int poolSize) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(Math.max(1, poolSize));
+        scheduler.setThreadNamePrefix("scheduling-");
+        return scheduler;
+    }
+
+    // Dedicated thread for the cursor flush, so its rate does not depend on the other jobs
+    @Bean
+    public ThreadPoolTaskScheduler cursorFlushScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("cursor-flush-");
+        return scheduler;
+    }
 }
@@ -0,0 +1,50 @@
+package com.codecafe.backend.config;
+
+import com.codecafe.backend.dto.IncomingOperationPayload;
+import com.codecafe.backend.util.CompactOperationCodec;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+/**
+ * Reads binary STOMP bodies sent with content-type {@value #CONTENT_TYPE_VALUE}
+ * into {@link IncomingOperationPayload}, so /app/operation accepts both JSON and the compact encoding.
+ */
+public class CompactOperationMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE_VALUE = "application/vnd.codecafe.op";
+    public static final MimeType CONTENT_TYPE = MimeType.valueOf(CONTENT_TYPE_VALUE);
+
+    public CompactOperationMessageConverter() {
+        super(CONTENT_TYPE);
+        // Only claim messages that declare the compact content type; plain JSON frames
+        // often arrive without any content-type header.
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return IncomingOperationPayload.class.equals(clazz);
+    }
+
+    @Override
+    protected boolean canConvertTo(Object payload, MessageHeaders headers) {
+        // Outgoing binary frames are encoded explicitly and sent as application/octet-stream.
+        return false;
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        Object payload = message.getPayload();
+        if (!(payload instanceof byte[] bytes)) {
+            return null;
+        }
+        try {
+            return CompactOperationCodec.decodeIncoming(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException(message, "Invalid compact operation payload: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.codecafe.backend.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor wrapper that counts tasks currently running on the delegate.
+ * Used for channel executors that have no pool to inspect (e.g. virtual threads),
+ * so the number of in-flight messages can still be reported as a metric.
+ */
+class InFlightCountingExecutor implements Executor {
+
+    private final Executor delegate;
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    InFlightCountingExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(() -> {
+            activeCount.incrementAndGet();
+            try {
+                command.run();
+            } finally {
+                activeCount.decrementAndGet();
+            }
+        });
+    }
+
+    int getActiveCount() {
+        return activeCount.get();
+    }
+}
@@ -0,0 +1,25 @@
+package com.codecafe.backend.config;
+
+import com.codecafe.backend.util.SessionMessageHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * Client outbound channel interceptor that drops a broadcast copy addressed to the connection
+ * it originated from, when the broadcast was sent with {@link SessionMessageHeaders#excludingOrigin(String)}.
+ */
+public class OriginEchoChannelInterceptor implements ChannelInterceptor {
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        Object originSessionId = headers.get(SessionMessageHeaders.ORIGIN_SESSION_HEADER);
+        if (originSessionId != null && originSessionId.equals(SimpMessageHeaderAccessor.getSessionId(headers))) {
+            return null;
+        }
+        return message;
+    }
+}
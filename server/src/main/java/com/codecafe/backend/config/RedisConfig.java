@@ -17,6 +17,8 @@ import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
 import jakarta.annotation.PostConstruct;
 
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
@@ -103,15 +105,35 @@ public class RedisConfig {
         return template;
     }
 
-    // Bean for the Lua script to atomically update content and history
+    // Bean for the Lua script to atomically update content, history and revision, write a content
+    // checkpoint every ARGV[4] revisions, list the document in its session's documents set, and
+    // record the client sequence number of the operation if there is one.
+    // Returns the revision the operation produced.
     @Bean
-    public RedisScript<Boolean> updateContentAndHistoryScript() {
+    public RedisScript<Long> updateContentAndHistoryScript() {
         String luaScript = """
             local contentKey = KEYS[1]
             local historyKey = KEYS[2]
+            local revisionKey = KEYS[3]
+            local clientSeqKey = KEYS[4]
+            local checkpointKey = KEYS[5]
+            local documentsKey = KEYS[6]
             local newContent = ARGV[1]
             local operationJson = ARGV[2] -- Operation passed as JSON string
             
+            local checkpointInterval = tonumber(ARGV[4])
+            local maxCheckpoints = tonumber(ARGV[5])
+
+            -- Documents written before the revision counter existed continue from their history length
+            if redis.call('EXISTS', revisionKey) == 0 then
+                local historyLength = redis.call('LLEN', historyKey)
+                -- A brand-new document starts empty at revision 0 (content set directly writes its own checkpoint)
+                if checkpointInterval and checkpointInterval > 0 and historyLength == 0 and redis.call('EXISTS', contentKey) == 0 then
+                    redis.call('HSETNX', checkpointKey, 0, '""')
+                end
+                redis.call('SET', revisionKey, historyLength)
+            end
+
             redis.call('SET', contentKey, newContent)
             redis.call('RPUSH', historyKey, operationJson) -- Store the JSON string
             
@@ -124,11 +146,90 @@ public class RedisConfig {
                 end
             end
 
-            return true
+            -- The history only keeps the newest ops; the counter keeps counting
+            local revision = redis.call('INCR', revisionKey)
+
+            -- Checkpoint the content every N revisions and keep only the newest maxCheckpoints
+            if checkpointInterval and checkpointInterval > 0 and revision % checkpointInterval == 0 then
+                redis.call('HSET', checkpointKey, revision, newContent)
+                if maxCheckpoints and maxCheckpoints > 0 then
+                    redis.call('HDEL', checkpointKey, revision - checkpointInterval * maxCheckpoints)
+                end
+            end
+
+            -- Members are stored JSON-encoded, like values written through the template
+            redis.call('SADD', documentsKey, ARGV[6])
+
+            -- Remember the newest sequence number per client and the revision it produced, so a
+            -- retried op can be recognized. Arguments arrive JSON-encoded; the client id is a JSON string.
+            if ARGV[7] and ARGV[8] then
+                local clientId = cjson.decode(ARGV[7])
+                redis.call('HSET', clientSeqKey, clientId, ARGV[8], clientId .. ':revision', revision)
+            end
+            return revision
+        """;
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(luaScript);
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    // Bean for the Lua script that moves the oldest raw history entries into the compacted history
+    // as composed spans. Returns 0 without changes if the raw history was trimmed since it was read.
+    @Bean
+    public RedisScript<Long> compactHistoryScript() {
+        String luaScript = """
+            local historyKey = KEYS[1]
+            local compactedKey = KEYS[2]
+            local revisionKey = KEYS[3]
+            local expectedBase = tonumber(ARGV[1])
+            local count = tonumber(ARGV[2])
+            local maxSpans = tonumber(ARGV[3])
+
+            -- Appends keep the revision of the first raw entry; only a trim moves it
+            local revision = tonumber(redis.call('GET', revisionKey))
+            if not revision or revision - redis.call('LLEN', historyKey) ~= expectedBase then
+                return 0
+            end
+
+            -- Spans must continue where the compacted history ends; drop it if there is a gap.
+            -- Entries are stored JSON-encoded by the template, so each one decodes twice.
+            local last = redis.call('LINDEX', compactedKey, -1)
+            if last and cjson.decode(cjson.decode(last)).r ~= expectedBase then
+                redis.call('DEL', compactedKey)
+            end
+
+            for i = 4, #ARGV do
+                redis.call('RPUSH', compactedKey, ARGV[i])
+            end
+            redis.call('LTRIM', historyKey, count, -1)
+            if maxSpans and maxSpans > 0 then
+                redis.call('LTRIM', compactedKey, -maxSpans, -1)
+            end
+            return count
+        """;
+        DefaultRedisScript<Long> redisScript = new DefaultRedisScript<>();
+        redisScript.setScriptText(luaScript);
+        redisScript.setResultType(Long.class);
+        return redisScript;
+    }
+
+    // Bean for the Lua script behind /app/join: writes the user's presence fields, refreshes
+    // their TTL and reads all participants in one round trip. Document content is not read
+    // here; joins share the single-flight snapshot read of OtService.
+    @Bean
+    @SuppressWarnings("rawtypes")
+    public RedisScript<List> joinDocumentScript() {
+        String luaScript = """
+            local presenceKey = KEYS[1]
+
+            redis.call('HSET', presenceKey, ARGV[1], ARGV[2], ARGV[3], ARGV[4])
+            redis.call('EXPIRE', presenceKey, tonumber(ARGV[5]))
+            return redis.call('HGETALL', presenceKey)
         """;
-        DefaultRedisScript<Boolean> redisScript = new DefaultRedisScript<>();
+        DefaultRedisScript<List> redisScript = new DefaultRedisScript<>();
         redisScript.setScriptText(luaScript);
-        redisScript.setResultType(Boolean.class);
+        redisScript.setResultType(List.class);
         return redisScript;
     }
-}
\ No newline at end of file
+}
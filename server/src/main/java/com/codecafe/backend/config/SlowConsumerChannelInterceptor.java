@@ -0,0 +1,47 @@
+package com.codecafe.backend.config;
+
+import com.codecafe.backend.service.SlowConsumerService;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+
+/**
+ * Client outbound channel interceptor that counts frames queued per connection and drops
+ * operation broadcasts for connections flagged by {@link SlowConsumerService}. Frames it let
+ * through that end up not being sent or fail while being handled are released again.
+ */
+public class SlowConsumerChannelInterceptor implements ExecutorChannelInterceptor {
+
+    private final SlowConsumerService slowConsumerService;
+
+    public SlowConsumerChannelInterceptor(SlowConsumerService slowConsumerService) {
+        this.slowConsumerService = slowConsumerService;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        String simpSessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        return slowConsumerService.beforeSend(simpSessionId, destination) ? message : null;
+    }
+
+    // Only called if preSend above let the frame through
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        if (!sent || ex != null) {
+            slowConsumerService.frameNotSent(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        }
+    }
+
+    // The handler failed before writing the frame (a failed write is released by the session decorator)
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+        if (ex != null) {
+            slowConsumerService.frameNotSent(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.codecafe.backend.config;
+
+import com.codecafe.backend.service.SlowConsumerService;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+
+/**
+ * Wraps each WebSocket session so {@link SlowConsumerService} learns when a frame has
+ * actually been written to the socket. Spring's own buffering decorator is applied on top
+ * of this one, so a write here means the frame left the per-session send buffer.
+ */
+public class SlowConsumerWebSocketHandlerDecoratorFactory implements WebSocketHandlerDecoratorFactory {
+
+    private final SlowConsumerService slowConsumerService;
+
+    public SlowConsumerWebSocketHandlerDecoratorFactory(SlowConsumerService slowConsumerService) {
+        this.slowConsumerService = slowConsumerService;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                slowConsumerService.connectionOpened(session.getId());
+                super.afterConnectionEstablished(new WebSocketSessionDecorator(session) {
+                    @Override
+                    public void sendMessage(WebSocketMessage<?> message) throws IOException {
+                        try {
+                            super.sendMessage(message);
+                        } finally {
+                            // A failed write does not stay pending either
+                            slowConsumerService.frameWritten(getId());
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                try {
+                    super.afterConnectionClosed(session, closeStatus);
+                } finally {
+                    slowConsumerService.connectionClosed(session.getId());
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,72 @@
+package com.codecafe.backend.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Publishes queue depth and thread usage of the STOMP client channels to Micrometer,
+ * visible under /actuator/metrics (e.g. codecafe.websocket.channel.queue.size?tag=channel:outbound).
+ */
+@Component
+public class WebSocketChannelMetrics implements MeterBinder {
+
+    private static final String METRIC_PREFIX = "codecafe.websocket.channel.";
+
+    private final Executor inboundExecutor;
+    private final Executor outboundExecutor;
+
+    public WebSocketChannelMetrics(@Qualifier("clientInboundChannelExecutor") Executor inboundExecutor,
+                                   @Qualifier("clientOutboundChannelExecutor") Executor outboundExecutor) {
+        this.inboundExecutor = inboundExecutor;
+        this.outboundExecutor = outboundExecutor;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindExecutor(registry, "inbound", inboundExecutor);
+        bindExecutor(registry, "outbound", outboundExecutor);
+    }
+
+    private void bindExecutor(MeterRegistry registry, String channel, Executor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor poolExecutor) {
+            Gauge.builder(METRIC_PREFIX + "queue.size", poolExecutor, e -> queueSize(e.getThreadPoolExecutor()))
+                    .description("Messages waiting in the client channel executor queue")
+                    .tag("channel", channel)
+                    .register(registry);
+            Gauge.builder(METRIC_PREFIX + "active.threads", poolExecutor, ThreadPoolTaskExecutor::getActiveCount)
+                    .description("Threads currently processing client channel messages")
+                    .tag("channel", channel)
+                    .register(registry);
+            Gauge.builder(METRIC_PREFIX + "pool.size", poolExecutor, ThreadPoolTaskExecutor::getPoolSize)
+                    .description("Current number of threads in the client channel pool")
+                    .tag("channel", channel)
+                    .register(registry);
+        } else if (executor instanceof InFlightCountingExecutor countingExecutor) {
+            // Virtual threads have no queue: every message gets its own thread right away.
+            Gauge.builder(METRIC_PREFIX + "queue.size", () -> 0)
+                    .description("Messages waiting in the client channel executor queue")
+                    .tag("channel", channel)
+                    .register(registry);
+            Gauge.builder(METRIC_PREFIX + "active.threads", countingExecutor, InFlightCountingExecutor::getActiveCount)
+                    .description("Threads currently processing client channel messages")
+                    .tag("channel", channel)
+                    .register(registry);
+        }
+    }
+
+    private static int queueSize(ThreadPoolExecutor executor) {
+        try {
+            return executor.getQueue().size();
+        } catch (IllegalStateException e) {
+            // Executor not initialized yet
+            return 0;
+        }
+    }
+}
@@ -1,19 +1,94 @@
 package com.codecafe.backend.config;
 
+import com.codecafe.backend.service.SlowConsumerService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.config.TaskExecutorRegistration;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    static final String EXECUTOR_MODE_POOL = "pool";
+    static final String EXECUTOR_MODE_VIRTUAL = "virtual";
+
+    private final SlowConsumerService slowConsumerService;
+
+    // Plain WebSocket endpoint (no SockJS) for clients that speak STOMP directly and can use binary frames
+    @Value("${codecafe.websocket.native-endpoint.enabled:true}")
+    private boolean nativeEndpointEnabled;
+
+    @Value("${codecafe.websocket.native-endpoint.path:/ws-native}")
+    private String nativeEndpointPath;
+
+    // Channel executor settings. A value <= 0 keeps the Spring default for that setting.
+    @Value("${codecafe.websocket.inbound.executor-mode:pool}")
+    private String inboundExecutorMode;
+
+    @Value("${codecafe.websocket.inbound.core-pool-size:-1}")
+    private int inboundCorePoolSize;
+
+    @Value("${codecafe.websocket.inbound.max-pool-size:-1}")
+    private int inboundMaxPoolSize;
+
+    @Value("${codecafe.websocket.inbound.queue-capacity:-1}")
+    private int inboundQueueCapacity;
+
+    @Value("${codecafe.websocket.inbound.keep-alive-seconds:-1}")
+    private int inboundKeepAliveSeconds;
+
+    @Value("${codecafe.websocket.outbound.executor-mode:pool}")
+    private String outboundExecutorMode;
+
+    @Value("${codecafe.websocket.outbound.core-pool-size:-1}")
+    private int outboundCorePoolSize;
+
+    @Value("${codecafe.websocket.outbound.max-pool-size:-1}")
+    private int outboundMaxPoolSize;
+
+    @Value("${codecafe.websocket.outbound.queue-capacity:-1}")
+    private int outboundQueueCapacity;
+
+    @Value("${codecafe.websocket.outbound.keep-alive-seconds:-1}")
+    private int outboundKeepAliveSeconds;
+
+    // Transport limits, applied per WebSocket session. A value <= 0 keeps the Spring default.
+    @Value("${codecafe.websocket.transport.send-buffer-size-limit-bytes:-1}")
+    private int sendBufferSizeLimit;
+
+    @Value("${codecafe.websocket.transport.send-time-limit-ms:-1}")
+    private int sendTimeLimit;
+
+    @Value("${codecafe.websocket.transport.message-size-limit-bytes:-1}")
+    private int messageSizeLimit;
+
+    @Value("${codecafe.websocket.transport.time-to-first-message-ms:-1}")
+    private int timeToFirstMessage;
+
+    public WebSocketConfig(SlowConsumerService slowConsumerService) {
+        this.slowConsumerService = slowConsumerService;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        // /queue carries messages for a single connection, addressed via /user/queue/...
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        config.setUserDestinationPrefix("/user");
     }
 
     @Override
@@ -21,5 +96,92 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
+
+        if (nativeEndpointEnabled) {
+            registry.addEndpoint(nativeEndpointPath)
+                    .setAllowedOriginPatterns("*");
+            log.info("Registered native STOMP WebSocket endpoint at {}", nativeEndpointPath);
+        }
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new CompactOperationMessageConverter());
+        return true; // keep the default converters (JSON, String, byte[])
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        configureChannelExecutor(registration, "inbound", inboundExecutorMode,
+                inboundCorePoolSize, inboundMaxPoolSize, inboundQueueCapacity, inboundKeepAliveSeconds);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Echo filtering first, so suppressed copies never count towards a connection's backlog
+        registration.interceptors(new OriginEchoChannelInterceptor(), new SlowConsumerChannelInterceptor(slowConsumerService));
+        configureChannelExecutor(registration, "outbound", outboundExecutorMode,
+                outboundCorePoolSize, outboundMaxPoolSize, outboundQueueCapacity, outboundKeepAliveSeconds);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.addDecoratorFactory(new SlowConsumerWebSocketHandlerDecoratorFactory(slowConsumerService));
+        if (sendBufferSizeLimit > 0) {
+            registration.setSendBufferSizeLimit(sendBufferSizeLimit);
+        }
+        if (sendTimeLimit > 0) {
+            registration.setSendTimeLimit(sendTimeLimit);
+        }
+        if (messageSizeLimit > 0) {
+            registration.setMessageSizeLimit(messageSizeLimit);
+        }
+        if (timeToFirstMessage > 0) {
+            registration.setTimeToFirstMessage(timeToFirstMessage);
+        }
+        log.info("WebSocket transport limits: sendBufferSizeLimit={}, sendTimeLimit={}ms, messageSizeLimit={}, timeToFirstMessage={}ms (<= 0 means Spring default)",
+                sendBufferSizeLimit, sendTimeLimit, messageSizeLimit, timeToFirstMessage);
+    }
+
+    /**
+     * Applies the executor settings for one client channel. In "virtual" mode every message
+     * is dispatched on its own virtual thread; this needs a Java 21+ runtime, otherwise the
+     * channel falls back to the thread pool settings.
+     */
+    private void configureChannelExecutor(ChannelRegistration registration, String channelName, String mode,
+                                          int corePoolSize, int maxPoolSize, int queueCapacity, int keepAliveSeconds) {
+        if (EXECUTOR_MODE_VIRTUAL.equalsIgnoreCase(mode)) {
+            try {
+                VirtualThreadTaskExecutor virtualExecutor = new VirtualThreadTaskExecutor("ws-" + channelName + "-");
+                registration.executor(new InFlightCountingExecutor(virtualExecutor));
+                log.info("Client {} channel uses virtual threads", channelName);
+                return;
+            } catch (UnsupportedOperationException e) {
+                log.warn("Virtual threads requested for client {} channel but not supported by this JVM ({}). Falling back to thread pool.",
+                        channelName, e.getMessage());
+            }
+        } else if (!EXECUTOR_MODE_POOL.equalsIgnoreCase(mode)) {
+            log.warn("Unknown executor mode '{}' for client {} channel. Using thread pool.", mode, channelName);
+        }
+
+        if (corePoolSize <= 0 && maxPoolSize <= 0 && queueCapacity <= 0 && keepAliveSeconds <= 0) {
+            log.info("Client {} channel uses the default Spring thread pool", channelName);
+            return;
+        }
+        TaskExecutorRegistration taskExecutor = registration.taskExecutor();
+        if (corePoolSize > 0) {
+            taskExecutor.corePoolSize(corePoolSize);
+        }
+        if (maxPoolSize > 0) {
+            taskExecutor.maxPoolSize(maxPoolSize);
+        }
+        if (queueCapacity > 0) {
+            taskExecutor.queueCapacity(queueCapacity);
+        }
+        if (keepAliveSeconds > 0) {
+            taskExecutor.keepAliveSeconds(keepAliveSeconds);
+        }
+        log.info("Client {} channel thread pool: corePoolSize={}, maxPoolSize={}, queueCapacity={}, keepAliveSeconds={} (<= 0 means Spring default)",
+                channelName, corePoolSize, maxPoolSize, queueCapacity, keepAliveSeconds);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.codecafe.backend.controller;
+
+import com.codecafe.backend.dto.DocumentPlayback;
+import com.codecafe.backend.dto.DocumentRevision;
+import com.codecafe.backend.service.DocumentHistoryService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only access to past revisions of a document, for session replay. Documents are passed
+ * as a query parameter since their ids may contain slashes.
+ */
+@RestController
+@RequestMapping("/api/sessions/{sessionId}/history")
+public class DocumentHistoryController {
+
+    private final DocumentHistoryService documentHistoryService;
+    private static final Logger logger = Logger.getLogger(DocumentHistoryController.class.getName());
+
+    public DocumentHistoryController(DocumentHistoryService documentHistoryService) {
+        this.documentHistoryService = documentHistoryService;
+    }
+
+    /**
+     * The document as of a revision. 404 if the revision can no longer be rebuilt.
+     */
+    @GetMapping("/revision")
+    public ResponseEntity<DocumentRevision> getRevision(@PathVariable String sessionId,
+                                                        @RequestParam String documentId,
+                                                        @RequestParam int revision) {
+        try {
+            DocumentRevision result = documentHistoryService.getDocumentAtRevision(sessionId, documentId, revision);
+            return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            logger.warning(String.format("Invalid revision request for doc [%s] in session [%s]: %s", documentId, sessionId, e.getMessage()));
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("Error rebuilding revision %d of doc [%s] in session [%s]", revision, documentId, sessionId), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * The content at "from" and the steps to "to". With compose=true the steps are composed
+     * into one (a diff of the range). 404 if the range can no longer be rebuilt.
+     */
+    @GetMapping("/playback")
+    public ResponseEntity<DocumentPlayback> getPlayback(@PathVariable String sessionId,
+                                                        @RequestParam String documentId,
+                                                        @RequestParam int from,
+                                                        @RequestParam int to,
+                                                        @RequestParam(defaultValue = "false") boolean compose) {
+        try {
+            DocumentPlayback result = documentHistoryService.getPlayback(sessionId, documentId, from, to, compose);
+            return result != null ? ResponseEntity.ok(result) : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            logger.warning(String.format("Invalid playback request for doc [%s] in session [%s]: %s", documentId, sessionId, e.getMessage()));
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("Error building playback %d-%d of doc [%s] in session [%s]", from, to, documentId, sessionId), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
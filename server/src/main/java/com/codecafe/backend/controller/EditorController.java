@@ -5,15 +5,19 @@ import com.codecafe.backend.dto.UserInfoDTO;
 import com.codecafe.backend.dto.CursorMessage;
 import com.codecafe.backend.dto.Position;
 import com.codecafe.backend.dto.DocumentState;
+import com.codecafe.backend.dto.PresenceEvent;
+import com.codecafe.backend.service.ConnectionRegistry;
+import com.codecafe.backend.service.CursorCoalescingService;
+import com.codecafe.backend.service.JoinService;
+import com.codecafe.backend.service.PresenceBroadcastService;
 import com.codecafe.backend.service.SessionRegistryService;
-import com.codecafe.backend.service.OtService;
+import com.codecafe.backend.service.SpectatorService;
 import com.codecafe.backend.dto.JoinPayload;
 import com.codecafe.backend.dto.SelectionInfo;
+import com.codecafe.backend.util.SessionMessageHeaders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.SetOperations;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
@@ -21,9 +25,7 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
 
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 @Controller
 public class EditorController {
@@ -33,30 +35,29 @@ public class EditorController {
     // Inject the messaging template and session registry
     private final SimpMessagingTemplate messagingTemplate;
     private final SessionRegistryService sessionRegistryService;
-    private final OtService otService;
-    private final StringRedisTemplate stringRedisTemplate;
-    private final SetOperations<String, String> setOperations;
-
-    private static final String USER_ACTIVE_DOCS_KEY_PREFIX = "user:active_docs:";
-    private static final long USER_TRACKING_EXPIRY_HOURS = 24; // Expire user tracking info after a day of inactivity
+    private final CursorCoalescingService cursorCoalescingService;
+    private final PresenceBroadcastService presenceBroadcastService;
+    private final JoinService joinService;
+    private final ConnectionRegistry connectionRegistry;
+    private final SpectatorService spectatorService;
 
     @Autowired
-    public EditorController(SimpMessagingTemplate messagingTemplate, SessionRegistryService sessionRegistryService, OtService otService, StringRedisTemplate stringRedisTemplate) {
+    public EditorController(SimpMessagingTemplate messagingTemplate, SessionRegistryService sessionRegistryService,
+                            CursorCoalescingService cursorCoalescingService, PresenceBroadcastService presenceBroadcastService,
+                            JoinService joinService, ConnectionRegistry connectionRegistry, SpectatorService spectatorService) {
         this.messagingTemplate = messagingTemplate;
         this.sessionRegistryService = sessionRegistryService;
-        this.otService = otService;
-        this.stringRedisTemplate = stringRedisTemplate;
-        this.setOperations = stringRedisTemplate.opsForSet();
-    }
-
-    // Helper to get the tracking key for a user
-    private String getUserTrackingKey(String userId) {
-        return USER_ACTIVE_DOCS_KEY_PREFIX + userId;
+        this.cursorCoalescingService = cursorCoalescingService;
+        this.presenceBroadcastService = presenceBroadcastService;
+        this.joinService = joinService;
+        this.connectionRegistry = connectionRegistry;
+        this.spectatorService = spectatorService;
     }
 
     /**
      * Handles a client explicitly joining a session/document.
-     * Registers the user and broadcasts the updated state immediately.
+     * Registers the user, sends the full document state to the joining connection only,
+     * and tells everyone else about the new participant with a presence event.
      */
     @MessageMapping("/join")
     public void handleJoin(@Payload JoinPayload payload,
@@ -75,6 +76,11 @@ public class EditorController {
             
             return;
         }
+        if (spectatorService.isSpectator(headerAccessor.getSessionId(), sessionId, documentId)) {
+            log.warn("Spectator connection [{}] tried to join session [{}], doc [{}] as a participant. Ignoring.",
+                    headerAccessor.getSessionId(), sessionId, documentId);
+            return;
+        }
 
         
         UserInfoDTO userInfoDTO = new UserInfoDTO();
@@ -86,22 +92,15 @@ public class EditorController {
         userInfoDTO.setSelection(null);
 
         try {
-            
-            sessionRegistryService.userJoined(sessionId, documentId, userInfoDTO);
+            // Registration and the state read are one Redis round trip
+            JoinService.JoinResult result = joinService.join(sessionId, documentId, userInfoDTO);
+            connectionRegistry.documentJoined(headerAccessor.getSessionId(), userId, sessionId, documentId);
             log.info("User [{}] registered in session [{}], doc [{}] via /app/join", userId, sessionId, documentId);
 
-            String trackingKey = getUserTrackingKey(userId);
-            String documentEntry = sessionId + ":" + documentId;
-            try {
-                setOperations.add(trackingKey, documentEntry);
-                stringRedisTemplate.expire(trackingKey, USER_TRACKING_EXPIRY_HOURS, TimeUnit.HOURS);
-                log.info("Added entry '{}' to user tracking set '{}' for user [{}]", documentEntry, trackingKey, userId);
-            } catch (Exception redisEx) {
-                log.error("Redis error adding entry '{}' to tracking set '{}' for user [{}]: {}",
-                          documentEntry, trackingKey, userId, redisEx.getMessage(), redisEx);
-            }
-
-            broadcastFullDocumentState(sessionId, documentId, userId);
+            sendDocumentState(headerAccessor.getSessionId(), result.getState(), userId);
+            presenceBroadcastService.publish(result.isNewParticipant()
+                    ? PresenceEvent.joined(sessionId, documentId, userInfoDTO)
+                    : PresenceEvent.updated(sessionId, documentId, userInfoDTO));
 
         } catch (Exception e) {
             log.error("Error processing join request for user [{}] in session [{}], doc [{}]: {}", 
@@ -124,6 +123,16 @@ public class EditorController {
             return;
         }
         String senderClientId = senderUserInfo.getId();
+        if (spectatorService.isSpectator(headerAccessor.getSessionId(), sessionId, documentId)) {
+            log.debug("Ignoring selection update from spectator connection [{}]", headerAccessor.getSessionId());
+            return;
+        }
+
+        if (cursorCoalescingService.isEnabled()) {
+            // Persisted and broadcast (batched with other users' cursors) on the next flush
+            cursorCoalescingService.submit(message);
+            return;
+        }
 
         try {
             // Convert Position to Map<String, Integer> or null
@@ -162,35 +171,26 @@ public class EditorController {
     }
 
     /**
-     * Broadcasts the full document state (content, revision, participants)
-     * to all clients subscribed to the specific session/document state topic.
-     * Typically called after a user joins, leaves, or a significant state change occurs.
+     * Sends the full document state (content, revision, participants) to a single
+     * connection via /user/queue/state.
      *
-     * @param sessionId The ID of the session.
-     * @param documentId The ID of the document within the session.
-     * @param updatedByClientId The client ID that triggered this broadcast (used for logging).
+     * @param simpSessionId The WebSocket session of the client that should receive the state.
+     * @param state The state to send.
+     * @param requestedByClientId The client ID that triggered this (used for logging).
      */
-    private void broadcastFullDocumentState(String sessionId, String documentId, String updatedByClientId) {
-        log.info("Broadcasting full document state for session [{}], doc [{}] triggered by user [{}]", sessionId, documentId, updatedByClientId);
+    private void sendDocumentState(String simpSessionId, DocumentState state, String requestedByClientId) {
+        if (simpSessionId == null) {
+            log.warn("No WebSocket session id for user [{}] joining session [{}], doc [{}]. Cannot send document state.",
+                    requestedByClientId, state.getSessionId(), state.getDocumentId());
+            return;
+        }
         try {
-            List<UserInfoDTO> participants = sessionRegistryService.getActiveParticipantsForDocument(sessionId, documentId, null);
-            
-            String currentContent = otService.getDocumentContent(sessionId, documentId);
-            int currentRevision = otService.getRevision(sessionId, documentId);
-
-            DocumentState fullState = new DocumentState();
-            fullState.setSessionId(sessionId);
-            fullState.setDocumentId(documentId);
-            fullState.setDocument(currentContent);
-            fullState.setRevision(currentRevision);
-            fullState.setParticipants(participants);
-
-            String stateDestination = String.format("/topic/sessions/%s/state/document/%s", sessionId, documentId);
-            messagingTemplate.convertAndSend(stateDestination, fullState);
-            log.info("Successfully broadcasted full document state to {} for session [{}], doc [{}]", stateDestination, sessionId, documentId);
+            messagingTemplate.convertAndSendToUser(simpSessionId, "/queue/state", state, SessionMessageHeaders.forSession(simpSessionId));
+            log.info("Sent full document state (revision {}) for session [{}], doc [{}] to joining user [{}]",
+                    state.getRevision(), state.getSessionId(), state.getDocumentId(), requestedByClientId);
 
         } catch (Exception e) {
-            log.error("Error broadcasting full document state for session [{}], doc [{}]: {}", sessionId, documentId, e.getMessage(), e);
+            log.error("Error sending full document state for session [{}], doc [{}]: {}", state.getSessionId(), state.getDocumentId(), e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
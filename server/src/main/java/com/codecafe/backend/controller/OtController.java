@@ -1,35 +1,57 @@
 package com.codecafe.backend.controller;
 
+import com.codecafe.backend.dto.AppliedOperation;
 import com.codecafe.backend.dto.DocumentState;
 import com.codecafe.backend.dto.IncomingOperationPayload;
+import com.codecafe.backend.dto.OperationAck;
+import com.codecafe.backend.dto.OperationRange;
+import com.codecafe.backend.dto.ResyncReply;
+import com.codecafe.backend.dto.ResyncRequest;
 import com.codecafe.backend.dto.TextOperation;
 import com.codecafe.backend.service.OtService;
 import com.codecafe.backend.dto.IncomingSelectionPayload;
+import com.codecafe.backend.util.OtUtils;
+import com.codecafe.backend.util.SessionMessageHeaders;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Controller;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.security.Principal;
 import java.util.List;
 import java.util.Collections;
 import com.codecafe.backend.dto.UserInfoDTO;
+import com.codecafe.backend.service.OperationBroadcastService;
 import com.codecafe.backend.service.SessionRegistryService;
+import com.codecafe.backend.service.SlowConsumerService;
+import com.codecafe.backend.service.SpectatorService;
 
 @Controller
 public class OtController {
     private final OtService otService;
     private final SimpMessagingTemplate messagingTemplate;
     private final SessionRegistryService sessionRegistryService;
+    private final SlowConsumerService slowConsumerService;
+    private final SpectatorService spectatorService;
+    private final OperationBroadcastService operationBroadcastService;
+    private final int catchUpMaxOperations;
     private static final Logger logger = Logger.getLogger(OtController.class.getName());
 
-    public OtController(OtService otService, SimpMessagingTemplate messagingTemplate, SessionRegistryService sessionRegistryService) {
+    public OtController(OtService otService, SimpMessagingTemplate messagingTemplate, SessionRegistryService sessionRegistryService,
+                        SlowConsumerService slowConsumerService, SpectatorService spectatorService,
+                        OperationBroadcastService operationBroadcastService,
+                        @Value("${codecafe.ot.catch-up.max-operations:200}") int catchUpMaxOperations) {
         this.otService = otService;
         this.messagingTemplate = messagingTemplate;
         this.sessionRegistryService = sessionRegistryService;
+        this.slowConsumerService = slowConsumerService;
+        this.spectatorService = spectatorService;
+        this.operationBroadcastService = operationBroadcastService;
+        this.catchUpMaxOperations = catchUpMaxOperations;
     }
 
     /**
@@ -54,6 +76,12 @@ public class OtController {
             return;
         }
 
+        if (spectatorService.isSpectator(headerAccessor.getSessionId(), sessionId, documentId)) {
+            logger.warning(String.format("Discarding operation from spectator connection [%s] (client [%s], session [%s], doc [%s]). Spectators are read-only.",
+                    headerAccessor.getSessionId(), clientId, sessionId, documentId));
+            return;
+        }
+
         // Log the incoming payload including selection/cursor if present
         logger.info(String.format("OtController received operation payload from client [%s] for session [%s], doc [%s]: %s",
                  clientId, sessionId, documentId, payload.toString()));
@@ -61,33 +89,17 @@ public class OtController {
         try {
             // Extract the raw operation data and create a TextOperation
             TextOperation operation = new TextOperation(payload.getOperation()); 
-            // Process the operation through the OT service
-            TextOperation transformedOp = otService.receiveOperation(sessionId, documentId, payload.getRevision(), operation);
-
-            // Prepare the payload for broadcasting
-            Map<String, Object> broadcastPayload = new HashMap<>();
-            broadcastPayload.put("documentId", documentId);
-            broadcastPayload.put("clientId", clientId); 
-            broadcastPayload.put("operation", transformedOp.getOps());
-            broadcastPayload.put("sessionId", sessionId);
+            // Process the operation through the OT service; a retried op with a known clientSeq is not applied twice
+            AppliedOperation applied = otService.receiveOperation(sessionId, documentId, payload.getRevision(), operation, clientId, payload.getClientSeq());
+            String simpSessionId = headerAccessor.getSessionId();
 
-
-            if (payload.getSelection() != null) {
-                broadcastPayload.put("selection", payload.getSelection());
-            }
-            if (payload.getCursorPosition() != null) {
-                broadcastPayload.put("cursorPosition", payload.getCursorPosition());
+            // A duplicate was broadcast when it was first committed; the client only lost the ack
+            if (!applied.isDuplicate()) {
+                operationBroadcastService.broadcast(sessionId, documentId, clientId, applied, payload.getSelection(), payload.getCursorPosition(), simpSessionId);
             }
 
-            // Broadcast to the session-and-document-specific topic
-            String destination = String.format("/topic/sessions/%s/operations/document/%s", sessionId, documentId);
-            messagingTemplate.convertAndSend(destination, broadcastPayload);
-            logger.fine(String.format("Broadcasted transformed op (with selection/cursor if present) from client [%s] for session [%s], doc [%s] to %s. Payload: %s", clientId, sessionId, documentId, destination, broadcastPayload));
-
-            // Send ACK back to the original sender ONLY
-            String ackDestination = "/topic/ack/" + clientId;
-            messagingTemplate.convertAndSend(ackDestination, "ack");
-            logger.fine("Sent ACK to client [" + clientId + "] at " + ackDestination);
+            // Send ACK back to the submitting connection ONLY, with the revision the op produced
+            sendAck(simpSessionId, clientId, sessionId, documentId, applied.getRevision());
 
         } catch (IllegalArgumentException e) {
             logger.warning(String.format("Error processing operation from client [%s] for session [%s], doc [%s]: %s", clientId, sessionId, documentId, e.getMessage()));
@@ -97,6 +109,85 @@ public class OtController {
         }
     }
 
+    private void sendAck(String simpSessionId, String clientId, String sessionId, String documentId, int revision) {
+        if (simpSessionId != null) {
+            OperationAck ack = new OperationAck(sessionId, documentId, revision);
+            messagingTemplate.convertAndSendToUser(simpSessionId, "/queue/ack", ack, SessionMessageHeaders.forSession(simpSessionId));
+            logger.fine("Sent ACK (revision " + revision + ") to client [" + clientId + "] on connection [" + simpSessionId + "]");
+        } else {
+            logger.warning("No WebSocket session id on operation from client [" + clientId + "]. Cannot send ACK.");
+        }
+    }
+
+    /**
+     * Handle the resync handshake of a reconnecting client. The request carries the revision
+     * of the client's confirmed copy and, optionally, its pending (unacknowledged) operation
+     * with the clientSeq it was first sent with.
+     *
+     * The pending operation is committed at most once: if its clientSeq was already committed
+     * (the ack was lost, not the op) it is not applied again. The reply on
+     * /user/queue/resync-reply holds every operation since the client's revision, including
+     * the pending one in its committed form, plus the revision acknowledging the pending op.
+     * If the history no longer reaches back to the client's revision, or the client missed more
+     * than catchUpMaxOperations, fullStateRequired is set and nothing is applied; the client
+     * then requests the state and re-submits its edits, unless ackRevision reports them as
+     * already committed.
+     */
+    @MessageMapping("/resync")
+    public void handleResync(@Payload ResyncRequest request, SimpMessageHeaderAccessor headerAccessor) {
+        String clientId = request.getClientId();
+        String documentId = request.getDocumentId();
+        String sessionId = request.getSessionId();
+        String simpSessionId = headerAccessor.getSessionId();
+
+        if (clientId == null || documentId == null || sessionId == null || simpSessionId == null) {
+            logger.warning("Received resync request without clientId, documentId, sessionId or connection id. Ignoring.");
+            return;
+        }
+        if (spectatorService.isSpectator(simpSessionId, sessionId, documentId) && request.getOperation() != null) {
+            logger.warning(String.format("Discarding resync with pending operation from spectator connection [%s]. Spectators are read-only.", simpSessionId));
+            return;
+        }
+
+        // The reply brings the client up to date, so deliver ops to it again
+        slowConsumerService.resume(simpSessionId, sessionId, documentId);
+
+        ResyncReply reply = new ResyncReply();
+        reply.setSessionId(sessionId);
+        reply.setDocumentId(documentId);
+        reply.setBaseRevision(request.getRevision());
+        try {
+            TextOperation pending = request.getOperation() != null ? new TextOperation(request.getOperation()) : null;
+            OtService.ResyncResult result = otService.resync(sessionId, documentId, request.getRevision(), pending, clientId,
+                    request.getClientSeq(), catchUpMaxOperations);
+
+            AppliedOperation applied = result.getPendingOperation();
+            if (applied != null) {
+                reply.setAckRevision(applied.getRevision());
+                if (!applied.isDuplicate()) {
+                    operationBroadcastService.broadcast(sessionId, documentId, clientId, applied, null, null, simpSessionId);
+                }
+            }
+            OperationRange missed = result.getMissedOperations();
+            if (missed == null) {
+                reply.setFullStateRequired(true);
+            } else {
+                List<List<Object>> operations = new ArrayList<>();
+                missed.getOperations().forEach(op -> operations.add(op.getOps()));
+                reply.setRevision(missed.getRevision());
+                reply.setOperations(operations);
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warning(String.format("Resync from client [%s] for session [%s], doc [%s] at revision %d failed, requiring full state: %s",
+                    clientId, sessionId, documentId, request.getRevision(), e.getMessage()));
+            reply.setFullStateRequired(true);
+        }
+
+        messagingTemplate.convertAndSendToUser(simpSessionId, "/queue/resync-reply", reply, SessionMessageHeaders.forSession(simpSessionId));
+        logger.info(String.format("Sent resync reply to client [%s] for session [%s], doc [%s]: base=%d, revision=%s, ack=%s, fullState=%s",
+                clientId, sessionId, documentId, request.getRevision(), reply.getRevision(), reply.getAckRevision(), reply.isFullStateRequired()));
+    }
+
     /**
      * DEPRECATED: Selection changes are now handled via the /operation endpoint.
      * Keeping this method temporarily might be useful for debugging or if a fallback is needed.
@@ -122,10 +213,17 @@ public class OtController {
     /**
      * Handle document state requests.
      * Expects a payload containing the documentId.
-     * Returns the current document content, revision number, and active participants for that document.
+     * Replies to the requesting connection with the current document content, revision number,
+     * and active participants for that document.
+     *
+     * A reconnecting client may add "knownRevision" (the revision of its copy). If the retained
+     * history covers the gap, the reply carries only the operations since that revision
+     * (composed into one when "compose" is true) instead of the content.
      */
     @MessageMapping("/get-document-state")
-    public void getDocumentState(@Payload Map<String, String> payload, Principal principal) {
+    public void getDocumentState(@Payload Map<String, String> payload,
+                                 SimpMessageHeaderAccessor headerAccessor,
+                                 Principal principal) {
         String documentId = payload.get("documentId");
         String sessionId = payload.get("sessionId");
 
@@ -142,6 +240,9 @@ public class OtController {
             return;
         }
 
+        // A client that was told to resync is catching up now; deliver ops to it again
+        slowConsumerService.resume(headerAccessor.getSessionId(), sessionId, documentId);
+
         logger.info("Received request for document state for session [" + sessionId + "], doc [" + documentId + "] from user [" + (requestingUserId != null ? requestingUserId : "unknown") + "]");
 
         // Fetch Participants
@@ -157,20 +258,101 @@ public class OtController {
         DocumentState stateResponse = new DocumentState();
         stateResponse.setSessionId(sessionId); 
         stateResponse.setDocumentId(documentId);
-        stateResponse.setDocument(otService.getDocumentContent(sessionId, documentId));
-        stateResponse.setRevision(otService.getRevision(sessionId, documentId));
+        if (spectatorService.isSpectator(headerAccessor.getSessionId(), sessionId, documentId)) {
+            // Flush the pending spectator update and read the state under the OT lock, so the next
+            // composed update starts exactly at this revision (a composed op cannot be partly applied).
+            // Updates ending at or before this revision are already contained in the state.
+            OtService.DocumentSnapshot snapshot = otService.getDocumentSnapshotLocked(sessionId, documentId,
+                    () -> spectatorService.flushDocument(sessionId, documentId));
+            stateResponse.setDocument(snapshot.getContent());
+            stateResponse.setRevision(snapshot.getRevision());
+        } else if (!applyCatchUp(stateResponse, payload.get("knownRevision"), Boolean.parseBoolean(payload.get("compose")))) {
+            // Coalesced with concurrent state reads of the same document
+            OtService.DocumentSnapshot snapshot = otService.getDocumentSnapshot(sessionId, documentId);
+            stateResponse.setDocument(snapshot.getContent());
+            stateResponse.setRevision(snapshot.getRevision());
+        }
 
         stateResponse.setParticipants(participants); 
 
 
-        logger.info("Sending document state: Revision=" + stateResponse.getRevision() +
+        logger.info("Sending document " + (stateResponse.getBaseRevision() != null ? "catch-up from revision " + stateResponse.getBaseRevision() : "state") +
+                    ": Revision=" + stateResponse.getRevision() +
                     ", Participants Count=" + stateResponse.getParticipants().size() + 
                     " for session [" + sessionId + "], doc [" + documentId + "]");
 
-        // Send the state back to the specific topic for this session/document
-        // The client requesting the state should be subscribed to this topic.
-        String destination = String.format("/topic/sessions/%s/state/document/%s", sessionId, documentId);
-        messagingTemplate.convertAndSend(destination, stateResponse);
-        logger.info(String.format("Sent document state for session [%s], doc [%s] to %s", sessionId, documentId, destination));
+        // Send the state back to the requesting connection only (it subscribes to /user/queue/state)
+        String simpSessionId = headerAccessor.getSessionId();
+        if (simpSessionId == null) {
+            logger.warning("No WebSocket session id on get-document-state request for session [" + sessionId + "], doc [" + documentId + "]. Cannot reply.");
+            return;
+        }
+        messagingTemplate.convertAndSendToUser(simpSessionId, "/queue/state", stateResponse, SessionMessageHeaders.forSession(simpSessionId));
+        logger.info(String.format("Sent document state for session [%s], doc [%s] to connection [%s]", sessionId, documentId, simpSessionId));
+    }
+
+    /**
+     * Fills the response with the operations since the client's known revision.
+     *
+     * @return false if a full snapshot has to be sent instead (no or invalid known revision,
+     *         history no longer covering the gap, or too many operations to be worth it).
+     */
+    private boolean applyCatchUp(DocumentState state, String knownRevisionValue, boolean compose) {
+        if (knownRevisionValue == null) {
+            return false;
+        }
+        int knownRevision;
+        try {
+            knownRevision = Integer.parseInt(knownRevisionValue);
+        } catch (NumberFormatException e) {
+            logger.warning("Ignoring invalid knownRevision '" + knownRevisionValue + "' in get-document-state request.");
+            return false;
+        }
+        try {
+            OperationRange range = otService.getOperationsSince(state.getSessionId(), state.getDocumentId(), knownRevision);
+            if (range == null || range.getOperations().size() > catchUpMaxOperations) {
+                return false;
+            }
+            List<List<Object>> operations = new ArrayList<>();
+            if (compose && range.getOperations().size() > 1) {
+                operations.add(OtUtils.composeAll(range.getOperations()).getOps());
+            } else {
+                range.getOperations().forEach(op -> operations.add(op.getOps()));
+            }
+            state.setBaseRevision(range.getBaseRevision());
+            state.setRevision(range.getRevision());
+            state.setOperations(operations);
+            return true;
+        } catch (Exception e) {
+            logger.warning(String.format("[Session: %s, Doc: %s] Catch-up from revision %d failed, sending full state: %s",
+                    state.getSessionId(), state.getDocumentId(), knownRevision, e.getMessage()));
+            return false;
+        }
+    }
+
+    /**
+     * Handle spectator requests: registers the connection as a read-only spectator of the
+     * document (no presence entry, no operations accepted) and replies with the current state.
+     * Afterwards the client follows the document through composed updates on
+     * /topic/sessions/{sessionId}/spectate/document/{documentId}.
+     */
+    @MessageMapping("/spectate")
+    public void handleSpectate(@Payload Map<String, String> payload,
+                               SimpMessageHeaderAccessor headerAccessor,
+                               Principal principal) {
+        String documentId = payload.get("documentId");
+        String sessionId = payload.get("sessionId");
+        String simpSessionId = headerAccessor.getSessionId();
+        if (documentId == null || sessionId == null || simpSessionId == null) {
+            logger.warning("Received spectate request without documentId, sessionId or connection id. Ignoring.");
+            return;
+        }
+        if (!spectatorService.isEnabled()) {
+            logger.warning(String.format("Spectator mode is disabled. Ignoring spectate request for session [%s], doc [%s].", sessionId, documentId));
+            return;
+        }
+        // Register first, so the state below is read aligned with the spectator stream
+        spectatorService.spectatorJoined(simpSessionId, sessionId, documentId);
+        getDocumentState(payload, headerAccessor, principal);
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,28 @@
 package com.codecafe.backend.controller;
 
+import com.codecafe.backend.dto.AppliedOperation;
 import com.codecafe.backend.dto.DocumentContentPayload;
+import com.codecafe.backend.dto.SessionInfo;
+import com.codecafe.backend.service.DocumentExportService;
+import com.codecafe.backend.service.DocumentImportService;
+import com.codecafe.backend.service.OperationBroadcastService;
 import com.codecafe.backend.service.OtService;
+import com.codecafe.backend.service.SessionStore;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.Instant;
+import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,38 +31,25 @@ import java.util.logging.Logger;
 public class SessionController {
 
     private final OtService otService;
+    private final SessionStore sessionStore;
+    private final OperationBroadcastService operationBroadcastService;
+    private final DocumentImportService documentImportService;
+    private final DocumentExportService documentExportService;
+    private final int diffMaxEditDistance;
     private static final Logger logger = Logger.getLogger(SessionController.class.getName());
-
-    // TODO: In-memory storage for sessions (replace with database in production) IMPORTANT!!!
-    private static final Map<String, SessionInfo> activeSessions = new ConcurrentHashMap<>();
-
-    static class SessionInfo {
-        private final String id;
-        private final String creatorName;
-        private final Instant createdAt;
-
-        public SessionInfo(String id, String creatorName) {
-            this.id = id;
-            this.creatorName = creatorName;
-            this.createdAt = Instant.now();
-        }
-
-        public String getId() {
-            return id;
-        }
-
-        public String getCreatorName() {
-            return creatorName;
-        }
-
-        public Instant getCreatedAt() {
-            return createdAt;
-        }
-    }
+    // Client id of operations the server commits on behalf of the REST API
+    private static final String SERVER_CLIENT_ID = "server";
 
     // Constructor injection for dependencies
-    public SessionController(OtService otService) {
+    public SessionController(OtService otService, SessionStore sessionStore, OperationBroadcastService operationBroadcastService,
+                             DocumentImportService documentImportService, DocumentExportService documentExportService,
+                             @Value("${codecafe.ot.set-document.diff.max-edit-distance:2000}") int diffMaxEditDistance) {
         this.otService = otService;
+        this.sessionStore = sessionStore;
+        this.operationBroadcastService = operationBroadcastService;
+        this.documentImportService = documentImportService;
+        this.documentExportService = documentExportService;
+        this.diffMaxEditDistance = diffMaxEditDistance;
     }
 
     @PostMapping("/create")
@@ -57,8 +58,7 @@ public class SessionController {
         
         // Generate a unique session ID
         String sessionId = UUID.randomUUID().toString();
-        SessionInfo sessionInfo = new SessionInfo(sessionId, creatorName);
-        activeSessions.put(sessionId, sessionInfo);
+        sessionStore.create(sessionId, creatorName);
         
         logger.info("Created session: " + sessionId + " by " + creatorName);
         
@@ -67,7 +67,7 @@ public class SessionController {
 
     @GetMapping("/{sessionId}")
     public ResponseEntity<SessionInfo> getSessionInfo(@PathVariable String sessionId) {
-        SessionInfo sessionInfo = activeSessions.get(sessionId);
+        SessionInfo sessionInfo = sessionStore.find(sessionId);
         
         if (sessionInfo == null) {
             logger.warning("Session info requested for non-existent session: " + sessionId);
@@ -89,12 +89,23 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
 
-        if (!activeSessions.containsKey(sessionId)) {
+        if (!sessionStore.exists(sessionId)) {
            logger.warning("Attempted to set document content for non-existent session: " + sessionId);
            return ResponseEntity.notFound().build();
         }
 
         try {
+            if ("diff".equalsIgnoreCase(payload.getMode())) {
+                // Connected clients receive a regular operation instead of having to reload the document
+                AppliedOperation applied = otService.applyContentAsDiff(sessionId, payload.getDocumentId(), payload.getContent(),
+                        SERVER_CLIENT_ID, diffMaxEditDistance);
+                if (applied != null) {
+                    operationBroadcastService.broadcast(sessionId, payload.getDocumentId(), SERVER_CLIENT_ID, applied, null, null, null);
+                }
+                logger.info(String.format("Applied content of doc [%s] in session [%s] as a diff (revision %s)",
+                        payload.getDocumentId(), sessionId, applied != null ? applied.getRevision() : "unchanged"));
+                return ResponseEntity.ok().build();
+            }
             otService.setDocumentContent(sessionId, payload.getDocumentId(), payload.getContent());
             logger.info(String.format("Successfully set initial content for doc [%s] in session [%s]", payload.getDocumentId(), sessionId));
             return ResponseEntity.ok().build();
@@ -103,4 +114,80 @@ public class SessionController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    /**
+     * Seeds the session with the documents of an archive sent as the raw request body (zip, tar,
+     * optionally gzip-compressed, or a JSON array of {"documentId", "content"}). The body is read
+     * as a stream rather than as a multipart upload, so the archive is never buffered in full.
+     * The format comes from the "format" parameter or else the Content-Type.
+     */
+    @PostMapping("/{sessionId}/import")
+    public ResponseEntity<Map<String, Object>> importDocuments(@PathVariable String sessionId,
+                                                               @RequestParam(required = false) String format,
+                                                               HttpServletRequest request) {
+        DocumentImportService.Format importFormat = DocumentImportService.Format.from(format != null ? format : request.getContentType());
+        if (importFormat == null) {
+            logger.warning(String.format("Unsupported import format [%s] for session [%s]", format != null ? format : request.getContentType(), sessionId));
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (!sessionStore.exists(sessionId)) {
+            logger.warning("Attempted to import documents into non-existent session: " + sessionId);
+            return ResponseEntity.notFound().build();
+        }
+
+        try {
+            DocumentImportService.ImportResult result = documentImportService.importDocuments(sessionId, request.getInputStream(), importFormat);
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("imported", result.getImported());
+            body.put("skipped", result.getSkipped());
+            body.put("truncated", result.isTruncated());
+            return ResponseEntity.ok(body);
+        } catch (IOException e) {
+            logger.warning(String.format("Invalid %s archive for session [%s]: %s", importFormat, sessionId, e.getMessage()));
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("Error importing documents into session [%s]", sessionId), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Downloads all documents of the session as a zip. The archive is written to the response
+     * while documents are read in batches, so large sessions are never assembled in memory.
+     */
+    @GetMapping("/{sessionId}/export")
+    public ResponseEntity<StreamingResponseBody> exportDocuments(@PathVariable String sessionId) {
+        if (!sessionStore.exists(sessionId)) {
+            logger.warning("Attempted to export documents of non-existent session: " + sessionId);
+            return ResponseEntity.notFound().build();
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                documentExportService.writeZip(sessionId, out);
+            } catch (IOException e) {
+                // Usually the client went away; the partial archive is discarded
+                logger.warning(String.format("Export of session [%s] aborted: %s", sessionId, e.getMessage()));
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, String.format("Error exporting documents of session [%s]", sessionId), e);
+                throw e;
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("codecafe-" + sessionId + ".zip").build().toString())
+                .body(body);
+    }
+
+    /**
+     * Session lookups that cannot reach Redis are answered with 503 rather than 404, so clients
+     * retry instead of treating the session as gone.
+     */
+    @ExceptionHandler(DataAccessException.class)
+    public ResponseEntity<Void> handleRedisUnavailable(DataAccessException e) {
+        logger.warning("Session request failed, Redis unavailable: " + e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+    }
 }
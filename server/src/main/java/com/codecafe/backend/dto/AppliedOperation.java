@@ -0,0 +1,48 @@
+package com.codecafe.backend.dto;
+
+/**
+ * Result of committing a client operation: the operation as transformed and applied
+ * on the server, and the document revision it produced. For a retried operation that was
+ * already committed (same client sequence number), duplicate is set, operation is null and
+ * revision is the one the first attempt produced.
+ */
+public class AppliedOperation {
+    private final TextOperation operation;
+    private final int revision;
+    private final boolean duplicate;
+
+    public AppliedOperation(TextOperation operation, int revision) {
+        this(operation, revision, false);
+    }
+
+    private AppliedOperation(TextOperation operation, int revision, boolean duplicate) {
+        this.operation = operation;
+        this.revision = revision;
+        this.duplicate = duplicate;
+    }
+
+    public static AppliedOperation duplicate(int revision) {
+        return new AppliedOperation(null, revision, true);
+    }
+
+    public TextOperation getOperation() {
+        return operation;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+
+    @Override
+    public String toString() {
+        return "AppliedOperation{" +
+               "operation=" + operation +
+               ", revision=" + revision +
+               ", duplicate=" + duplicate +
+               '}';
+    }
+}
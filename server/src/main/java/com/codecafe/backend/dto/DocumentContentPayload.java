@@ -3,6 +3,7 @@ package com.codecafe.backend.dto;
 public class DocumentContentPayload {
     private String documentId;
     private String content;
+    private String mode; // "replace" (default): reset content and history; "diff": commit the change as an operation
 
     // Getters
     public String getDocumentId() {
@@ -13,6 +14,10 @@ public class DocumentContentPayload {
         return content;
     }
 
+    public String getMode() {
+        return mode;
+    }
+
     // Setters (needed for Jackson deserialization)
     public void setDocumentId(String documentId) {
         this.documentId = documentId;
@@ -22,11 +27,16 @@ public class DocumentContentPayload {
         this.content = content;
     }
 
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
     // Optional: toString, equals, hashCode
     @Override
     public String toString() {
         return "DocumentContentPayload{" +
                 "documentId='" + documentId + '\'' +
+                ", mode='" + mode + '\'' +
                 ", content='" + (content != null ? content.substring(0, Math.min(content.length(), 50)) + "..." : "null") + '\'' +
                 '}';
     }
@@ -0,0 +1,87 @@
+package com.codecafe.backend.dto;
+
+import java.util.List;
+
+// Replay of a document between two revisions: the content at baseRevision and the steps that
+// take it to revision. When composed, steps holds a single step (the diff of the whole range).
+public class DocumentPlayback {
+    private String sessionId;
+    private String documentId;
+    private int baseRevision;
+    private int revision;
+    private String baseContent;
+    private List<PlaybackStep> steps;
+
+    // No-arg constructor for Jackson
+    public DocumentPlayback() {
+    }
+
+    public DocumentPlayback(String sessionId, String documentId, int baseRevision, int revision, String baseContent, List<PlaybackStep> steps) {
+        this.sessionId = sessionId;
+        this.documentId = documentId;
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.baseContent = baseContent;
+        this.steps = steps;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getBaseRevision() {
+        return baseRevision;
+    }
+
+    public void setBaseRevision(int baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public String getBaseContent() {
+        return baseContent;
+    }
+
+    public void setBaseContent(String baseContent) {
+        this.baseContent = baseContent;
+    }
+
+    public List<PlaybackStep> getSteps() {
+        return steps;
+    }
+
+    public void setSteps(List<PlaybackStep> steps) {
+        this.steps = steps;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentPlayback{" +
+               "sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", baseRevision=" + baseRevision +
+               ", revision=" + revision +
+               ", steps=" + (steps != null ? steps.size() : 0) +
+               '}';
+    }
+}
@@ -0,0 +1,75 @@
+package com.codecafe.backend.dto;
+
+// A document as of a past revision, rebuilt from the nearest checkpoint at or before it
+// (checkpointRevision) by applying the operations up to revision.
+public class DocumentRevision {
+    private String sessionId;
+    private String documentId;
+    private int revision;
+    private String content;
+    private int checkpointRevision;
+
+    // No-arg constructor for Jackson
+    public DocumentRevision() {
+    }
+
+    public DocumentRevision(String sessionId, String documentId, int revision, String content, int checkpointRevision) {
+        this.sessionId = sessionId;
+        this.documentId = documentId;
+        this.revision = revision;
+        this.content = content;
+        this.checkpointRevision = checkpointRevision;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public int getCheckpointRevision() {
+        return checkpointRevision;
+    }
+
+    public void setCheckpointRevision(int checkpointRevision) {
+        this.checkpointRevision = checkpointRevision;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentRevision{" +
+               "sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", revision=" + revision +
+               ", contentLength=" + (content != null ? content.length() : 0) +
+               ", checkpointRevision=" + checkpointRevision +
+               '}';
+    }
+}
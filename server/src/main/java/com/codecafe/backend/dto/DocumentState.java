@@ -11,6 +11,11 @@ public class DocumentState {
 
     private List<UserInfoDTO> participants;
 
+    // Set only on a catch-up reply: document is null and the client applies these ops
+    // (TextOperation.getOps() format) to its copy at baseRevision to reach revision
+    private Integer baseRevision;
+    private List<List<Object>> operations;
+
     public DocumentState() {
     }
 
@@ -53,4 +58,20 @@ public class DocumentState {
     public void setParticipants(List<UserInfoDTO> participants) {
         this.participants = participants;
     }
-}
\ No newline at end of file
+
+    public Integer getBaseRevision() {
+        return baseRevision;
+    }
+
+    public void setBaseRevision(Integer baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    public List<List<Object>> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<List<Object>> operations) {
+        this.operations = operations;
+    }
+}
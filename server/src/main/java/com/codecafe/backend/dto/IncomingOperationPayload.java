@@ -17,6 +17,7 @@ public class IncomingOperationPayload {
     private String sessionId;
     private Map<String, Object> selection;
     private Map<String, Integer> cursorPosition;
+    private Long clientSeq; // Optional per-client sequence number; a retried op with a seen seq is not applied again
 
     // Default constructor for deserialization
     public IncomingOperationPayload() {
@@ -88,6 +89,14 @@ public class IncomingOperationPayload {
         this.cursorPosition = cursorPosition;
     }
 
+    public Long getClientSeq() {
+        return clientSeq;
+    }
+
+    public void setClientSeq(Long clientSeq) {
+        this.clientSeq = clientSeq;
+    }
+
     // equals, hashCode, toString 
 
     @Override
@@ -101,12 +110,13 @@ public class IncomingOperationPayload {
                 Objects.equals(documentId, that.documentId) &&
                 Objects.equals(sessionId, that.sessionId) &&
                 Objects.equals(selection, that.selection) &&
-                Objects.equals(cursorPosition, that.cursorPosition);
+                Objects.equals(cursorPosition, that.cursorPosition) &&
+                Objects.equals(clientSeq, that.clientSeq);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(clientId, revision, operation, documentId, sessionId, selection, cursorPosition);
+        return Objects.hash(clientId, revision, operation, documentId, sessionId, selection, cursorPosition, clientSeq);
     }
 
     @Override
@@ -119,6 +129,7 @@ public class IncomingOperationPayload {
                 ", sessionId='" + sessionId + '\'' +
                 ", selection=" + selection +
                 ", cursorPosition=" + cursorPosition +
+                ", clientSeq=" + clientSeq +
                 '}';
     }
 } 
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.codecafe.backend.dto;
+
+// Acknowledgement sent to /user/queue/ack of the connection that submitted an operation
+public class OperationAck {
+    private String sessionId;
+    private String documentId;
+    private int revision; // Revision produced by the acknowledged operation
+
+    // No-arg constructor for Jackson
+    public OperationAck() {
+    }
+
+    public OperationAck(String sessionId, String documentId, int revision) {
+        this.sessionId = sessionId;
+        this.documentId = documentId;
+        this.revision = revision;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationAck{" +
+               "sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", revision=" + revision +
+               '}';
+    }
+}
@@ -0,0 +1,40 @@
+package com.codecafe.backend.dto;
+
+import java.util.List;
+
+/**
+ * A contiguous run of committed operations: applied in order to the document at
+ * baseRevision, they produce the document at revision.
+ */
+public class OperationRange {
+    private final int baseRevision;
+    private final int revision;
+    private final List<TextOperation> operations;
+
+    public OperationRange(int baseRevision, int revision, List<TextOperation> operations) {
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.operations = operations;
+    }
+
+    public int getBaseRevision() {
+        return baseRevision;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public List<TextOperation> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        return "OperationRange{" +
+               "baseRevision=" + baseRevision +
+               ", revision=" + revision +
+               ", operations=" + operations.size() +
+               '}';
+    }
+}
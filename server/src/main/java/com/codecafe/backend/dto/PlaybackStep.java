@@ -0,0 +1,77 @@
+package com.codecafe.backend.dto;
+
+import java.util.List;
+
+// One step of a document playback: applied to the document at baseRevision it yields revision.
+// Older history is compacted, so a step may span several revisions of one client.
+public class PlaybackStep {
+    private int baseRevision;
+    private int revision;
+    private String clientId; // null if unknown
+    private long timestamp; // Commit time in epoch millis, 0 if unknown
+    private List<Object> operation; // Same format as TextOperation.getOps()
+
+    // No-arg constructor for Jackson
+    public PlaybackStep() {
+    }
+
+    public PlaybackStep(int baseRevision, int revision, String clientId, long timestamp, List<Object> operation) {
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.clientId = clientId;
+        this.timestamp = timestamp;
+        this.operation = operation;
+    }
+
+    // Getters and Setters
+    public int getBaseRevision() {
+        return baseRevision;
+    }
+
+    public void setBaseRevision(int baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public List<Object> getOperation() {
+        return operation;
+    }
+
+    public void setOperation(List<Object> operation) {
+        this.operation = operation;
+    }
+
+    @Override
+    public String toString() {
+        return "PlaybackStep{" +
+               "baseRevision=" + baseRevision +
+               ", revision=" + revision +
+               ", clientId='" + clientId + '\'' +
+               ", timestamp=" + timestamp +
+               ", operation=" + operation +
+               '}';
+    }
+}
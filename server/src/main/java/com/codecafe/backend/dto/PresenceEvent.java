@@ -0,0 +1,93 @@
+package com.codecafe.backend.dto;
+
+// Broadcast on /topic/sessions/{sessionId}/presence/document/{documentId} when a participant
+// joins, leaves or changes their info. Carries only the affected user, never document content.
+public class PresenceEvent {
+
+    public enum Type {
+        JOINED,
+        LEFT,
+        UPDATED
+    }
+
+    private Type type;
+    private String sessionId;
+    private String documentId;
+    private String userId;
+    private UserInfoDTO user; // null for LEFT
+
+    // No-arg constructor for Jackson
+    public PresenceEvent() {
+    }
+
+    public PresenceEvent(Type type, String sessionId, String documentId, String userId, UserInfoDTO user) {
+        this.type = type;
+        this.sessionId = sessionId;
+        this.documentId = documentId;
+        this.userId = userId;
+        this.user = user;
+    }
+
+    public static PresenceEvent joined(String sessionId, String documentId, UserInfoDTO user) {
+        return new PresenceEvent(Type.JOINED, sessionId, documentId, user.getId(), user);
+    }
+
+    public static PresenceEvent updated(String sessionId, String documentId, UserInfoDTO user) {
+        return new PresenceEvent(Type.UPDATED, sessionId, documentId, user.getId(), user);
+    }
+
+    public static PresenceEvent left(String sessionId, String documentId, String userId) {
+        return new PresenceEvent(Type.LEFT, sessionId, documentId, userId, null);
+    }
+
+    // Getters and Setters
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public UserInfoDTO getUser() {
+        return user;
+    }
+
+    public void setUser(UserInfoDTO user) {
+        this.user = user;
+    }
+
+    @Override
+    public String toString() {
+        return "PresenceEvent{" +
+                "type=" + type +
+                ", sessionId='" + sessionId + '\'' +
+                ", documentId='" + documentId + '\'' +
+                ", userId='" + userId + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,99 @@
+package com.codecafe.backend.dto;
+
+import java.util.List;
+
+/**
+ * Reply to a {@link ResyncRequest}, sent to /user/queue/resync-reply.
+ *
+ * operations holds every committed op from baseRevision + 1 up to revision, in order. If the
+ * request carried a pending operation, ackRevision is the revision it was committed as: the
+ * client treats the op at that revision as its ack (ot.js serverAck) and every other op as a
+ * server op (applyServer). When fullStateRequired is set the history no longer reaches back
+ * to the client's revision or there are too many operations to catch up on; nothing was
+ * applied by this request and the client must fetch a fresh DocumentState. ackRevision is
+ * authoritative in that case too: if it is set, the pending operation had already been
+ * committed by an earlier attempt and must not be resent.
+ */
+public class ResyncReply {
+    private String sessionId;
+    private String documentId;
+    private int baseRevision;
+    private int revision;
+    private List<List<Object>> operations;
+    private Integer ackRevision;
+    private boolean fullStateRequired;
+
+    // No-arg constructor for Jackson
+    public ResyncReply() {
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getBaseRevision() {
+        return baseRevision;
+    }
+
+    public void setBaseRevision(int baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public List<List<Object>> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<List<Object>> operations) {
+        this.operations = operations;
+    }
+
+    public Integer getAckRevision() {
+        return ackRevision;
+    }
+
+    public void setAckRevision(Integer ackRevision) {
+        this.ackRevision = ackRevision;
+    }
+
+    public boolean isFullStateRequired() {
+        return fullStateRequired;
+    }
+
+    public void setFullStateRequired(boolean fullStateRequired) {
+        this.fullStateRequired = fullStateRequired;
+    }
+
+    @Override
+    public String toString() {
+        return "ResyncReply{" +
+               "sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", baseRevision=" + baseRevision +
+               ", revision=" + revision +
+               ", operations=" + (operations != null ? operations.size() : 0) +
+               ", ackRevision=" + ackRevision +
+               ", fullStateRequired=" + fullStateRequired +
+               '}';
+    }
+}
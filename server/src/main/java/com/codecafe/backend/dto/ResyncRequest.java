@@ -0,0 +1,81 @@
+package com.codecafe.backend.dto;
+
+import java.util.List;
+
+/**
+ * Sent by a reconnecting client to /app/resync: the last revision it got acknowledged (or
+ * received) and, if it has one, the operation it sent but never got an ack for.
+ */
+public class ResyncRequest {
+    private String clientId;
+    private String sessionId;
+    private String documentId;
+    private int revision; // Revision of the client's confirmed document copy
+    private List<Object> operation; // Pending (unacked) operation based on revision; null if none
+    private Long clientSeq; // Sequence number the pending operation was first sent with
+
+    // Default constructor for deserialization
+    public ResyncRequest() {
+    }
+
+    // Getters and Setters
+    public String getClientId() {
+        return clientId;
+    }
+
+    public void setClientId(String clientId) {
+        this.clientId = clientId;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public List<Object> getOperation() {
+        return operation;
+    }
+
+    public void setOperation(List<Object> operation) {
+        this.operation = operation;
+    }
+
+    public Long getClientSeq() {
+        return clientSeq;
+    }
+
+    public void setClientSeq(Long clientSeq) {
+        this.clientSeq = clientSeq;
+    }
+
+    @Override
+    public String toString() {
+        return "ResyncRequest{" +
+               "clientId='" + clientId + '\'' +
+               ", sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", revision=" + revision +
+               ", operation=" + operation +
+               ", clientSeq=" + clientSeq +
+               '}';
+    }
+}
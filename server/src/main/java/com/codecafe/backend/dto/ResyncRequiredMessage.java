@@ -0,0 +1,64 @@
+package com.codecafe.backend.dto;
+
+// Sent to a single connection when the server stopped delivering operations to it
+// because it fell too far behind. The client should fetch a fresh DocumentState.
+public class ResyncRequiredMessage {
+    private String sessionId;
+    private String documentId;
+    private int revision; // Server revision when delivery was suspended
+    private String reason;
+
+    // No-arg constructor for Jackson
+    public ResyncRequiredMessage() {
+    }
+
+    public ResyncRequiredMessage(String sessionId, String documentId, int revision, String reason) {
+        this.sessionId = sessionId;
+        this.documentId = documentId;
+        this.revision = revision;
+        this.reason = reason;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    @Override
+    public String toString() {
+        return "ResyncRequiredMessage{" +
+               "sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", revision=" + revision +
+               ", reason='" + reason + '\'' +
+               '}';
+    }
+}
@@ -0,0 +1,54 @@
+package com.codecafe.backend.dto;
+
+import java.time.Instant;
+
+// A collaboration session as returned by GET /api/sessions/{sessionId}
+public class SessionInfo {
+    private String id;
+    private String creatorName;
+    private Instant createdAt;
+
+    // No-arg constructor for Jackson
+    public SessionInfo() {
+    }
+
+    public SessionInfo(String id, String creatorName, Instant createdAt) {
+        this.id = id;
+        this.creatorName = creatorName;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCreatorName() {
+        return creatorName;
+    }
+
+    public void setCreatorName(String creatorName) {
+        this.creatorName = creatorName;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionInfo{" +
+               "id='" + id + '\'' +
+               ", creatorName='" + creatorName + '\'' +
+               ", createdAt=" + createdAt +
+               '}';
+    }
+}
@@ -0,0 +1,90 @@
+package com.codecafe.backend.dto;
+
+import java.util.List;
+
+// Broadcast on the spectator topic of a document: all operations applied since the previous
+// update, composed into one. Applies to a document at baseRevision and yields revision.
+// Clients already at or past revision ignore it; any other revision mismatch (or resync)
+// means the client should fetch a fresh DocumentState instead.
+public class SpectatorUpdate {
+    private String sessionId;
+    private String documentId;
+    private int baseRevision;
+    private int revision;
+    private List<Object> operation; // Composed ops, same format as TextOperation.getOps(); null on resync
+    private boolean resync;
+
+    // No-arg constructor for Jackson
+    public SpectatorUpdate() {
+    }
+
+    public SpectatorUpdate(String sessionId, String documentId, int baseRevision, int revision, List<Object> operation, boolean resync) {
+        this.sessionId = sessionId;
+        this.documentId = documentId;
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.operation = operation;
+        this.resync = resync;
+    }
+
+    // Getters and Setters
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(String documentId) {
+        this.documentId = documentId;
+    }
+
+    public int getBaseRevision() {
+        return baseRevision;
+    }
+
+    public void setBaseRevision(int baseRevision) {
+        this.baseRevision = baseRevision;
+    }
+
+    public int getRevision() {
+        return revision;
+    }
+
+    public void setRevision(int revision) {
+        this.revision = revision;
+    }
+
+    public List<Object> getOperation() {
+        return operation;
+    }
+
+    public void setOperation(List<Object> operation) {
+        this.operation = operation;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    public void setResync(boolean resync) {
+        this.resync = resync;
+    }
+
+    @Override
+    public String toString() {
+        return "SpectatorUpdate{" +
+               "sessionId='" + sessionId + '\'' +
+               ", documentId='" + documentId + '\'' +
+               ", baseRevision=" + baseRevision +
+               ", revision=" + revision +
+               ", operation=" + operation +
+               ", resync=" + resync +
+               '}';
+    }
+}
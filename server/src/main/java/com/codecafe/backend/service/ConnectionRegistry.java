@@ -0,0 +1,190 @@
+package com.codecafe.backend.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Service;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Node-local registry of what each WebSocket connection (simp session id) has joined and
+ * subscribed to. Connections are registered on STOMP CONNECT and filled at join/subscribe
+ * time, so disconnect cleanup needs no Redis reads, and closing one tab only affects that
+ * tab's connection: a user leaves a document only when the last of their connections that
+ * joined it is gone. Subscriptions are counted per destination so broadcasts can skip
+ * encodings nobody on this node subscribed to.
+ */
+@Service
+public class ConnectionRegistry implements MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(ConnectionRegistry.class.getName());
+
+    private static class Connection {
+        private volatile String userId;
+        private final Set<DocumentMembership> documents = ConcurrentHashMap.newKeySet();
+        // STOMP subscription id -> destination, to release the destination counts on unsubscribe/close
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+    }
+
+    private static final class DocumentMembership {
+        private final String userId;
+        private final String sessionId;
+        private final String documentId;
+
+        private DocumentMembership(String userId, String sessionId, String documentId) {
+            this.userId = userId;
+            this.sessionId = sessionId;
+            this.documentId = documentId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof DocumentMembership)) return false;
+            DocumentMembership that = (DocumentMembership) o;
+            return userId.equals(that.userId) && sessionId.equals(that.sessionId) && documentId.equals(that.documentId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, sessionId, documentId);
+        }
+    }
+
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    // Membership -> simp session ids of the user's connections that joined the document
+    private final Map<DocumentMembership, Set<String>> membershipConnections = new ConcurrentHashMap<>();
+    // Destination -> number of subscriptions to it on this node
+    private final Map<String, Integer> destinationSubscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Starts tracking a connection. Joins and subscriptions are only recorded for open
+     * connections, so a frame handled after the disconnect cannot re-create the entry.
+     */
+    public void connectionOpened(String simpSessionId) {
+        if (simpSessionId != null) {
+            connections.putIfAbsent(simpSessionId, new Connection());
+        }
+    }
+
+    /**
+     * Records that a connection joined a document as the given user.
+     */
+    public void documentJoined(String simpSessionId, String userId, String sessionId, String documentId) {
+        if (simpSessionId == null || userId == null || sessionId == null || documentId == null) {
+            return;
+        }
+        DocumentMembership membership = new DocumentMembership(userId, sessionId, documentId);
+        // computeIfPresent() keeps this atomic with the removal in connectionClosed()
+        Connection open = connections.computeIfPresent(simpSessionId, (id, connection) -> {
+            connection.userId = userId;
+            if (connection.documents.add(membership)) {
+                membershipConnections.compute(membership, (m, ids) -> {
+                    Set<String> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    target.add(simpSessionId);
+                    return target;
+                });
+            }
+            return connection;
+        });
+        if (open == null) {
+            logger.fine(String.format("[Session: %s] Ignoring join of user [%s] to document [%s] from closed connection [%s].",
+                    sessionId, userId, documentId, simpSessionId));
+        }
+    }
+
+    public void subscribed(String simpSessionId, String subscriptionId, String destination) {
+        if (simpSessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        connections.computeIfPresent(simpSessionId, (id, connection) -> {
+            String previous = connection.subscriptions.put(subscriptionId, destination);
+            if (!destination.equals(previous)) {
+                destinationSubscriptions.merge(destination, 1, Integer::sum);
+                if (previous != null) {
+                    removeSubscriber(previous);
+                }
+            }
+            return connection;
+        });
+    }
+
+    public void unsubscribed(String simpSessionId, String subscriptionId) {
+        if (simpSessionId == null || subscriptionId == null) {
+            return;
+        }
+        connections.computeIfPresent(simpSessionId, (id, connection) -> {
+            String destination = connection.subscriptions.remove(subscriptionId);
+            if (destination != null) {
+                removeSubscriber(destination);
+            }
+            return connection;
+        });
+    }
+
+    /**
+     * @return Whether any connection on this node is subscribed to the destination. The simple
+     *         broker is node-local, so nobody else can receive what is sent to it here.
+     */
+    public boolean hasSubscribers(String destination) {
+        return destination != null && destinationSubscriptions.containsKey(destination);
+    }
+
+    private void removeSubscriber(String destination) {
+        destinationSubscriptions.computeIfPresent(destination, (d, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * @return The user the connection joined documents as, or null if it never joined one.
+     */
+    public String getUserId(String simpSessionId) {
+        Connection connection = simpSessionId != null ? connections.get(simpSessionId) : null;
+        return connection != null ? connection.userId : null;
+    }
+
+    /**
+     * Forgets a closed connection.
+     *
+     * @return The documents (sessionId -> documentId entries) the connection's user has left,
+     *         i.e. those that no other connection of the same user has joined.
+     */
+    public List<Map.Entry<String, String>> connectionClosed(String simpSessionId) {
+        Connection connection = simpSessionId != null ? connections.remove(simpSessionId) : null;
+        if (connection == null) {
+            return Collections.emptyList();
+        }
+        connection.subscriptions.values().forEach(this::removeSubscriber);
+        List<Map.Entry<String, String>> left = new ArrayList<>();
+        for (DocumentMembership membership : connection.documents) {
+            boolean[] lastConnection = new boolean[1];
+            membershipConnections.computeIfPresent(membership, (m, ids) -> {
+                ids.remove(simpSessionId);
+                lastConnection[0] = ids.isEmpty();
+                return ids.isEmpty() ? null : ids;
+            });
+            if (lastConnection[0]) {
+                left.add(new AbstractMap.SimpleEntry<>(membership.sessionId, membership.documentId));
+            } else {
+                logger.fine(String.format("[Session: %s] User [%s] still has another connection on document [%s]; keeping them present.",
+                        membership.sessionId, membership.userId, membership.documentId));
+            }
+        }
+        return left;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("codecafe.websocket.connections", connections, Map::size)
+                .description("WebSocket connections known to the connection registry on this node")
+                .register(registry);
+    }
+}
@@ -0,0 +1,150 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.CursorMessage;
+import com.codecafe.backend.dto.Position;
+import com.codecafe.backend.dto.UserInfo;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Coalesces cursor/selection updates per user and document.
+ *
+ * Only the latest update of each user is kept between flushes. Every flush persists that
+ * latest state once and broadcasts all pending cursors of a document as a single JSON array
+ * on the document's selections topic, so intermediate positions never reach Redis or the broker.
+ */
+@Service
+public class CursorCoalescingService implements MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(CursorCoalescingService.class.getName());
+
+    private final boolean enabled;
+    private final SessionRegistryService sessionRegistryService;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // "sessionId/documentId" -> (userId -> latest message)
+    private final Map<String, Map<String, CursorMessage>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong receivedUpdates = new AtomicLong();
+    private final AtomicLong flushedUpdates = new AtomicLong();
+
+    public CursorCoalescingService(@Value("${codecafe.cursor.coalescing.enabled:true}") boolean enabled,
+                                   SessionRegistryService sessionRegistryService,
+                                   SimpMessagingTemplate messagingTemplate) {
+        this.enabled = enabled;
+        this.sessionRegistryService = sessionRegistryService;
+        this.messagingTemplate = messagingTemplate;
+        logger.info(String.format("CursorCoalescingService initialized (enabled=%s).", enabled));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the latest cursor/selection of a user, replacing any update not yet flushed.
+     * The message must carry sessionId, documentId and userInfo.id.
+     */
+    public void submit(CursorMessage message) {
+        receivedUpdates.incrementAndGet();
+        String documentKey = message.getSessionId() + "/" + message.getDocumentId();
+        // compute() keeps this atomic with the idle-document cleanup in flush()
+        pending.compute(documentKey, (key, users) -> {
+            Map<String, CursorMessage> target = users != null ? users : new ConcurrentHashMap<>();
+            target.put(message.getUserInfo().getId(), message);
+            return target;
+        });
+    }
+
+    /**
+     * Persists and broadcasts the pending cursors of every document. Runs at the configured
+     * rate (default 50 ms, i.e. 20 updates per second per user at most) on its own scheduler
+     * thread, so slow Redis work in other scheduled jobs cannot delay it.
+     */
+    @Scheduled(fixedRateString = "${codecafe.cursor.coalescing.flush-interval-ms:50}", scheduler = "cursorFlushScheduler")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Map<String, CursorMessage>> entry : pending.entrySet()) {
+            Map<String, CursorMessage> users = entry.getValue();
+            if (users.isEmpty()) {
+                pending.computeIfPresent(entry.getKey(), (key, current) -> current.isEmpty() ? null : current);
+                continue;
+            }
+            List<CursorMessage> batch = new ArrayList<>(users.size());
+            for (String userId : users.keySet()) {
+                CursorMessage latest = users.remove(userId);
+                if (latest != null) {
+                    batch.add(latest);
+                }
+            }
+            if (!batch.isEmpty()) {
+                flushDocument(batch);
+            }
+        }
+    }
+
+    private void flushDocument(List<CursorMessage> batch) {
+        String sessionId = batch.get(0).getSessionId();
+        String documentId = batch.get(0).getDocumentId();
+
+        for (CursorMessage message : batch) {
+            UserInfo userInfo = message.getUserInfo();
+            try {
+                sessionRegistryService.updateUserState(sessionId, documentId, userInfo.getId(),
+                        toCursorPositionMap(userInfo.getCursorPosition()), userInfo.getSelection());
+            } catch (Exception e) {
+                // Still broadcast the cursor even if persisting failed
+                logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Error persisting coalesced selection for user [%s]: %s",
+                        sessionId, documentId, userInfo.getId(), e.getMessage()), e);
+            }
+        }
+
+        String destination = String.format("/topic/sessions/%s/selections/document/%s", sessionId, documentId);
+        try {
+            messagingTemplate.convertAndSend(destination, batch);
+            flushedUpdates.addAndGet(batch.size());
+            logger.fine(String.format("[Session: %s, Doc: %s] Broadcasted %d coalesced selection(s) to %s",
+                    sessionId, documentId, batch.size(), destination));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Error broadcasting coalesced selections to %s: %s",
+                    sessionId, documentId, destination, e.getMessage()), e);
+        }
+    }
+
+    // Same shape the registry stores for cursors: {"lineNumber": n, "column": n}
+    static Map<String, Integer> toCursorPositionMap(Position cursorPosition) {
+        if (cursorPosition == null) {
+            return null;
+        }
+        Map<String, Integer> cursorPositionMap = new HashMap<>();
+        cursorPositionMap.put("lineNumber", cursorPosition.getLineNumber());
+        cursorPositionMap.put("column", cursorPosition.getColumn());
+        return cursorPositionMap;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("codecafe.cursor.updates.received", receivedUpdates, AtomicLong::get)
+                .description("Cursor/selection updates received from clients")
+                .register(registry);
+        FunctionCounter.builder("codecafe.cursor.updates.flushed", flushedUpdates, AtomicLong::get)
+                .description("Cursor/selection updates persisted and broadcast after coalescing")
+                .register(registry);
+    }
+}
@@ -0,0 +1,93 @@
+package com.codecafe.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes all documents of a session as a zip archive straight to an output stream. Documents
+ * are read {@code codecafe.export.batch-size} at a time, each batch in one Redis transaction,
+ * and every entry is written and flushed before the next batch is read, so neither the
+ * archive nor the session's content is ever held in memory as a whole.
+ */
+@Service
+public class DocumentExportService {
+
+    private static final Logger logger = Logger.getLogger(DocumentExportService.class.getName());
+
+    private static final int MAX_LISTED_SKIPPED = 50;
+    private static final int MAX_COMMENT_CHARS = 16000;
+
+    private final OtService otService;
+    private final int batchSize;
+
+    public DocumentExportService(OtService otService, @Value("${codecafe.export.batch-size:100}") int batchSize) {
+        this.otService = otService;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Writes the zip. Each entry holds the content at one revision of its document, which is
+     * recorded in the entry comment ("revision N"). Entry names are the document ids normalized
+     * like import paths ({@link DocumentImportService#toDocumentId}); ids that are not safe
+     * paths (e.g. containing "..") or that collide with an earlier entry after normalization
+     * are left out and listed in the archive comment.
+     *
+     * @return The number of documents written.
+     */
+    public int writeZip(String sessionId, OutputStream out) throws IOException {
+        List<String> documentIds = otService.getSessionDocumentIds(sessionId);
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Set<String> names = new HashSet<>();
+        List<String> skipped = new ArrayList<>();
+        int written = 0;
+        for (int start = 0; start < documentIds.size(); start += batchSize) {
+            List<String> batch = documentIds.subList(start, Math.min(start + batchSize, documentIds.size()));
+            Map<String, OtService.DocumentSnapshot> snapshots = otService.getDocumentSnapshots(sessionId, batch);
+            for (Map.Entry<String, OtService.DocumentSnapshot> snapshot : snapshots.entrySet()) {
+                String name = DocumentImportService.toDocumentId(snapshot.getKey());
+                if (name == null || !names.add(name)) {
+                    skipped.add(snapshot.getKey());
+                    continue;
+                }
+                ZipEntry entry = new ZipEntry(name);
+                entry.setComment("revision " + snapshot.getValue().getRevision());
+                zip.putNextEntry(entry);
+                zip.write(snapshot.getValue().getContent().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+                written++;
+            }
+            zip.flush();
+        }
+        if (!skipped.isEmpty()) {
+            zip.setComment(skippedComment(skipped));
+            logger.warning(String.format("[Session: %s] Export skipped %d documents without a safe file name: %s",
+                    sessionId, skipped.size(), skipped));
+        }
+        zip.finish();
+        logger.info(String.format("[Session: %s] Exported %d documents.", sessionId, written));
+        return written;
+    }
+
+    // Zip comments are limited to 64 KiB, so long lists are cut off with a count of the rest
+    private static String skippedComment(List<String> skipped) {
+        List<String> listed = skipped.subList(0, Math.min(skipped.size(), MAX_LISTED_SKIPPED));
+        String comment = "Skipped documents without a safe file name: " + String.join(", ", listed);
+        if (skipped.size() > listed.size()) {
+            comment += String.format(" and %d more", skipped.size() - listed.size());
+        }
+        // At most 4 UTF-8 bytes per character
+        return comment.length() > MAX_COMMENT_CHARS ? comment.substring(0, MAX_COMMENT_CHARS) + "..." : comment;
+    }
+}
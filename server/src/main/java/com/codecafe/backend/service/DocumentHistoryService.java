@@ -0,0 +1,139 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.DocumentPlayback;
+import com.codecafe.backend.dto.DocumentRevision;
+import com.codecafe.backend.dto.PlaybackStep;
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.OtUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Rebuilds documents as of past revisions for session replay. The update script stores the
+ * content every {@code codecafe.ot.checkpoints.interval} revisions, so a revision is rebuilt
+ * from the nearest checkpoint at or before it by applying at most that many history entries,
+ * no matter how long the document's history is. A revision can be rebuilt while its
+ * checkpoint is kept and the history (raw or compacted) still reaches it. Compacted spans only
+ * hold their composed operation, so a revision inside a span is served as the span's base
+ * revision: checkpoints are always span boundaries, and rebuilding applies whole spans from
+ * there.
+ */
+@Service
+public class DocumentHistoryService {
+
+    private static final Logger logger = Logger.getLogger(DocumentHistoryService.class.getName());
+
+    private final OtService otService;
+    private final HashOperations<String, Object, Object> hashOperations;
+    private final int maxPlaybackRevisions;
+
+    public DocumentHistoryService(OtService otService, RedisTemplate<String, Object> redisTemplate,
+                                  @Value("${codecafe.ot.playback.max-revisions:2000}") int maxPlaybackRevisions) {
+        this.otService = otService;
+        this.hashOperations = redisTemplate.opsForHash();
+        this.maxPlaybackRevisions = maxPlaybackRevisions;
+    }
+
+    /**
+     * @return The document at the given revision (or, inside a compacted span, at the nearest
+     *         earlier revision that can be rebuilt, given as the result's revision), or null if
+     *         it can no longer be rebuilt.
+     * @throws IllegalArgumentException if the revision is negative or ahead of the document.
+     */
+    public DocumentRevision getDocumentAtRevision(String sessionId, String documentId, int revision) {
+        int currentRevision = otService.getRevision(sessionId, documentId);
+        if (revision < 0 || revision > currentRevision) {
+            throw new IllegalArgumentException(String.format("Revision %d is outside 0..%d.", revision, currentRevision));
+        }
+        String checkpointKey = otService.getCheckpointKey(sessionId, documentId);
+        Integer checkpointRevision = findCheckpointRevision(checkpointKey, revision);
+        if (checkpointRevision == null) {
+            logger.fine(String.format("[Session: %s, Doc: %s] No checkpoint at or before revision %d.", sessionId, documentId, revision));
+            return null;
+        }
+        Object checkpoint = hashOperations.get(checkpointKey, String.valueOf(checkpointRevision));
+        if (!(checkpoint instanceof String)) {
+            return null; // Trimmed or reset in the meantime
+        }
+        List<HistoryEntry> entries = otService.readHistory(sessionId, documentId, checkpointRevision, revision);
+        if (entries == null) {
+            logger.fine(String.format("[Session: %s, Doc: %s] History does not cover revisions %d-%d.", sessionId, documentId, checkpointRevision, revision));
+            return null;
+        }
+        // One pass over the content instead of one per entry
+        TextOperation composed = OtUtils.composeAll(toOperations(entries));
+        String content = composed != null ? OtUtils.apply((String) checkpoint, composed) : (String) checkpoint;
+        int rebuiltRevision = entries.isEmpty() ? checkpointRevision : entries.get(entries.size() - 1).getRevision();
+        return new DocumentRevision(sessionId, documentId, rebuiltRevision, content, checkpointRevision);
+    }
+
+    /**
+     * Replays a document from one revision to another: the content at fromRevision plus the
+     * steps leading to toRevision, or a single composed step when compose is set. Bounds inside
+     * a compacted span move to the span's base revision, and a step may cover a whole span.
+     *
+     * @return The playback, or null if the range can no longer be rebuilt.
+     * @throws IllegalArgumentException if the range is invalid or longer than the configured maximum.
+     */
+    public DocumentPlayback getPlayback(String sessionId, String documentId, int fromRevision, int toRevision, boolean compose) {
+        if (toRevision < fromRevision) {
+            throw new IllegalArgumentException(String.format("Invalid range %d-%d.", fromRevision, toRevision));
+        }
+        if (toRevision - fromRevision > maxPlaybackRevisions) {
+            throw new IllegalArgumentException(String.format("Range %d-%d is longer than %d revisions.", fromRevision, toRevision, maxPlaybackRevisions));
+        }
+        DocumentRevision base = getDocumentAtRevision(sessionId, documentId, fromRevision);
+        if (base == null) {
+            return null;
+        }
+        int baseRevision = base.getRevision();
+        List<HistoryEntry> entries = otService.readHistory(sessionId, documentId, baseRevision, toRevision);
+        if (entries == null) {
+            return null;
+        }
+        int revision = entries.isEmpty() ? baseRevision : entries.get(entries.size() - 1).getRevision();
+        List<PlaybackStep> steps = new ArrayList<>();
+        if (compose && !entries.isEmpty()) {
+            TextOperation composed = OtUtils.composeAll(toOperations(entries));
+            steps.add(new PlaybackStep(baseRevision, revision, null, entries.get(entries.size() - 1).getTimestamp(), composed.getOps()));
+        } else {
+            for (HistoryEntry entry : entries) {
+                steps.add(new PlaybackStep(entry.getBaseRevision(), entry.getRevision(), entry.getClientId(), entry.getTimestamp(),
+                        entry.toOperation().getOps()));
+            }
+        }
+        return new DocumentPlayback(sessionId, documentId, baseRevision, revision, base.getContent(), steps);
+    }
+
+    private static List<TextOperation> toOperations(List<HistoryEntry> entries) {
+        List<TextOperation> operations = new ArrayList<>(entries.size());
+        entries.forEach(entry -> operations.add(entry.toOperation()));
+        return operations;
+    }
+
+    // Newest checkpoint revision at or before the given revision
+    private Integer findCheckpointRevision(String checkpointKey, int revision) {
+        Set<Object> fields = hashOperations.keys(checkpointKey);
+        Integer best = null;
+        if (fields != null) {
+            for (Object field : fields) {
+                try {
+                    int checkpointRevision = Integer.parseInt(String.valueOf(field));
+                    if (checkpointRevision <= revision && (best == null || checkpointRevision > best)) {
+                        best = checkpointRevision;
+                    }
+                } catch (NumberFormatException e) {
+                    // Not a checkpoint field
+                }
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,317 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.util.TarStreamReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Seeds a session with many documents at once from an uploaded archive. The upload is parsed
+ * entry by entry as it arrives (zip, tar, optionally gzip-compressed, or a JSON array of
+ * {"documentId", "content"} objects), so only the current document and one batch are held in
+ * memory. Every {@code codecafe.import.batch-size} documents are written in a single Redis
+ * pipeline instead of one round trip per command.
+ */
+@Service
+public class DocumentImportService {
+
+    private static final Logger logger = Logger.getLogger(DocumentImportService.class.getName());
+
+    public enum Format {
+        ZIP, TAR, JSON;
+
+        /**
+         * @param value A format name ("zip", "tar", "tgz", "json") or a media type.
+         * @return The format, or null if it is not supported.
+         */
+        public static Format from(String value) {
+            if (value == null) {
+                return null;
+            }
+            String normalized = value.toLowerCase();
+            int parameters = normalized.indexOf(';');
+            if (parameters >= 0) {
+                normalized = normalized.substring(0, parameters);
+            }
+            normalized = normalized.trim();
+            switch (normalized) {
+                case "zip":
+                case "application/zip":
+                case "application/x-zip-compressed":
+                    return ZIP;
+                case "tar":
+                case "tgz":
+                case "tar.gz":
+                case "application/x-tar":
+                case "application/gzip":
+                case "application/x-gzip":
+                case "application/x-gtar":
+                    return TAR;
+                case "json":
+                case "application/json":
+                    return JSON;
+                default:
+                    return null;
+            }
+        }
+    }
+
+    private final OtService otService;
+    private final ObjectMapper objectMapper;
+    private final int batchSize;
+    private final int maxDocuments;
+    private final int maxDocumentBytes;
+
+    public DocumentImportService(OtService otService, ObjectMapper objectMapper,
+                                 @Value("${codecafe.import.batch-size:100}") int batchSize,
+                                 @Value("${codecafe.import.max-documents:1000}") int maxDocuments,
+                                 @Value("${codecafe.import.max-document-bytes:1048576}") int maxDocumentBytes) {
+        this.otService = otService;
+        this.objectMapper = objectMapper;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxDocuments = maxDocuments;
+        this.maxDocumentBytes = maxDocumentBytes;
+    }
+
+    /**
+     * Imports all documents of the stream into the session, replacing documents with the same id.
+     * Directories, binary files, files above the size limit (in UTF-8 bytes, for every format),
+     * names that are not valid document ids and repeated ids (the first one wins) are skipped.
+     * Documents beyond {@code codecafe.import.max-documents} are not imported.
+     *
+     * @throws IOException if the stream is not a valid archive of the given format. Batches
+     *                     written before the error stay imported.
+     */
+    public ImportResult importDocuments(String sessionId, InputStream in, Format format) throws IOException {
+        ImportResult result = new ImportResult();
+        Map<String, String> batch = new LinkedHashMap<>();
+        InputStream source = decompressIfGzip(in);
+        switch (format) {
+            case ZIP:
+                readZip(sessionId, source, batch, result);
+                break;
+            case TAR:
+                readTar(sessionId, source, batch, result);
+                break;
+            case JSON:
+                readJson(sessionId, source, batch, result);
+                break;
+        }
+        flush(sessionId, batch);
+        logger.info(String.format("[Session: %s] Import finished: %d imported, %d skipped%s.", sessionId,
+                result.getImported(), result.getSkipped().size(), result.isTruncated() ? ", truncated" : ""));
+        return result;
+    }
+
+    private void readZip(String sessionId, InputStream in, Map<String, String> batch, ImportResult result) throws IOException {
+        ZipInputStream zip = new ZipInputStream(in, StandardCharsets.UTF_8);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) {
+                continue;
+            }
+            if (!accept(sessionId, entry.getName(), zip, batch, result)) {
+                return;
+            }
+        }
+    }
+
+    private void readTar(String sessionId, InputStream in, Map<String, String> batch, ImportResult result) throws IOException {
+        TarStreamReader tar = new TarStreamReader(in);
+        TarStreamReader.Entry entry;
+        while ((entry = tar.nextEntry()) != null) {
+            if (!entry.isFile()) {
+                continue;
+            }
+            if (entry.getSize() > maxDocumentBytes) {
+                skip(entry.getName(), "too large", result); // The reader skips the data on the next call
+                continue;
+            }
+            if (!accept(sessionId, entry.getName(), tar, batch, result)) {
+                return;
+            }
+        }
+    }
+
+    private void readJson(String sessionId, InputStream in, Map<String, String> batch, ImportResult result) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of documents.");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String documentId = null;
+                String content = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("documentId".equals(field) && value == JsonToken.VALUE_STRING) {
+                        documentId = parser.getText();
+                    } else if ("content".equals(field) && value == JsonToken.VALUE_STRING) {
+                        content = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                String name = documentId != null ? documentId : "";
+                if (content == null) {
+                    skip(name, "no content", result);
+                } else if (content.getBytes(StandardCharsets.UTF_8).length > maxDocumentBytes) {
+                    skip(name, "too large", result);
+                } else if (!add(sessionId, name, content, batch, result)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Reads one archive entry; returns false once the document limit is reached
+    private boolean accept(String sessionId, String name, InputStream entry, Map<String, String> batch,
+                           ImportResult result) throws IOException {
+        byte[] data = entry.readNBytes(maxDocumentBytes + 1);
+        if (data.length > maxDocumentBytes) {
+            skip(name, "too large", result);
+            return true;
+        }
+        String content = decodeText(data);
+        if (content == null) {
+            skip(name, "binary", result);
+            return true;
+        }
+        return add(sessionId, name, content, batch, result);
+    }
+
+    private boolean add(String sessionId, String name, String content, Map<String, String> batch, ImportResult result) {
+        String documentId = toDocumentId(name);
+        if (documentId == null) {
+            skip(name, "invalid name", result);
+            return true;
+        }
+        if (result.importedIds.contains(documentId)) {
+            skip(name, "duplicate", result); // The first entry with this id was imported
+            return true;
+        }
+        if (result.getImported() >= maxDocuments) {
+            result.setTruncated(true);
+            logger.warning(String.format("[Session: %s] Import stopped at the limit of %d documents.", sessionId, maxDocuments));
+            return false;
+        }
+        result.importedIds.add(documentId);
+        batch.put(documentId, content);
+        result.imported++;
+        if (batch.size() >= batchSize) {
+            flush(sessionId, batch);
+        }
+        return true;
+    }
+
+    private void flush(String sessionId, Map<String, String> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        otService.importDocuments(sessionId, new LinkedHashMap<>(batch));
+        batch.clear();
+    }
+
+    private static void skip(String name, String reason, ImportResult result) {
+        result.getSkipped().add(name + " (" + reason + ")");
+    }
+
+    /**
+     * Archive paths become document ids with forward slashes and without leading "./" or "/".
+     * @return The id, or null for metadata entries (__MACOSX, .DS_Store) and paths escaping the root.
+     */
+    static String toDocumentId(String name) {
+        String path = name.replace('\\', '/');
+        while (path.startsWith("./") || path.startsWith("/")) {
+            path = path.startsWith("./") ? path.substring(2) : path.substring(1);
+        }
+        if (path.isEmpty() || path.endsWith("/")) {
+            return null;
+        }
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals("..") || segment.equals(".")
+                    || segment.equals("__MACOSX") || segment.equals(".DS_Store")) {
+                return null;
+            }
+        }
+        return path;
+    }
+
+    // Strict UTF-8 decode; null for invalid UTF-8 or NUL bytes, which mark binary files
+    private static String decodeText(byte[] data) {
+        for (byte b : data) {
+            if (b == 0) {
+                return null;
+            }
+        }
+        try {
+            return StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    // Peeks at the gzip magic bytes (1f 8b) so .tar.gz and gzip-compressed JSON work without a separate format
+    private static InputStream decompressIfGzip(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        buffered.mark(2);
+        int first = buffered.read();
+        int second = buffered.read();
+        buffered.reset();
+        if (first == 0x1f && second == 0x8b) {
+            return new GZIPInputStream(buffered);
+        }
+        return buffered;
+    }
+
+    /**
+     * Outcome of an import: how many documents were written, which entries were skipped and why,
+     * and whether the document limit cut the import short.
+     */
+    public static class ImportResult {
+        private final Set<String> importedIds = new HashSet<>();
+        private int imported;
+        private final List<String> skipped = new ArrayList<>();
+        private boolean truncated;
+
+        public int getImported() {
+            return imported;
+        }
+
+        public List<String> getSkipped() {
+            return skipped;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        void setTruncated(boolean truncated) {
+            this.truncated = truncated;
+        }
+    }
+}
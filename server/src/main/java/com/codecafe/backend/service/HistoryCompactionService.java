@@ -0,0 +1,91 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.TextOperation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Keeps more wall-clock time in the same history memory. Every keystroke is its own raw
+ * history entry, and the raw list keeps the newest entries that clients can still base
+ * operations on. Entries leaving that window used to be trimmed; instead, on each pass, runs of
+ * consecutive operations from the same client within a time window are composed into one
+ * entry each (see {@link OtService#compactHistory}) and kept in the compacted history for
+ * catch-up and replay, at span granularity. Revision numbers, acks and the revisions clients
+ * may be based on are unaffected.
+ */
+@Service
+public class HistoryCompactionService implements OperationListener, MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(HistoryCompactionService.class.getName());
+
+    private final OtService otService;
+    private final boolean enabled;
+    private final long windowMillis;
+    private final int maxOperationsPerSpan;
+    private final int maxSpans;
+
+    // "sessionId/documentId" -> (sessionId, documentId) of documents edited since their last compaction
+    private final Map<String, Map.Entry<String, String>> editedDocuments = new ConcurrentHashMap<>();
+
+    private final AtomicLong compactedEntries = new AtomicLong();
+
+    public HistoryCompactionService(OtService otService,
+                                    @Value("${codecafe.ot.history.compaction.enabled:true}") boolean enabled,
+                                    @Value("${codecafe.ot.history.compaction.window-ms:2000}") long windowMillis,
+                                    @Value("${codecafe.ot.history.compaction.max-operations-per-entry:50}") int maxOperationsPerSpan,
+                                    @Value("${codecafe.ot.history.compaction.max-entries:500}") int maxSpans) {
+        this.otService = otService;
+        this.enabled = enabled;
+        this.windowMillis = windowMillis;
+        this.maxOperationsPerSpan = Math.max(1, maxOperationsPerSpan);
+        this.maxSpans = maxSpans;
+        logger.info(String.format("HistoryCompactionService initialized (enabled=%s, window=%dms, maxOpsPerEntry=%d).",
+                enabled, windowMillis, this.maxOperationsPerSpan));
+    }
+
+    @Override
+    public void operationApplied(String sessionId, String documentId, TextOperation operation, String newContent, int revision) {
+        if (enabled) {
+            editedDocuments.putIfAbsent(sessionId + "/" + documentId, new AbstractMap.SimpleImmutableEntry<>(sessionId, documentId));
+        }
+    }
+
+    @Override
+    public void documentReset(String sessionId, String documentId) {
+        editedDocuments.remove(sessionId + "/" + documentId);
+    }
+
+    /**
+     * Compacts the history of every document edited since the previous pass.
+     */
+    @Scheduled(fixedDelayString = "${codecafe.ot.history.compaction.interval-ms:5000}")
+    public void compact() {
+        if (!enabled || editedDocuments.isEmpty()) {
+            return;
+        }
+        for (String documentKey : editedDocuments.keySet()) {
+            Map.Entry<String, String> document = editedDocuments.remove(documentKey);
+            if (document != null) {
+                compactedEntries.addAndGet(otService.compactHistory(document.getKey(), document.getValue(),
+                        windowMillis, maxOperationsPerSpan, maxSpans));
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("codecafe.ot.history.compacted_entries", compactedEntries, AtomicLong::get)
+                .description("Raw history entries moved out of the raw window and composed into compacted spans")
+                .register(registry);
+    }
+}
@@ -0,0 +1,151 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.OtUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One entry of a document's operation history as stored in Redis.
+ *
+ * The raw history list holds one entry per revision, either a bare ops array (written before
+ * entries carried metadata) or {"c": clientId, "t": epochMillis, "o": ops}. Its position in
+ * the list gives its revision. The compacted history list holds spans
+ * {"b": baseRevision, "r": revision, "c": clientId, "t": epochMillis, "o": ops}, where ops is
+ * the composition of every operation from baseRevision to revision. Only the span boundaries
+ * can be served from a span.
+ */
+final class HistoryEntry {
+
+    private final String clientId;
+    private final long timestamp;
+    private final int baseRevision; // -1 for raw entries
+    private final int revision;     // -1 for raw entries
+    private final List<Object> ops;
+
+    private HistoryEntry(String clientId, long timestamp, int baseRevision, int revision, List<Object> ops) {
+        this.clientId = clientId;
+        this.timestamp = timestamp;
+        this.baseRevision = baseRevision;
+        this.revision = revision;
+        this.ops = ops;
+    }
+
+    static HistoryEntry raw(String clientId, long timestamp, List<Object> ops) {
+        return new HistoryEntry(clientId, timestamp, -1, -1, ops);
+    }
+
+    static HistoryEntry span(String clientId, long timestamp, int baseRevision, int revision, List<Object> ops) {
+        return new HistoryEntry(clientId, timestamp, baseRevision, revision, ops);
+    }
+
+    @SuppressWarnings("unchecked")
+    static HistoryEntry parse(ObjectMapper objectMapper, String json) throws JsonProcessingException {
+        if (json.startsWith("[")) {
+            return raw(null, 0L, objectMapper.readValue(json, new TypeReference<List<Object>>() {}));
+        }
+        Map<String, Object> fields = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        String clientId = (String) fields.get("c");
+        long timestamp = fields.get("t") instanceof Number ? ((Number) fields.get("t")).longValue() : 0L;
+        int baseRevision = fields.get("b") instanceof Number ? ((Number) fields.get("b")).intValue() : -1;
+        int revision = fields.get("r") instanceof Number ? ((Number) fields.get("r")).intValue() : -1;
+        if (!(fields.get("o") instanceof List)) {
+            throw new IllegalArgumentException("History entry without an ops array: " + json);
+        }
+        List<Object> ops = (List<Object>) fields.get("o");
+        if (baseRevision < 0 || revision < 0) {
+            return raw(clientId, timestamp, ops);
+        }
+        return span(clientId, timestamp, baseRevision, revision, ops);
+    }
+
+    String toJson(ObjectMapper objectMapper) throws JsonProcessingException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (isSpan()) {
+            fields.put("b", baseRevision);
+            fields.put("r", revision);
+        }
+        if (clientId != null) {
+            fields.put("c", clientId);
+        }
+        if (timestamp > 0) {
+            fields.put("t", timestamp);
+        }
+        fields.put("o", ops);
+        return objectMapper.writeValueAsString(fields);
+    }
+
+    /**
+     * Merges consecutive raw entries into spans: a run grows while the entries come from the
+     * same (known) client, lie within windowMillis of the run's first entry and the run has
+     * fewer than maxOperations entries. Entries without a client id stay spans of one. A run
+     * never extends past a multiple of boundaryInterval, so every checkpoint revision stays the
+     * start of a span.
+     *
+     * @param entries          Raw entries in revision order.
+     * @param firstRevision    The revision the first entry produced.
+     * @param boundaryInterval Checkpoint interval (0 for none).
+     */
+    static List<HistoryEntry> composeRuns(List<HistoryEntry> entries, int firstRevision, long windowMillis, int maxOperations,
+                                          int boundaryInterval) {
+        List<HistoryEntry> spans = new ArrayList<>();
+        int i = 0;
+        while (i < entries.size()) {
+            HistoryEntry first = entries.get(i);
+            TextOperation composed = new TextOperation(first.ops);
+            int runBase = firstRevision + i - 1;
+            int j = i + 1;
+            while (first.clientId != null && j < entries.size() && j - i < maxOperations) {
+                if (boundaryInterval > 0 && (firstRevision + j - 1) % boundaryInterval == 0) {
+                    break; // The next entry starts after a checkpoint revision
+                }
+                HistoryEntry next = entries.get(j);
+                if (!first.clientId.equals(next.clientId) || next.timestamp - first.timestamp > windowMillis) {
+                    break;
+                }
+                composed = OtUtils.compose(composed, new TextOperation(next.ops));
+                j++;
+            }
+            spans.add(span(first.clientId, first.timestamp, runBase, firstRevision + j - 1, composed.getOps()));
+            i = j;
+        }
+        return spans;
+    }
+
+    /**
+     * @return This raw entry as a span of one operation producing the given revision.
+     */
+    HistoryEntry atRevision(int producedRevision) {
+        return span(clientId, timestamp, producedRevision - 1, producedRevision, ops);
+    }
+
+    boolean isSpan() {
+        return baseRevision >= 0 && revision >= 0;
+    }
+
+    String getClientId() {
+        return clientId;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    int getBaseRevision() {
+        return baseRevision;
+    }
+
+    int getRevision() {
+        return revision;
+    }
+
+    TextOperation toOperation() {
+        return new TextOperation(ops);
+    }
+}
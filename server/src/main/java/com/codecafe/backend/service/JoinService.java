@@ -0,0 +1,123 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.DocumentState;
+import com.codecafe.backend.dto.UserInfoDTO;
+import com.codecafe.backend.util.PresenceCodec;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handles a user joining a session/document. The presence side of a join (writing the
+ * presence fields, refreshing their TTL and reading the participants) is a single Lua script
+ * call. Content and revision come from {@link OtService#getDocumentSnapshot}, so when many
+ * people open a shared link at once their joins share one content read per document.
+ * Which connection joined what is tracked in memory by {@link ConnectionRegistry}.
+ */
+@Service
+public class JoinService {
+
+    private static final Logger logger = Logger.getLogger(JoinService.class.getName());
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> joinDocumentScript;
+    private final SessionRegistryService sessionRegistryService;
+    private final OtService otService;
+
+    @SuppressWarnings("rawtypes")
+    public JoinService(RedisTemplate<String, Object> redisTemplate, RedisScript<List> joinDocumentScript,
+                       SessionRegistryService sessionRegistryService, OtService otService) {
+        this.redisTemplate = redisTemplate;
+        this.joinDocumentScript = joinDocumentScript;
+        this.sessionRegistryService = sessionRegistryService;
+        this.otService = otService;
+    }
+
+    /**
+     * Outcome of a join: the initial state for the joining client, and whether the user is
+     * new to the document (JOINED) or re-announced an existing entry (UPDATED).
+     */
+    public static class JoinResult {
+        private final DocumentState state;
+        private final boolean newParticipant;
+
+        public JoinResult(DocumentState state, boolean newParticipant) {
+            this.state = state;
+            this.newParticipant = newParticipant;
+        }
+
+        public DocumentState getState() {
+            return state;
+        }
+
+        public boolean isNewParticipant() {
+            return newParticipant;
+        }
+    }
+
+    /**
+     * Registers the user for the document and returns its full state (content, revision,
+     * participants including the joining user). Falls back to separate presence calls if the
+     * script fails.
+     */
+    public JoinResult join(String sessionId, String documentId, UserInfoDTO user) {
+        boolean newParticipant;
+        try {
+            Map<String, String> presenceFields = toFieldMap(runJoinScript(sessionId, documentId, user));
+            newParticipant = sessionRegistryService.userJoinedWithSnapshot(sessionId, documentId, user, presenceFields);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Join script failed for user [%s], falling back to separate calls: %s",
+                    sessionId, documentId, user.getId(), e.getMessage()), e);
+            newParticipant = sessionRegistryService.userJoined(sessionId, documentId, user);
+        }
+
+        // Coalesced with concurrent joins and state reads of the same document
+        OtService.DocumentSnapshot snapshot = otService.getDocumentSnapshot(sessionId, documentId);
+        DocumentState state = buildState(sessionId, documentId, snapshot.getContent(), snapshot.getRevision());
+        return new JoinResult(state, newParticipant);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<?> runJoinScript(String sessionId, String documentId, UserInfoDTO user) {
+        List<String> keys = List.of(sessionRegistryService.getSessionDocumentKey(sessionId, documentId));
+        // Plain string arguments, raw bytes back
+        List<?> result = (List<?>) redisTemplate.execute(joinDocumentScript, RedisSerializer.string(), (RedisSerializer) RedisSerializer.byteArray(), keys,
+                PresenceCodec.infoField(user.getId()), PresenceCodec.encodeInfo(user),
+                PresenceCodec.cursorField(user.getId()), PresenceCodec.encodeCursor(user.getCursorPosition(), user.getSelection()),
+                String.valueOf(TimeUnit.MINUTES.toSeconds(SessionRegistryService.SESSION_EXPIRY_MINUTES)));
+        if (result == null) {
+            throw new IllegalStateException("Join script returned no result.");
+        }
+        return result;
+    }
+
+    // HGETALL comes back as a flat field/value list
+    private static Map<String, String> toFieldMap(List<?> flat) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            fields.put(new String((byte[]) flat.get(i), StandardCharsets.UTF_8), new String((byte[]) flat.get(i + 1), StandardCharsets.UTF_8));
+        }
+        return fields;
+    }
+
+    private DocumentState buildState(String sessionId, String documentId, String content, int revision) {
+        DocumentState state = new DocumentState();
+        state.setSessionId(sessionId);
+        state.setDocumentId(documentId);
+        state.setDocument(content);
+        state.setRevision(revision);
+        // Served from memory: local users plus the snapshot the script just read
+        state.setParticipants(sessionRegistryService.getActiveParticipantsForDocument(sessionId, documentId, null));
+        return state;
+    }
+}
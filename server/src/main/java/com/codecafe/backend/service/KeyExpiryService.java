@@ -0,0 +1,99 @@
+package com.codecafe.backend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Refreshes expiries of Redis keys in batches. Callers record that a key was used with
+ * {@link #touch(String, long, TimeUnit)}; every refresh interval each touched key gets one
+ * EXPIRE, all sent in a single pipeline, no matter how often it was touched in between.
+ */
+@Service
+public class KeyExpiryService implements MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(KeyExpiryService.class.getName());
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    // Key -> TTL in seconds to apply on the next flush
+    private final Map<String, Long> pendingExpiries = new ConcurrentHashMap<>();
+
+    private final AtomicLong touches = new AtomicLong();
+    private final AtomicLong expiresSent = new AtomicLong();
+
+    public KeyExpiryService(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * Schedules the key's TTL to be reset to the given timeout on the next flush.
+     */
+    public void touch(String key, long timeout, TimeUnit unit) {
+        touches.incrementAndGet();
+        pendingExpiries.put(key, unit.toSeconds(timeout));
+    }
+
+    @Scheduled(fixedDelayString = "${codecafe.redis.ttl-refresh-interval-ms:30000}")
+    public void flush() {
+        if (pendingExpiries.isEmpty()) {
+            return;
+        }
+        Map<String, Long> batch = new LinkedHashMap<>();
+        for (String key : pendingExpiries.keySet()) {
+            Long seconds = pendingExpiries.remove(key);
+            if (seconds != null) {
+                batch.put(key, seconds);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    batch.forEach((key, seconds) -> ops.expire(key, seconds, TimeUnit.SECONDS));
+                    return null;
+                }
+            });
+            expiresSent.addAndGet(batch.size());
+            logger.fine(String.format("Refreshed TTL of %d Redis key(s).", batch.size()));
+        } catch (Exception e) {
+            // Keep them for the next run, unless they were touched again meanwhile
+            batch.forEach(pendingExpiries::putIfAbsent);
+            logger.severe(String.format("Redis error refreshing TTL of %d key(s): %s", batch.size(), e.getMessage()));
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("codecafe.redis.ttl.touches", touches, AtomicLong::get)
+                .description("Key expiry refreshes requested")
+                .register(registry);
+        FunctionCounter.builder("codecafe.redis.ttl.expires", expiresSent, AtomicLong::get)
+                .description("EXPIRE commands sent after batching")
+                .register(registry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.AppliedOperation;
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.CompactOperationCodec;
+import com.codecafe.backend.util.SessionMessageHeaders;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Broadcasts committed operations to the operation topics of their document, as JSON and,
+ * if enabled, in the compact binary encoding. Used for client operations and for operations
+ * the server commits itself (e.g. content set through the REST API as a diff).
+ */
+@Service
+public class OperationBroadcastService {
+
+    private static final Logger logger = Logger.getLogger(OperationBroadcastService.class.getName());
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ConnectionRegistry connectionRegistry;
+    private final boolean binaryOperationsEnabled;
+    private final boolean echoOperationToSender;
+
+    public OperationBroadcastService(SimpMessagingTemplate messagingTemplate,
+                                     ConnectionRegistry connectionRegistry,
+                                     @Value("${codecafe.websocket.binary-operations.enabled:true}") boolean binaryOperationsEnabled,
+                                     @Value("${codecafe.ot.echo-operation-to-sender:true}") boolean echoOperationToSender) {
+        this.messagingTemplate = messagingTemplate;
+        this.connectionRegistry = connectionRegistry;
+        this.binaryOperationsEnabled = binaryOperationsEnabled;
+        this.echoOperationToSender = echoOperationToSender;
+    }
+
+    /**
+     * @param selection          The sender's selection to forward with the op (may be null).
+     * @param cursorPosition     The sender's cursor to forward with the op (may be null).
+     * @param originSimpSessionId The connection the op came from, or null for server-made ops.
+     */
+    public void broadcast(String sessionId, String documentId, String clientId, AppliedOperation applied,
+                          Object selection, Object cursorPosition, String originSimpSessionId) {
+        TextOperation transformedOp = applied.getOperation();
+
+        // Prepare the payload for broadcasting
+        Map<String, Object> broadcastPayload = new HashMap<>();
+        broadcastPayload.put("documentId", documentId);
+        broadcastPayload.put("clientId", clientId);
+        broadcastPayload.put("operation", transformedOp.getOps());
+        broadcastPayload.put("sessionId", sessionId);
+        broadcastPayload.put("revision", applied.getRevision());
+
+        if (selection != null) {
+            broadcastPayload.put("selection", selection);
+        }
+        if (cursorPosition != null) {
+            broadcastPayload.put("cursorPosition", cursorPosition);
+        }
+
+        // Broadcast to the session-and-document-specific topic
+        String destination = String.format("/topic/sessions/%s/operations/document/%s", sessionId, documentId);
+        messagingTemplate.convertAndSend(destination, broadcastPayload, broadcastHeaders(originSimpSessionId));
+        logger.fine(String.format("Broadcasted transformed op (with selection/cursor if present) from client [%s] for session [%s], doc [%s] to %s. Payload: %s", clientId, sessionId, documentId, destination, broadcastPayload));
+
+        // Same op in the compact encoding for clients on the native endpoint, encoded only
+        // when a connection on this node subscribed to the binary topic.
+        String binaryDestination = String.format("/topic/sessions/%s/operations-bin/document/%s", sessionId, documentId);
+        if (binaryOperationsEnabled && connectionRegistry.hasSubscribers(binaryDestination)) {
+            byte[] binaryPayload = CompactOperationCodec.encodeBroadcast(clientId, sessionId, documentId,
+                    applied.getRevision(), transformedOp, selection);
+            // byte[] payloads get content-type application/octet-stream, which STOMP sends as a binary frame
+            messagingTemplate.convertAndSend(binaryDestination, binaryPayload, broadcastHeaders(originSimpSessionId));
+        }
+    }
+
+    /**
+     * The sender learns about its own op from the ack; optionally skip echoing the full op back to it.
+     * Each send needs its own headers: converting a message sets the content type on the (mutable)
+     * headers it was given, so reusing them would send the binary payload as JSON.
+     */
+    private Map<String, Object> broadcastHeaders(String originSimpSessionId) {
+        return (!echoOperationToSender && originSimpSessionId != null)
+                ? SessionMessageHeaders.excludingOrigin(originSimpSessionId) : null;
+    }
+}
@@ -0,0 +1,28 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.TextOperation;
+
+/**
+ * Extension point for state that has to follow the document as operations are applied
+ * (e.g. stored cursors). Beans implementing this are called by {@link OtService} while it
+ * still holds its lock, so every listener sees operations in exactly the order they were
+ * applied. Implementations must be quick and must not call back into {@link OtService}.
+ */
+public interface OperationListener {
+
+    /**
+     * @param sessionId  The session the document belongs to.
+     * @param documentId The document the operation was applied to.
+     * @param operation  The transformed operation as it was applied.
+     * @param newContent The document content after the operation.
+     * @param revision   The revision the operation produced.
+     */
+    void operationApplied(String sessionId, String documentId, TextOperation operation, String newContent, int revision);
+
+    /**
+     * Called when a document's content was replaced outside the operation pipeline
+     * (set directly or reset), so any state derived from the previous content is stale.
+     */
+    default void documentReset(String sessionId, String documentId) {
+    }
+}
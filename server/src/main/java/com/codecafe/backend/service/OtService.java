@@ -1,13 +1,23 @@
 package com.codecafe.backend.service;
 
+import com.codecafe.backend.dto.AppliedOperation;
+import com.codecafe.backend.dto.OperationRange;
 import com.codecafe.backend.dto.TextOperation;
 import com.codecafe.backend.util.OtUtils;
+import com.codecafe.backend.util.SingleFlight;
+import com.codecafe.backend.util.TextDiff;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
@@ -15,7 +25,10 @@ import org.springframework.data.redis.serializer.SerializationException;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -33,30 +46,267 @@ public class OtService {
     private final ValueOperations<String, Object> valueOperations;
     // Use <String, Object> as RedisTemplate is configured this way
     private final ListOperations<String, Object> historyListOperations;
-    private final RedisScript<Boolean> updateContentAndHistoryScript;
+    private final RedisScript<Long> updateContentAndHistoryScript;
+    private final RedisScript<Long> compactHistoryScript;
     private final ObjectMapper objectMapper; // For JSON serialization/deserialization
+    private final ObjectProvider<OperationListener> operationListeners;
+    private final int checkpointInterval;
+    private final int maxCheckpoints;
+    // Raw entries the update script keeps before trimming: the raw window plus, with compaction
+    // on, room for the entries that left the window until the next compaction pass moves them
+    private final int rawHistoryLimit;
+    // "sessionId/documentId" -> in-flight snapshot read
+    private final SingleFlight<String, DocumentSnapshot> snapshotReads = new SingleFlight<>();
 
     @Autowired
     public OtService(RedisTemplate<String, Object> redisTemplate,
-                     RedisScript<Boolean> updateContentAndHistoryScript,
-                     ObjectMapper objectMapper) { // Inject ObjectMapper
+                     RedisScript<Long> updateContentAndHistoryScript,
+                     RedisScript<Long> compactHistoryScript,
+                     ObjectMapper objectMapper, // Inject ObjectMapper
+                     ObjectProvider<OperationListener> operationListeners,
+                     @Value("${codecafe.ot.checkpoints.interval:100}") int checkpointInterval,
+                     @Value("${codecafe.ot.checkpoints.max-per-document:50}") int maxCheckpoints,
+                     @Value("${codecafe.ot.history.compaction.enabled:true}") boolean historyCompactionEnabled,
+                     @Value("${codecafe.ot.history.compaction.overflow-size:500}") int compactionOverflowSize) {
         this.redisTemplate = redisTemplate;
         this.valueOperations = redisTemplate.opsForValue();
         // Get ListOperations consistent with RedisTemplate configuration
         this.historyListOperations = redisTemplate.opsForList();
         this.updateContentAndHistoryScript = updateContentAndHistoryScript;
+        this.compactHistoryScript = compactHistoryScript;
         this.objectMapper = objectMapper;
+        this.operationListeners = operationListeners;
+        this.checkpointInterval = checkpointInterval;
+        this.maxCheckpoints = maxCheckpoints;
+        this.rawHistoryLimit = MAX_HISTORY_SIZE_PER_DOC + (historyCompactionEnabled ? Math.max(0, compactionOverflowSize) : 0);
         logger.info("OtService initialized.");
     }
 
-    private String getContentKey(String sessionId, String documentId) {
+    String getContentKey(String sessionId, String documentId) {
         return String.format(CLUSTER_KEY_FORMAT, sessionId, "content", documentId);
     }
 
-    private String getHistoryKey(String sessionId, String documentId) {
+    String getHistoryKey(String sessionId, String documentId) {
         return String.format(CLUSTER_KEY_FORMAT, sessionId, "history", documentId);
     }
 
+    // Revision counter; the history list only keeps the newest MAX_HISTORY_SIZE_PER_DOC ops
+    String getRevisionKey(String sessionId, String documentId) {
+        return String.format(CLUSTER_KEY_FORMAT, sessionId, "revision", documentId);
+    }
+
+    // Older history composed into revision spans (see HistoryEntry); the history list is the raw tail after it
+    String getCompactedHistoryKey(String sessionId, String documentId) {
+        return String.format(CLUSTER_KEY_FORMAT, sessionId, "history-compacted", documentId);
+    }
+
+    // Hash of revision -> document content at that revision, written every checkpointInterval revisions
+    String getCheckpointKey(String sessionId, String documentId) {
+        return String.format(CLUSTER_KEY_FORMAT, sessionId, "checkpoints", documentId);
+    }
+
+    // Set of the ids of all documents of a session (same hash slot as the session's document keys)
+    String getSessionDocumentsKey(String sessionId) {
+        return String.format("doc:{%s}:documents", sessionId);
+    }
+
+    // Marker that the documents set of a session also holds documents created before the set existed
+    String getSessionDocumentsIndexedKey(String sessionId) {
+        return String.format("doc:{%s}:documents-indexed", sessionId);
+    }
+
+    int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    // Hash of clientId -> last committed client sequence number (and clientId:revision -> its revision)
+    private String getClientSeqKey(String sessionId, String documentId) {
+        return String.format(CLUSTER_KEY_FORMAT, sessionId, "clientseq", documentId);
+    }
+
+    /**
+     * Outcome of a reconnect resync: the missed operations since the client's revision and,
+     * if the client had a pending operation, how it was committed.
+     */
+    public static class ResyncResult {
+        private final OperationRange missedOperations;
+        private final AppliedOperation pendingOperation;
+
+        private ResyncResult(OperationRange missedOperations, AppliedOperation pendingOperation) {
+            this.missedOperations = missedOperations;
+            this.pendingOperation = pendingOperation;
+        }
+
+        /** @return The committed operations since the client's revision, or null if the history no longer covers them. */
+        public OperationRange getMissedOperations() {
+            return missedOperations;
+        }
+
+        /** @return How the pending operation was committed (possibly as a duplicate), or null if there was none or it was not applied. */
+        public AppliedOperation getPendingOperation() {
+            return pendingOperation;
+        }
+    }
+
+    /**
+     * Content of a document together with its revision. Shared between concurrent readers.
+     */
+    public static class DocumentSnapshot {
+        private final String content;
+        private final int revision;
+
+        DocumentSnapshot(String content, int revision) {
+            this.content = content;
+            this.revision = revision;
+        }
+
+        public String getContent() {
+            return content;
+        }
+
+        public int getRevision() {
+            return revision;
+        }
+    }
+
+    /**
+     * Reads content and revision of a document in one round trip. Concurrent calls for the
+     * same document (e.g. every client of a document re-requesting state after a reconnect
+     * wave) share a single read and the same snapshot instead of each fetching the content.
+     */
+    public DocumentSnapshot getDocumentSnapshot(String sessionId, String documentId) {
+        String documentKey = sessionId + "/" + documentId;
+        return snapshotReads.load(documentKey, () -> readDocumentSnapshot(sessionId, documentId));
+    }
+
+    /**
+     * Runs the action and reads the document's snapshot while holding the lock operations are
+     * applied and listeners notified under, so no operation can fall between the two. Used to
+     * hand out a snapshot that lines up exactly with a listener's state (e.g. spectator updates).
+     */
+    public DocumentSnapshot getDocumentSnapshotLocked(String sessionId, String documentId, Runnable underLock) {
+        serviceLock.lock();
+        try {
+            underLock.run();
+            return readDocumentSnapshot(sessionId, documentId);
+        } finally {
+            serviceLock.unlock();
+        }
+    }
+
+    private DocumentSnapshot readDocumentSnapshot(String sessionId, String documentId) {
+        String contentKey = getContentKey(sessionId, documentId);
+        String revisionKey = getRevisionKey(sessionId, documentId);
+        String historyKey = getHistoryKey(sessionId, documentId);
+        try {
+            List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.opsForValue().get(contentKey);
+                    ops.opsForValue().get(revisionKey);
+                    ops.opsForList().size(historyKey);
+                    return null;
+                }
+            });
+            return toSnapshot(results.get(0), results.get(1), results.get(2));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Pipelined snapshot read failed, reading separately: %s",
+                    sessionId, documentId, e.getMessage()), e);
+            return new DocumentSnapshot(getDocumentContent(sessionId, documentId), getRevision(sessionId, documentId));
+        }
+    }
+
+    private static DocumentSnapshot toSnapshot(Object content, Object revision, Object historyLength) {
+        int revisionNumber;
+        if (revision instanceof Number) {
+            revisionNumber = ((Number) revision).intValue();
+        } else if (revision instanceof String) {
+            revisionNumber = Integer.parseInt((String) revision);
+        } else {
+            // Documents written before the revision counter existed
+            revisionNumber = (historyLength instanceof Number) ? ((Number) historyLength).intValue() : 0;
+        }
+        return new DocumentSnapshot((content instanceof String) ? (String) content : "", revisionNumber);
+    }
+
+    /**
+     * @return The ids of all documents recorded for the session, sorted.
+     */
+    public List<String> getSessionDocumentIds(String sessionId) {
+        indexSessionDocuments(sessionId);
+        Set<Object> members = redisTemplate.opsForSet().members(getSessionDocumentsKey(sessionId));
+        List<String> documentIds = new ArrayList<>();
+        if (members != null) {
+            members.forEach(member -> documentIds.add(String.valueOf(member)));
+        }
+        Collections.sort(documentIds);
+        return documentIds;
+    }
+
+    /**
+     * Documents created before the session documents set was introduced are only known by their
+     * content keys. The first listing of a session finds them with SCAN and adds them to the set;
+     * the marker key makes this a one-time pass per session.
+     */
+    private void indexSessionDocuments(String sessionId) {
+        String indexedKey = getSessionDocumentsIndexedKey(sessionId);
+        if (Boolean.TRUE.equals(redisTemplate.hasKey(indexedKey))) {
+            return;
+        }
+        String prefix = getContentKey(sessionId, "");
+        ScanOptions options = ScanOptions.scanOptions().match(escapeGlob(prefix) + "*").count(1000).build();
+        List<Object> documentIds = new ArrayList<>();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            keys.forEachRemaining(key -> documentIds.add(key.substring(prefix.length())));
+        }
+        if (!documentIds.isEmpty()) {
+            redisTemplate.opsForSet().add(getSessionDocumentsKey(sessionId), documentIds.toArray());
+        }
+        valueOperations.set(indexedKey, "1");
+        logger.info(String.format("[Session: %s] Indexed %d existing documents.", sessionId, documentIds.size()));
+    }
+
+    private static String escapeGlob(String value) {
+        return value.replaceAll("([*?\\[\\]\\\\])", "\\\\$1");
+    }
+
+    /**
+     * Reads content and revision of several documents in one MULTI/EXEC transaction. Operations
+     * are committed by a script, so no commit can fall between a document's content and revision
+     * reads: every content is exactly the content at the returned revision.
+     *
+     * @return Snapshots in the order of documentIds.
+     */
+    public Map<String, DocumentSnapshot> getDocumentSnapshots(String sessionId, List<String> documentIds) {
+        Map<String, DocumentSnapshot> snapshots = new LinkedHashMap<>();
+        if (documentIds.isEmpty()) {
+            return snapshots;
+        }
+        List<Object> results = redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.multi();
+                for (String documentId : documentIds) {
+                    ops.opsForValue().get(getContentKey(sessionId, documentId));
+                    ops.opsForValue().get(getRevisionKey(sessionId, documentId));
+                    ops.opsForList().size(getHistoryKey(sessionId, documentId));
+                }
+                return ops.exec();
+            }
+        });
+        if (results == null || results.size() != documentIds.size() * 3) {
+            throw new IllegalStateException(String.format("[Session: %s] Snapshot transaction returned no results.", sessionId));
+        }
+        for (int i = 0; i < documentIds.size(); i++) {
+            snapshots.put(documentIds.get(i), toSnapshot(results.get(3 * i), results.get(3 * i + 1), results.get(3 * i + 2)));
+        }
+        return snapshots;
+    }
+
     /**
      * Gets the current content for a specific document from Redis.
      * @param sessionId The identifier of the session.
@@ -75,22 +325,210 @@ public class OtService {
     }
 
     /**
-     * Gets the current server revision number (size of history list) from Redis.
+     * Gets the current server revision number from Redis.
+     * Documents written before the revision counter existed fall back to the size of their history list.
      * @param sessionId The identifier of the session.
      * @param documentId The identifier of the document.
-     * @return The revision number for the document (0 if history list doesn't exist).
+     * @return The revision number for the document (0 if it has no operations yet).
      */
     public int getRevision(String sessionId, String documentId) {
+        String revisionKey = getRevisionKey(sessionId, documentId);
         String historyKey = getHistoryKey(sessionId, documentId);
         try {
+            Object revision = valueOperations.get(revisionKey);
+            if (revision instanceof Number) {
+                return ((Number) revision).intValue();
+            }
+            if (revision instanceof String) {
+                return Integer.parseInt((String) revision);
+            }
             Long size = historyListOperations.size(historyKey);
             return (size != null) ? size.intValue() : 0;
         } catch (Exception e) {
-             logger.log(Level.SEVERE, String.format("Redis error getting size for key [%s]: %s", historyKey, e.getMessage()), e);
+             logger.log(Level.SEVERE, String.format("Redis error getting revision for key [%s]: %s", revisionKey, e.getMessage()), e);
              return 0;
         }
     }
 
+    /**
+     * Gets the committed operations that took the document from fromRevision to its current revision.
+     * @param sessionId The identifier of the session.
+     * @param documentId The identifier of the document.
+     * @param fromRevision The revision the caller already has.
+     * @return The operations in order, or null if fromRevision is ahead of the server or older
+     *         than the retained history.
+     */
+    public OperationRange getOperationsSince(String sessionId, String documentId, int fromRevision) {
+        // Same lock as writes, so revision, history length and range belong together
+        serviceLock.lock();
+        try {
+            int serverRevision = getRevision(sessionId, documentId);
+            List<TextOperation> operations = loadOperationsSince(sessionId, documentId, fromRevision, serverRevision);
+            return operations != null ? new OperationRange(fromRevision, serverRevision, operations) : null;
+        } finally {
+            serviceLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the operations after fromRevision from the history.
+     * @return The operations, or null if the history no longer reaches back to fromRevision.
+     */
+    private List<TextOperation> loadOperationsSince(String sessionId, String documentId, int fromRevision, int serverRevision) {
+        List<HistoryEntry> entries = loadHistoryEntries(sessionId, documentId, fromRevision, serverRevision, serverRevision);
+        if (entries == null || reachedRevision(entries, fromRevision) != serverRevision) {
+            return null;
+        }
+        List<TextOperation> operations = new ArrayList<>(entries.size());
+        entries.forEach(entry -> operations.add(entry.toOperation()));
+        return operations;
+    }
+
+    private static int reachedRevision(List<HistoryEntry> entries, int fromRevision) {
+        return entries.isEmpty() ? fromRevision : entries.get(entries.size() - 1).getRevision();
+    }
+
+    /**
+     * Reads the history entries from fromRevision towards untilRevision as spans. The raw history
+     * list holds the ops of the newest revisions, so its first entry produced revision
+     * (serverRevision - size + 1). Older revisions are served from the compacted spans, which
+     * hold composed operations: the range has to start at a span boundary, and it ends at the
+     * last boundary at or before untilRevision.
+     * @return The entries (possibly ending before untilRevision), or null if the history does not
+     *         reach back to fromRevision.
+     */
+    private List<HistoryEntry> loadHistoryEntries(String sessionId, String documentId, int fromRevision, int untilRevision, int serverRevision) {
+        if (fromRevision < 0 || fromRevision > untilRevision || untilRevision > serverRevision) {
+            return null;
+        }
+        if (fromRevision == untilRevision) {
+            return Collections.emptyList();
+        }
+        String historyKey = getHistoryKey(sessionId, documentId);
+        Long size = historyListOperations.size(historyKey);
+        int firstRetainedBase = serverRevision - (size != null ? size.intValue() : 0);
+        List<HistoryEntry> entries = new ArrayList<>();
+        if (fromRevision < firstRetainedBase) {
+            int reached = loadCompactedEntries(sessionId, documentId, fromRevision, Math.min(untilRevision, firstRetainedBase), entries);
+            if (reached < 0) {
+                return null;
+            }
+            if (reached < firstRetainedBase) {
+                return entries; // Ends inside a span or at a gap before the raw history
+            }
+        }
+        if (untilRevision <= firstRetainedBase) {
+            return entries;
+        }
+        int rangeStart = Math.max(fromRevision, firstRetainedBase) - firstRetainedBase;
+        List<Object> rawOps = historyListOperations.range(historyKey, rangeStart, untilRevision - firstRetainedBase - 1);
+        if (rawOps != null) {
+            int producedRevision = firstRetainedBase + rangeStart;
+            for (Object rawOp : rawOps) {
+                producedRevision++;
+                if (!(rawOp instanceof String)) {
+                    logger.warning(String.format("[Session: %s, Doc: %s] Unexpected non-string type found in history: %s",
+                           sessionId, documentId, rawOp != null ? rawOp.getClass().getName() : "null"));
+                    continue; // Skip non-string entries
+                }
+                String opJson = (String) rawOp;
+                try {
+                    entries.add(HistoryEntry.parse(objectMapper, opJson).atRevision(producedRevision));
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    logger.warning(String.format("[Session: %s, Doc: %s] Failed to parse operation JSON from history: %s. JSON: %s",
+                           sessionId, documentId, e.getMessage(), opJson));
+                    throw new IllegalStateException("Invalid operation format found in Redis history list for key: " + historyKey, e);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Adds the compacted spans from the one starting at fromRevision up to the last one ending
+     * at or before untilRevision to entries. Spans are kept in revision order, so the first one
+     * is found by a binary search over single elements, and since every span covers at least
+     * one revision, only the next (untilRevision - fromRevision) spans are read. The cost
+     * depends on the requested range, not on how much history is retained.
+     * @return The revision the added spans reach, or -1 if no span starts at fromRevision.
+     */
+    private int loadCompactedEntries(String sessionId, String documentId, int fromRevision, int untilRevision, List<HistoryEntry> entries) {
+        String compactedKey = getCompactedHistoryKey(sessionId, documentId);
+        long startIndex = findFirstSpanEndingAfter(sessionId, documentId, compactedKey, fromRevision);
+        if (startIndex < 0) {
+            return -1;
+        }
+        List<Object> rawSpans = historyListOperations.range(compactedKey, startIndex, startIndex + (untilRevision - fromRevision) - 1);
+        if (rawSpans == null || rawSpans.isEmpty()) {
+            return -1;
+        }
+        int reached = fromRevision;
+        for (Object rawSpan : rawSpans) {
+            HistoryEntry span = parseSpan(sessionId, documentId, rawSpan);
+            if (span == null) {
+                return entries.isEmpty() ? -1 : reached;
+            }
+            if (span.getBaseRevision() != reached) {
+                // fromRevision lies inside a span (or the list was trimmed meanwhile), or a gap follows
+                return entries.isEmpty() ? -1 : reached;
+            }
+            if (span.getRevision() > untilRevision) {
+                return reached; // untilRevision lies inside the span
+            }
+            entries.add(span);
+            reached = span.getRevision();
+        }
+        return reached;
+    }
+
+    // Index of the first compacted span whose revision is after the given one, or -1 if there is none
+    private long findFirstSpanEndingAfter(String sessionId, String documentId, String compactedKey, int revision) {
+        Long length = historyListOperations.size(compactedKey);
+        long low = 0;
+        long high = (length != null ? length : 0) - 1;
+        long found = -1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            HistoryEntry span = parseSpan(sessionId, documentId, historyListOperations.index(compactedKey, middle));
+            if (span == null) {
+                return -1; // Unreadable, or trimmed since the length was read
+            }
+            if (span.getRevision() > revision) {
+                found = middle;
+                high = middle - 1;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return found;
+    }
+
+    private HistoryEntry parseSpan(String sessionId, String documentId, Object rawSpan) {
+        if (!(rawSpan instanceof String)) {
+            return null;
+        }
+        try {
+            return HistoryEntry.parse(objectMapper, (String) rawSpan);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            logger.warning(String.format("[Session: %s, Doc: %s] Failed to parse compacted history entry: %s", sessionId, documentId, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Reads the history between two revisions under the service lock, for replay.
+     * @return The entries as spans from fromRevision up to the last span boundary at or before
+     *         untilRevision, or null if the history does not reach back to fromRevision.
+     */
+    List<HistoryEntry> readHistory(String sessionId, String documentId, int fromRevision, int untilRevision) {
+        serviceLock.lock();
+        try {
+            return loadHistoryEntries(sessionId, documentId, fromRevision, untilRevision, getRevision(sessionId, documentId));
+        } finally {
+            serviceLock.unlock();
+        }
+    }
+
     /**
      * Process an incoming operation from a client against a specified revision for a specific document using Redis state.
      * Transforms the operation against concurrent operations, applies it, updates Redis, and adds it to the history list in Redis.
@@ -101,14 +539,38 @@ public class OtService {
      * @param documentId     The identifier of the document being modified.
      * @param clientRevision The revision number the client based their operation on.
      * @param operation      The operation from the client.
-     * @return The transformed operation that was applied.
+     * @return The transformed operation that was applied, with the revision it produced.
      * @throws IllegalArgumentException if the clientRevision is invalid or transformation/application fails.
      */
-    public TextOperation receiveOperation(String sessionId, String documentId, int clientRevision, TextOperation operation) throws IllegalArgumentException {
+    public AppliedOperation receiveOperation(String sessionId, String documentId, int clientRevision, TextOperation operation) throws IllegalArgumentException {
+        return receiveOperation(sessionId, documentId, clientRevision, operation, null, null);
+    }
+
+    /**
+     * Same as {@link #receiveOperation(String, String, int, TextOperation)}, deduplicated by a
+     * client sequence number: if clientId has already committed an operation with this or a
+     * higher sequence number, nothing is applied and a duplicate result carrying the revision
+     * of that commit is returned.
+     *
+     * @param clientId  The client the sequence number belongs to (may be null to skip deduplication).
+     * @param clientSeq The client's sequence number for this operation (may be null).
+     */
+    public AppliedOperation receiveOperation(String sessionId, String documentId, int clientRevision, TextOperation operation,
+                                             String clientId, Long clientSeq) throws IllegalArgumentException {
         serviceLock.lock();
         String contentKey = getContentKey(sessionId, documentId);
         String historyKey = getHistoryKey(sessionId, documentId);
         try {
+            boolean sequenced = clientId != null && clientSeq != null;
+            if (sequenced) {
+                AppliedOperation earlierCommit = findCommittedSequence(sessionId, documentId, clientId, clientSeq);
+                if (earlierCommit != null) {
+                    logger.info(String.format("[Session: %s, Doc: %s] Op seq %d from client [%s] was already committed as revision %d. Not applying it again.",
+                            sessionId, documentId, clientSeq, clientId, earlierCommit.getRevision()));
+                    return earlierCommit;
+                }
+            }
+
             String currentContent = getDocumentContent(sessionId, documentId);
             int serverRevision = getRevision(sessionId, documentId);
 
@@ -121,43 +583,25 @@ public class OtService {
                 );
             }
 
-            List<TextOperation> concurrentOps = new ArrayList<>();
-            if (clientRevision < serverRevision) {
-                 try {
-                     // Retrieve history as List of Objects (expecting Strings)
-                     List<Object> rawOps = historyListOperations.range(historyKey, clientRevision, serverRevision - 1);
-                     if (rawOps != null) {
-                         for (Object rawOp : rawOps) {
-                             if (!(rawOp instanceof String)) {
-                                 logger.warning(String.format("[Session: %s, Doc: %s] Unexpected non-string type found in history: %s",
-                                        sessionId, documentId, rawOp != null ? rawOp.getClass().getName() : "null"));
-                                 continue; // Skip non-string entries
-                             }
-                             String opJson = (String) rawOp;
-                             try {
-                                 // Deserialize each JSON string into List<Object>
-                                 List<Object> opsList = objectMapper.readValue(opJson, new TypeReference<List<Object>>() {});
-                                 // Construct TextOperation from the list
-                                 concurrentOps.add(new TextOperation(opsList));
-                             } catch (JsonProcessingException e) {
-                                 logger.warning(String.format("[Session: %s, Doc: %s] Failed to parse operation JSON from history: %s. JSON: %s",
-                                        sessionId, documentId, e.getMessage(), opJson));
-                                 // Decide how to handle parsing errors - skip? throw? For now, throw.
-                                 throw new IllegalStateException("Invalid operation format found in Redis history list for key: " + historyKey, e);
-                             }
-                         }
-                     }
-                 } catch (SerializationException e) {
-                     // Catch potential Redis serializer errors specifically
-                     logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Redis DESERIALIZATION error getting concurrent ops (rev %d to %d) for key [%s]: %s",
-                             sessionId, documentId, clientRevision, serverRevision - 1, historyKey, e.getMessage()), e);
-                     throw new RuntimeException("Failed to deserialize concurrent operations from Redis history.", e);
-                 }
-                  catch (Exception e) {
-                     logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Generic Redis error getting concurrent ops (rev %d to %d) for key [%s]: %s",
-                             sessionId, documentId, clientRevision, serverRevision - 1, historyKey, e.getMessage()), e);
-                     throw new RuntimeException("Failed to retrieve concurrent operations from Redis history.", e);
-                 }
+            List<TextOperation> concurrentOps;
+            try {
+                concurrentOps = loadOperationsSince(sessionId, documentId, clientRevision, serverRevision);
+            } catch (SerializationException e) {
+                // Catch potential Redis serializer errors specifically
+                logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Redis DESERIALIZATION error getting concurrent ops (rev %d to %d) for key [%s]: %s",
+                        sessionId, documentId, clientRevision, serverRevision - 1, historyKey, e.getMessage()), e);
+                throw new RuntimeException("Failed to deserialize concurrent operations from Redis history.", e);
+            } catch (IllegalStateException e) {
+                throw e;
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Generic Redis error getting concurrent ops (rev %d to %d) for key [%s]: %s",
+                        sessionId, documentId, clientRevision, serverRevision - 1, historyKey, e.getMessage()), e);
+                throw new RuntimeException("Failed to retrieve concurrent operations from Redis history.", e);
+            }
+            if (concurrentOps == null) {
+                throw new IllegalArgumentException(
+                        String.format("[Session: %s, Doc: %s] Client revision %d is older than the retained history (server revision %d). Client must resync.",
+                                sessionId, documentId, clientRevision, serverRevision));
             }
             logger.fine(String.format("[Session: %s, Doc: %s] Found %d concurrent operations in Redis history to transform against.", 
                 sessionId, documentId, concurrentOps.size()));
@@ -176,16 +620,26 @@ public class OtService {
             String newContent = OtUtils.apply(currentContent, transformedOp);
             logger.info(String.format("[Session: %s, Doc: %s] Document content after applying transformed op: '%s'", sessionId, documentId, newContent));
 
+            int newRevision = serverRevision + 1;
             try {
-                // Serialize the transformed operation's OPS LIST to JSON
-                String transformedOpJson = objectMapper.writeValueAsString(transformedOp.getOps());
+                // Serialize the transformed operation's OPS LIST to JSON, with the client and time for history compaction
+                String transformedOpJson = HistoryEntry.raw(clientId, System.currentTimeMillis(), transformedOp.getOps()).toJson(objectMapper);
 
                 // Execute Lua script to update content and add JSON op to history
-                List<String> keys = List.of(contentKey, historyKey);
-                redisTemplate.execute(updateContentAndHistoryScript, keys, newContent, transformedOpJson, String.valueOf(MAX_HISTORY_SIZE_PER_DOC));
+                List<String> keys = List.of(contentKey, historyKey, getRevisionKey(sessionId, documentId), getClientSeqKey(sessionId, documentId),
+                        getCheckpointKey(sessionId, documentId), getSessionDocumentsKey(sessionId));
+                // The limit is passed as a number: the template JSON-encodes arguments, and a JSON string would not parse in Lua
+                Long committedRevision = sequenced
+                        ? redisTemplate.execute(updateContentAndHistoryScript, keys, newContent, transformedOpJson, rawHistoryLimit,
+                                checkpointInterval, maxCheckpoints, documentId, clientId, clientSeq)
+                        : redisTemplate.execute(updateContentAndHistoryScript, keys, newContent, transformedOpJson, rawHistoryLimit,
+                                checkpointInterval, maxCheckpoints, documentId);
+                if (committedRevision != null) {
+                    newRevision = committedRevision.intValue();
+                }
 
                 logger.fine(String.format("[Session: %s, Doc: %s] Successfully updated content and added op JSON to history via Lua script. New revision: %d",
-                        sessionId, documentId, serverRevision + 1));
+                        sessionId, documentId, newRevision));
 
             } catch (JsonProcessingException e) {
                 logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Failed to serialize transformed operation to JSON: %s", sessionId, documentId, transformedOp), e);
@@ -196,13 +650,143 @@ public class OtService {
                 throw new RuntimeException("Failed to atomically update Redis content and history.", e);
             }
 
-            return transformedOp;
+            notifyOperationApplied(sessionId, documentId, transformedOp, newContent, newRevision);
+            return new AppliedOperation(transformedOp, newRevision);
 
         } finally {
             serviceLock.unlock();
         }
     }
 
+    /**
+     * Moves the raw history entries that have left the window of the newest
+     * MAX_HISTORY_SIZE_PER_DOC revisions to the compacted history, composed into revision spans
+     * (see {@link HistoryEntry#composeRuns}). Without compaction the update script would trim
+     * these entries, so every revision a client can be based on keeps its raw entry, and
+     * compaction only keeps history that would otherwise be lost.
+     *
+     * Runs without the service lock, so operations keep being committed during a pass. The
+     * compact script rejects the move if the raw history was trimmed after it was read (its
+     * first revision no longer matches), and the next pass retries.
+     *
+     * @return The number of raw entries compacted (0 if nothing was done).
+     */
+    int compactHistory(String sessionId, String documentId, long windowMillis, int maxOperationsPerSpan, int maxSpans) {
+        String historyKey = getHistoryKey(sessionId, documentId);
+        String revisionKey = getRevisionKey(sessionId, documentId);
+        try {
+            // Revision before length: an append in between makes the computed base too low, which
+            // no later trim can match, so the script rejects it instead of moving the wrong entries
+            Object storedRevision = valueOperations.get(revisionKey);
+            Long size = historyListOperations.size(historyKey);
+            if (size == null || size <= MAX_HISTORY_SIZE_PER_DOC || !(storedRevision instanceof Number)) {
+                return 0; // Documents without a revision counter are compacted after their next operation
+            }
+            int count = (int) (size - MAX_HISTORY_SIZE_PER_DOC);
+            int firstRetainedBase = ((Number) storedRevision).intValue() - size.intValue();
+            List<Object> rawEntries = historyListOperations.range(historyKey, 0, count - 1);
+            if (rawEntries == null || rawEntries.size() != count) {
+                return 0;
+            }
+            List<HistoryEntry> entries = new ArrayList<>(count);
+            for (Object rawEntry : rawEntries) {
+                entries.add(HistoryEntry.parse(objectMapper, String.valueOf(rawEntry)));
+            }
+            List<HistoryEntry> spans = HistoryEntry.composeRuns(entries, firstRetainedBase + 1, windowMillis, maxOperationsPerSpan, checkpointInterval);
+
+            List<Object> args = new ArrayList<>(spans.size() + 3);
+            args.add(firstRetainedBase);
+            args.add(count);
+            args.add(maxSpans);
+            for (HistoryEntry span : spans) {
+                args.add(span.toJson(objectMapper));
+            }
+            List<String> keys = List.of(historyKey, getCompactedHistoryKey(sessionId, documentId), revisionKey);
+            Long moved = redisTemplate.execute(compactHistoryScript, keys, args.toArray());
+            if (moved == null || moved == 0) {
+                logger.fine(String.format("[Session: %s, Doc: %s] History changed during compaction; will retry.", sessionId, documentId));
+                return 0;
+            }
+            logger.fine(String.format("[Session: %s, Doc: %s] Compacted %d history entries (revisions %d-%d) into %d spans.",
+                    sessionId, documentId, count, firstRetainedBase + 1, firstRetainedBase + count, spans.size()));
+            return count;
+        } catch (Exception e) {
+            logger.log(Level.WARNING, String.format("[Session: %s, Doc: %s] History compaction failed: %s", sessionId, documentId, e.getMessage()), e);
+            return 0;
+        }
+    }
+
+    // Returns a duplicate result if clientId already committed clientSeq (or a later op), null otherwise
+    private AppliedOperation findCommittedSequence(String sessionId, String documentId, String clientId, long clientSeq) {
+        String clientSeqKey = getClientSeqKey(sessionId, documentId);
+        List<Object> values = redisTemplate.opsForHash().multiGet(clientSeqKey, List.of(clientId, clientId + ":revision"));
+        if (values == null || values.size() < 2 || !(values.get(0) instanceof Number) || !(values.get(1) instanceof Number)) {
+            return null;
+        }
+        long lastSeq = ((Number) values.get(0)).longValue();
+        return clientSeq <= lastSeq ? AppliedOperation.duplicate(((Number) values.get(1)).intValue()) : null;
+    }
+
+    /**
+     * Brings a reconnecting client up to date in one step: commits its pending operation (if
+     * any, transformed against everything it missed, and deduplicated by clientSeq) and reads
+     * all committed operations since the client's revision.
+     *
+     * @param knownRevision The revision of the client's confirmed copy; the pending operation is based on it.
+     * @param pendingOperation The client's unacknowledged operation, or null.
+     * @param maxMissedOperations Above this many operations to catch up on (counting the pending
+     *                            one) the client is sent the full state instead.
+     * @return The missed operations (null if the history no longer covers them or there are too
+     *         many, in which case the pending operation is not applied either) and the commit of
+     *         the pending operation.
+     */
+    public ResyncResult resync(String sessionId, String documentId, int knownRevision, TextOperation pendingOperation,
+                               String clientId, Long clientSeq, int maxMissedOperations) {
+        serviceLock.lock();
+        try {
+            int serverRevision = getRevision(sessionId, documentId);
+            int missedCount = serverRevision - knownRevision + (pendingOperation != null ? 1 : 0);
+            if (missedCount > maxMissedOperations || loadOperationsSince(sessionId, documentId, knownRevision, serverRevision) == null) {
+                // A duplicate is still worth reporting: the client's op is already in the document
+                AppliedOperation earlierCommit = pendingOperation != null && clientId != null && clientSeq != null
+                        ? findCommittedSequence(sessionId, documentId, clientId, clientSeq) : null;
+                return new ResyncResult(null, earlierCommit);
+            }
+            AppliedOperation applied = pendingOperation != null
+                    ? receiveOperation(sessionId, documentId, knownRevision, pendingOperation, clientId, clientSeq)
+                    : null;
+            int currentRevision = getRevision(sessionId, documentId);
+            List<TextOperation> missed = loadOperationsSince(sessionId, documentId, knownRevision, currentRevision);
+            return new ResyncResult(missed != null ? new OperationRange(knownRevision, currentRevision, missed) : null, applied);
+        } finally {
+            serviceLock.unlock();
+        }
+    }
+
+    // Called with serviceLock held, so listeners observe operations in apply order
+    private void notifyOperationApplied(String sessionId, String documentId, TextOperation operation, String newContent, int revision) {
+        operationListeners.orderedStream().forEach(listener -> {
+            try {
+                listener.operationApplied(sessionId, documentId, operation, newContent, revision);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Operation listener %s failed for revision %d: %s",
+                        sessionId, documentId, listener.getClass().getSimpleName(), revision, e.getMessage()), e);
+            }
+        });
+    }
+
+    // Called with serviceLock held, after content was replaced outside the operation pipeline
+    private void notifyDocumentReset(String sessionId, String documentId) {
+        operationListeners.orderedStream().forEach(listener -> {
+            try {
+                listener.documentReset(sessionId, documentId);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Operation listener %s failed on document reset: %s",
+                        sessionId, documentId, listener.getClass().getSimpleName(), e.getMessage()), e);
+            }
+        });
+    }
+
     /** Prunes the operation history list in Redis for a specific document if it exceeds the maximum size */
     // private void pruneHistory(String sessionId, String documentId) {
     //     String historyKey = getHistoryKey(sessionId, documentId);
@@ -237,7 +821,12 @@ public class OtService {
         String historyKey = getHistoryKey(sessionId, documentId);
         try {
             valueOperations.set(contentKey, (content != null) ? content : "");
-            redisTemplate.delete(historyKey);
+            redisTemplate.delete(List.of(historyKey, getCompactedHistoryKey(sessionId, documentId), getRevisionKey(sessionId, documentId),
+                    getClientSeqKey(sessionId, documentId), getCheckpointKey(sessionId, documentId)));
+            // Revision 0 is the starting point for reconstructing early revisions
+            redisTemplate.opsForHash().put(getCheckpointKey(sessionId, documentId), "0", (content != null) ? content : "");
+            redisTemplate.opsForSet().add(getSessionDocumentsKey(sessionId), documentId);
+            notifyDocumentReset(sessionId, documentId);
             logger.info(String.format("[Session: %s, Doc: %s] Document content set directly in Redis key [%s]. History list [%s] deleted. New revision: 0",
                      sessionId, documentId, contentKey, historyKey));
         } catch (Exception e) {
@@ -248,6 +837,65 @@ public class OtService {
         }
     }
 
+    /**
+     * Sets the content of many documents at once, with the same effect as
+     * {@link #setDocumentContent} for each of them, in one pipelined round trip and one lock
+     * acquisition for the whole batch.
+     * @param documents Document id -> content.
+     */
+    public void importDocuments(String sessionId, Map<String, String> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        serviceLock.lock();
+        try {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (Map.Entry<String, String> document : documents.entrySet()) {
+                        String documentId = document.getKey();
+                        String content = (document.getValue() != null) ? document.getValue() : "";
+                        ops.opsForValue().set(getContentKey(sessionId, documentId), content);
+                        ops.delete(List.of(getHistoryKey(sessionId, documentId), getCompactedHistoryKey(sessionId, documentId),
+                                getRevisionKey(sessionId, documentId), getClientSeqKey(sessionId, documentId), getCheckpointKey(sessionId, documentId)));
+                        ops.opsForHash().put(getCheckpointKey(sessionId, documentId), "0", content);
+                    }
+                    ops.opsForSet().add(getSessionDocumentsKey(sessionId), documents.keySet().toArray());
+                    return null;
+                }
+            });
+            documents.keySet().forEach(documentId -> notifyDocumentReset(sessionId, documentId));
+            logger.info(String.format("[Session: %s] Imported %d documents in one pipeline.", sessionId, documents.size()));
+        } finally {
+            serviceLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the document content through the operation pipeline instead of resetting it:
+     * the minimal diff between the current and the new content is committed as a regular
+     * operation, so history, revision and connected clients stay valid. The diff is computed
+     * without holding the service lock against a consistent snapshot; operations committed
+     * meanwhile are transformed against it like for any client operation.
+     *
+     * @param clientId        The client id to commit the operation as.
+     * @param maxEditDistance Above this many changed characters the changed region is replaced as a whole.
+     * @return The committed operation, or null if the content did not change.
+     */
+    public AppliedOperation applyContentAsDiff(String sessionId, String documentId, String content, String clientId, int maxEditDistance) {
+        DocumentSnapshot snapshot = getDocumentSnapshots(sessionId, List.of(documentId)).get(documentId);
+        TextOperation diff = TextDiff.diff(snapshot.getContent(), (content != null) ? content : "", maxEditDistance);
+        if (diff.isNoop()) {
+            logger.info(String.format("[Session: %s, Doc: %s] New content equals the current content. Nothing to commit.", sessionId, documentId));
+            return null;
+        }
+        logger.info(String.format("[Session: %s, Doc: %s] Committing content change as a diff of %d ops at revision %d.",
+                sessionId, documentId, diff.getOps().size(), snapshot.getRevision()));
+        return receiveOperation(sessionId, documentId, snapshot.getRevision(), diff, clientId, null);
+    }
+
     /**
      * Resets the state (content and history) for a specific document in Redis.
      * @param sessionId The identifier of the session.
@@ -257,9 +905,12 @@ public class OtService {
         serviceLock.lock();
         String contentKey = getContentKey(sessionId, documentId);
         String historyKey = getHistoryKey(sessionId, documentId);
-        List<String> keysToDelete = List.of(contentKey, historyKey);
+        List<String> keysToDelete = List.of(contentKey, historyKey, getCompactedHistoryKey(sessionId, documentId),
+                getRevisionKey(sessionId, documentId), getClientSeqKey(sessionId, documentId), getCheckpointKey(sessionId, documentId));
         try {
              Long deletedCount = redisTemplate.delete(keysToDelete);
+             redisTemplate.opsForSet().remove(getSessionDocumentsKey(sessionId), documentId);
+             notifyDocumentReset(sessionId, documentId);
              if (deletedCount != null && deletedCount > 0) {
                 logger.info(String.format("[Session: %s, Doc: %s] Document state reset in Redis. Deleted keys: %s",
                          sessionId, documentId, keysToDelete));
@@ -277,6 +928,7 @@ public class OtService {
 
     /**
      * Gets a copy of the operation history (List<TextOperation>) from the Redis list.
+     * Only the raw tail is returned, not the compacted spans before it.
      * @param sessionId The identifier of the session.
      * @param documentId The identifier of the document.
      * @return A list of all operations in the document's history, or an empty list if not found or on error.
@@ -296,9 +948,8 @@ public class OtService {
                      }
                      String opJson = (String) rawOp;
                     try {
-                        List<Object> opsList = objectMapper.readValue(opJson, new TypeReference<List<Object>>() {});
-                        history.add(new TextOperation(opsList));
-                    } catch (JsonProcessingException e) {
+                        history.add(HistoryEntry.parse(objectMapper, opJson).toOperation());
+                    } catch (JsonProcessingException | IllegalArgumentException e) {
                         logger.warning(String.format("[Session: %s, Doc: %s] Failed to parse operation JSON from full history: %s. JSON: %s",
                                sessionId, documentId, e.getMessage(), opJson));
                         // Skip invalid entries in history? Or throw?
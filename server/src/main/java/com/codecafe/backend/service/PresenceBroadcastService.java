@@ -0,0 +1,40 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.PresenceEvent;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes {@link PresenceEvent}s on the per-document presence topic. Subscribers apply
+ * them to their participant list instead of receiving a full DocumentState on every join/leave.
+ */
+@Service
+public class PresenceBroadcastService {
+
+    private static final Logger logger = Logger.getLogger(PresenceBroadcastService.class.getName());
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public PresenceBroadcastService(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    public static String presenceDestination(String sessionId, String documentId) {
+        return String.format("/topic/sessions/%s/presence/document/%s", sessionId, documentId);
+    }
+
+    public void publish(PresenceEvent event) {
+        String destination = presenceDestination(event.getSessionId(), event.getDocumentId());
+        try {
+            messagingTemplate.convertAndSend(destination, event);
+            logger.fine(String.format("[Session: %s, Doc: %s] Published presence %s for user [%s]",
+                    event.getSessionId(), event.getDocumentId(), event.getType(), event.getUserId()));
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Error publishing presence %s for user [%s]: %s",
+                    event.getSessionId(), event.getDocumentId(), event.getType(), event.getUserId(), e.getMessage()), e);
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package com.codecafe.backend.service;
 
+import com.codecafe.backend.dto.RangeInfo;
+import com.codecafe.backend.dto.TextOperation;
 import com.codecafe.backend.dto.UserInfoDTO;
 import com.codecafe.backend.dto.SelectionInfo;
+import com.codecafe.backend.util.LineIndex;
+import com.codecafe.backend.util.OtUtils;
+import com.codecafe.backend.util.PresenceCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.core.HashOperations;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,67 +24,146 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.Set;
 import java.util.logging.Level;
 
+/**
+ * Tracks which users are present in which session/document.
+ *
+ * Users connected to this node live in a node-local presence table, which is the primary
+ * store: joins, leaves and cursor updates only touch memory and mark the entry dirty.
+ * Dirty entries are replicated to the Redis hashes {@code session:users:{<sessionId>}:<documentId>}
+ * (hash-tagged by session like the document keys, so the join script can use both on a cluster)
+ * in one pipelined batch at a fixed interval, so other nodes can see them. Each participant
+ * is stored as a static info field and a volatile cursor field (see {@link PresenceCodec}),
+ * so a cursor update only rewrites the cursor field. A slower
+ * reconciliation pass rewrites all local users (healing lost writes and expired keys) and
+ * refreshes the cached view of users connected to other nodes.
+ *
+ * Participant lists are served from memory: local users merged with the last Redis snapshot.
+ *
+ * Stored selections and cursors follow the document: every applied operation moves them,
+ * so late joiners see where everyone currently is. Line/column cursor positions are
+ * converted through a per-document {@link LineIndex} that is updated with each operation.
+ */
 @Service
-public class SessionRegistryService {
+public class SessionRegistryService implements OperationListener {
 
     private static final Logger logger = Logger.getLogger(SessionRegistryService.class.getName());
     private static final String SESSION_USERS_KEY_PREFIX = "session:users:";
-    private static final long SESSION_EXPIRY_MINUTES = 60; 
+    static final long SESSION_EXPIRY_MINUTES = 60; 
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final HashOperations<String, String, UserInfoDTO> hashOperations; 
+    // What changed for a user since the last replication
+    private static final int DIRTY_INFO = 1;
+    private static final int DIRTY_CURSOR = 2;
+    private static final int DIRTY_ALL = DIRTY_INFO | DIRTY_CURSOR;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final HashOperations<String, String, String> hashOperations; 
+    private final KeyExpiryService keyExpiryService;
+
+    // Redis key -> (userId -> user) for users connected to this node
+    private final Map<String, Map<String, UserInfoDTO>> localPresence = new ConcurrentHashMap<>();
+    // Redis key -> (userId -> DIRTY_* flags) for local changes not yet replicated.
+    // Inner maps are only touched inside compute() on the outer map.
+    private final Map<String, Map<String, Integer>> dirtyUsers = new ConcurrentHashMap<>();
+    // Redis key -> last known hash contents (includes users on other nodes)
+    private final Map<String, Map<String, UserInfoDTO>> redisSnapshot = new ConcurrentHashMap<>();
+    // Redis key -> line index of the document, for line/column cursor positions.
+    // Only touched from operationApplied/documentReset, which OtService serializes.
+    private final Map<String, LineIndex> lineIndexes = new ConcurrentHashMap<>();
 
     @Autowired
-    public SessionRegistryService(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
-        this.hashOperations = redisTemplate.opsForHash();
+    public SessionRegistryService(StringRedisTemplate stringRedisTemplate, KeyExpiryService keyExpiryService) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.hashOperations = stringRedisTemplate.opsForHash();
+        this.keyExpiryService = keyExpiryService;
     }
 
-    // Helper method to construct the Redis key for a session/document
-    private String getSessionDocumentKey(String sessionId, String documentId) {
-        return SESSION_USERS_KEY_PREFIX + sessionId + ":" + documentId;
+    // Helper method to construct the Redis key for a session/document.
+    // {sessionId} is the hash tag, the same as in the doc:{sessionId}:... keys.
+    String getSessionDocumentKey(String sessionId, String documentId) {
+        return SESSION_USERS_KEY_PREFIX + "{" + sessionId + "}:" + documentId;
     }
 
-    private void touchKey(String key) {
-        redisTemplate.expire(key, SESSION_EXPIRY_MINUTES, TimeUnit.MINUTES);
+    // Inverse of getSessionDocumentKey: {sessionId, documentId}, or an empty array if the key has another format
+    private static String[] splitSessionDocumentKey(String key) {
+        int tagStart = SESSION_USERS_KEY_PREFIX.length();
+        int tagEnd = key.indexOf("}:", tagStart);
+        if (!key.startsWith(SESSION_USERS_KEY_PREFIX) || key.length() <= tagStart || key.charAt(tagStart) != '{' || tagEnd < 0) {
+            return new String[0];
+        }
+        return new String[]{key.substring(tagStart + 1, tagEnd), key.substring(tagEnd + 2)};
+    }
+
+    private void markDirty(String key, String userId, int flags) {
+        dirtyUsers.compute(key, (k, users) -> {
+            Map<String, Integer> target = users != null ? users : new HashMap<>();
+            target.merge(userId, flags, (a, b) -> a | b);
+            return target;
+        });
     }
 
     /**
-     * Adds or updates a user's information for a specific document within a specific session in Redis.
-     * Also resets the TTL for the session/document key.
+     * Adds or updates a user's information for a specific document within a specific session.
+     * The change is visible locally right away and replicated to Redis on the next batch.
      * @param sessionId The ID of the session the user joined.
      * @param documentId The ID of the document the user joined.
      * @param userInfo The user's information.
+     * @return true if the user was not yet present on this node for the document, false if an existing entry was updated.
      */
-    public void userJoined(String sessionId, String documentId, UserInfoDTO userInfo) {
+    public boolean userJoined(String sessionId, String documentId, UserInfoDTO userInfo) {
         if (sessionId == null || documentId == null || userInfo == null || userInfo.getId() == null) {
             logger.warning("Attempted to add a user with null sessionId, documentId, info, or user ID.");
-            return;
+            return false;
+        }
+        return register(getSessionDocumentKey(sessionId, documentId), sessionId, documentId, userInfo, DIRTY_ALL);
+    }
+
+    /**
+     * Registers a user whose presence fields the join script already wrote to Redis, so
+     * nothing is queued for replication. The hash fields the script read back replace the
+     * cached view of the document's Redis participants.
+     *
+     * @param presenceFields All fields of the document's presence hash, as read by the script.
+     * @return true if the user was not yet present on this node for the document.
+     */
+    public boolean userJoinedWithSnapshot(String sessionId, String documentId, UserInfoDTO userInfo, Map<String, String> presenceFields) {
+        if (sessionId == null || documentId == null || userInfo == null || userInfo.getId() == null) {
+            logger.warning("Attempted to add a user with null sessionId, documentId, info, or user ID.");
+            return false;
         }
         String key = getSessionDocumentKey(sessionId, documentId);
+        redisSnapshot.put(key, new ConcurrentHashMap<>(PresenceCodec.decode(presenceFields)));
+        return register(key, sessionId, documentId, userInfo, 0);
+    }
+
+    private boolean register(String key, String sessionId, String documentId, UserInfoDTO userInfo, int dirtyFlags) {
         String userId = userInfo.getId();
 
-        try {
-            hashOperations.put(key, userId, userInfo);
-            touchKey(key); // Update TTL on activity
-            logger.info(String.format("[Session: %s] User [%s] (%s) joined/updated in Redis for document [%s]. Key: %s",
-                    sessionId, userId, userInfo.getName(), documentId, key));
-        } catch (Exception e) {
-            logger.severe(String.format("Redis error adding user [%s] to key [%s]: %s", userId, key, e.getMessage()));
-            // Consider how to handle Redis errors - retry, log, etc.
+        // compute() keeps this atomic with the empty-document cleanup in userLeftDocument()
+        boolean[] added = new boolean[1];
+        localPresence.compute(key, (k, users) -> {
+            Map<String, UserInfoDTO> target = users != null ? users : new ConcurrentHashMap<>();
+            added[0] = target.put(userId, userInfo) == null;
+            return target;
+        });
+        if (dirtyFlags != 0) {
+            markDirty(key, userId, dirtyFlags);
         }
-        // logSessionState(); // Logging Redis state might be verbose, adjust as needed
+        logger.info(String.format("[Session: %s] User [%s] (%s) %s document [%s]. Key: %s",
+                sessionId, userId, userInfo.getName(), added[0] ? "joined" : "updated in", documentId, key));
+        return added[0];
     }
 
     /**
      * Removes a user from a specific document session they were in.
-     * This version requires sessionId and documentId, unlike the previous version.
-     * The disconnect event handler should ideally provide this context.
-     * If not possible, the `userLeft(String userId)` method needs a different approach (scanning keys).
+     * Users held by this node are removed locally and deleted from Redis on the next batch;
+     * anyone else (e.g. left over from a restarted node) is deleted from Redis directly.
      *
      * @param sessionId The ID of the session the user left.
      * @param documentId The ID of the document the user left.
@@ -87,21 +176,27 @@ public class SessionRegistryService {
             return false;
         }
         String key = getSessionDocumentKey(sessionId, documentId);
+        Map<String, UserInfoDTO> snapshot = redisSnapshot.get(key);
+        if (snapshot != null) {
+            snapshot.remove(userId);
+        }
+
+        Map<String, UserInfoDTO> users = localPresence.get(key);
+        if (users != null && users.remove(userId) != null) {
+            localPresence.computeIfPresent(key, (k, current) -> current.isEmpty() ? null : current);
+            markDirty(key, userId, DIRTY_ALL);
+            logger.info(String.format("[Session: %s] User [%s] removed from document [%s]. Key: %s",
+                    sessionId, userId, documentId, key));
+            return true;
+        }
+
         boolean removed = false;
         try {
-            if (hashOperations.delete(key, userId) > 0) {
-                logger.info(String.format("[Session: %s] User [%s] removed from Redis for document [%s]. Key: %s",
+            // Redis deletes the hash itself once its last field is gone
+            if (hashOperations.delete(key, PresenceCodec.infoField(userId), PresenceCodec.cursorField(userId)) > 0) {
+                logger.info(String.format("[Session: %s] User [%s] (not held by this node) removed from Redis for document [%s]. Key: %s",
                         sessionId, userId, documentId, key));
                 removed = true;
-                // Check if the hash is now empty and delete if necessary
-                if (hashOperations.size(key) == 0) {
-                    redisTemplate.delete(key);
-                    logger.info(String.format("[Session: %s] Redis key [%s] deleted as it became empty after user [%s] left.",
-                            sessionId, key, userId));
-                } else {
-                    // If others are still in, refresh TTL? Optional, depends on desired behavior
-                    touchKey(key);
-                }
             } else {
                 logger.fine(String.format("[Session: %s] Attempted to remove user [%s] from key [%s], but they were not found.",
                         sessionId, userId, key));
@@ -113,9 +208,8 @@ public class SessionRegistryService {
     }
 
     /**
-     * Updates the cursor/selection state for an active user in Redis.
-     * Fetches the user, updates the DTO, and puts it back.
-     * Also resets the TTL for the session/document key.
+     * Updates the cursor/selection state for a user connected to this node.
+     * The change is replicated to Redis on the next batch.
      *
      * @param sessionId The session ID.
      * @param documentId The document ID.
@@ -129,28 +223,24 @@ public class SessionRegistryService {
             return;
         }
         String key = getSessionDocumentKey(sessionId, documentId);
-        try {
-            UserInfoDTO user = hashOperations.get(key, userId);
-            if (user != null) {
-                user.setCursorPosition(cursorPosition);
-                user.setSelection(selection);
-                hashOperations.put(key, userId, user); // Put the updated object back
-                touchKey(key); // Update TTL on activity
-                logger.finest(String.format("[Session: %s] Updated Redis state for user [%s] in doc [%s]. Key: %s",
-                        sessionId, userId, documentId, key));
-            } else {
-                logger.warning(String.format("[Session: %s] Cannot update state for user [%s], not found in Redis key [%s]",
-                        sessionId, userId, key));
-                // Optionally, handle case where user isn't found - maybe they disconnected unexpectedly?
-            }
-        } catch (Exception e) {
-            logger.severe(String.format("Redis error updating state for user [%s] in key [%s]: %s", userId, key, e.getMessage()));
+        Map<String, UserInfoDTO> users = localPresence.get(key);
+        // Replace rather than mutate, so a replication in progress never serializes a half-updated user
+        UserInfoDTO updated = users == null ? null : users.computeIfPresent(userId, (id, user) ->
+                new UserInfoDTO(user.getId(), user.getName(), user.getColor(), cursorPosition, selection));
+        if (updated != null) {
+            markDirty(key, userId, DIRTY_CURSOR);
+            logger.finest(String.format("[Session: %s] Updated state for user [%s] in doc [%s]. Key: %s",
+                    sessionId, userId, documentId, key));
+        } else {
+            logger.warning(String.format("[Session: %s] Cannot update state for user [%s], not present on this node for key [%s]",
+                    sessionId, userId, key));
         }
     }
 
     /**
-     * Gets the list of active participants (UserInfoDTO) from Redis for a specific document/session,
-     * excluding the user making the request.
+     * Gets the list of active participants (UserInfoDTO) for a specific document/session,
+     * excluding the user making the request. Served from memory; Redis is only read the first
+     * time this node is asked about a document it has no view of.
      *
      * @param sessionId The ID of the session.
      * @param documentId The ID of the document.
@@ -163,42 +253,251 @@ public class SessionRegistryService {
             return Collections.emptyList();
         }
         String key = getSessionDocumentKey(sessionId, documentId);
-        List<UserInfoDTO> participants = Collections.emptyList();
+        Map<String, UserInfoDTO> snapshot = redisSnapshot.get(key);
+        Map<String, UserInfoDTO> local = localPresence.get(key);
+        if (snapshot == null && local == null) {
+            snapshot = loadSnapshot(key);
+        }
+
+        // Local entries win over the (possibly older) Redis view of the same user
+        Map<String, UserInfoDTO> merged = new LinkedHashMap<>();
+        if (snapshot != null) {
+            merged.putAll(snapshot);
+        }
+        if (local != null) {
+            merged.putAll(local);
+        }
+        List<UserInfoDTO> participants = merged.entrySet().stream()
+                .filter(entry -> requestingUserId == null || !entry.getKey().equals(requestingUserId))
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toList());
+        logger.fine(String.format("[Session: %s, Doc: %s] Returning %d participants.", sessionId, documentId, participants.size()));
+        return participants;
+    }
+
+    /**
+     * Moves every stored selection and cursor of the document through the applied operation.
+     * Called by OtService in the order operations are applied.
+     */
+    @Override
+    public void operationApplied(String sessionId, String documentId, TextOperation operation, String newContent, int revision) {
+        String key = getSessionDocumentKey(sessionId, documentId);
+        Map<String, UserInfoDTO> local = localPresence.get(key);
+        Map<String, UserInfoDTO> snapshot = redisSnapshot.get(key);
+        if (local == null && snapshot == null) {
+            lineIndexes.remove(key);
+            return;
+        }
+        // Cursors without a selection are stored as line/column; resolve them against the old document first
+        LineIndex lineIndex = lineIndexes.get(key);
+        Map<String, Integer> localCursorOffsets = cursorOffsets(local, lineIndex);
+        Map<String, Integer> snapshotCursorOffsets = cursorOffsets(snapshot, lineIndex);
+
+        lineIndex = advanceLineIndex(key, lineIndex, operation, newContent);
+
+        if (local != null) {
+            moveUsers(key, local, localCursorOffsets, operation, lineIndex, true);
+        }
+        if (snapshot != null) {
+            moveUsers(key, snapshot, snapshotCursorOffsets, operation, lineIndex, false);
+        }
+    }
+
+    @Override
+    public void documentReset(String sessionId, String documentId) {
+        lineIndexes.remove(getSessionDocumentKey(sessionId, documentId));
+    }
+
+    private LineIndex advanceLineIndex(String key, LineIndex lineIndex, TextOperation operation, String newContent) {
+        if (lineIndex != null) {
+            try {
+                lineIndex.apply(operation);
+                if (lineIndex.getLength() == newContent.length()) {
+                    return lineIndex;
+                }
+            } catch (IllegalArgumentException e) {
+                logger.fine(String.format("Line index for key [%s] out of sync (%s). Rebuilding.", key, e.getMessage()));
+            }
+        }
+        // First op seen for this document (or the index drifted): build it once from the content
+        LineIndex rebuilt = new LineIndex(newContent);
+        lineIndexes.put(key, rebuilt);
+        return rebuilt;
+    }
+
+    private static Map<String, Integer> cursorOffsets(Map<String, UserInfoDTO> users, LineIndex lineIndex) {
+        if (users == null || lineIndex == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Integer> offsets = new HashMap<>();
+        users.forEach((userId, user) -> {
+            Map<String, Integer> cursor = user.getCursorPosition();
+            if (!hasRanges(user.getSelection()) && cursor != null
+                    && cursor.get("lineNumber") != null && cursor.get("column") != null) {
+                offsets.put(userId, lineIndex.offsetAt(cursor.get("lineNumber"), cursor.get("column")));
+            }
+        });
+        return offsets;
+    }
+
+    private void moveUsers(String key, Map<String, UserInfoDTO> users, Map<String, Integer> cursorOffsets,
+                           TextOperation operation, LineIndex lineIndex, boolean replicate) {
+        for (String userId : users.keySet()) {
+            UserInfoDTO[] moved = new UserInfoDTO[1];
+            users.computeIfPresent(userId, (id, user) -> {
+                moved[0] = transformUser(user, operation, lineIndex, cursorOffsets.get(id));
+                return moved[0] != null ? moved[0] : user;
+            });
+            if (moved[0] != null && replicate) {
+                markDirty(key, userId, DIRTY_CURSOR);
+            }
+        }
+    }
+
+    // Returns a copy of the user with selection/cursor moved through the operation, or null if nothing changed
+    private static UserInfoDTO transformUser(UserInfoDTO user, TextOperation operation, LineIndex lineIndex, Integer cursorOffset) {
+        SelectionInfo selection = user.getSelection();
+        if (hasRanges(selection)) {
+            boolean changed = false;
+            List<RangeInfo> ranges = new ArrayList<>(selection.getRanges().size());
+            for (RangeInfo range : selection.getRanges()) {
+                int anchor = OtUtils.transformIndex(range.getAnchor(), operation);
+                int head = range.getAnchor() == range.getHead() ? anchor : OtUtils.transformIndex(range.getHead(), operation);
+                changed |= anchor != range.getAnchor() || head != range.getHead();
+                ranges.add(new RangeInfo(anchor, head));
+            }
+            if (!changed) {
+                return null;
+            }
+            Map<String, Integer> cursorPosition = user.getCursorPosition() != null
+                    ? toCursorPosition(lineIndex, ranges.get(0).getHead())
+                    : null;
+            return new UserInfoDTO(user.getId(), user.getName(), user.getColor(), cursorPosition, new SelectionInfo(ranges));
+        }
+        if (cursorOffset != null) {
+            Map<String, Integer> cursorPosition = toCursorPosition(lineIndex, OtUtils.transformIndex(cursorOffset, operation));
+            if (!cursorPosition.equals(user.getCursorPosition())) {
+                return new UserInfoDTO(user.getId(), user.getName(), user.getColor(), cursorPosition, selection);
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasRanges(SelectionInfo selection) {
+        return selection != null && selection.getRanges() != null && !selection.getRanges().isEmpty();
+    }
+
+    // Monaco-style 1-based {"lineNumber", "column"} for an offset
+    private static Map<String, Integer> toCursorPosition(LineIndex lineIndex, int offset) {
+        Map<String, Integer> cursorPosition = new LinkedHashMap<>();
+        cursorPosition.put("lineNumber", lineIndex.lineNumberAt(offset));
+        cursorPosition.put("column", lineIndex.columnAt(offset));
+        return cursorPosition;
+    }
+
+    private Map<String, UserInfoDTO> loadSnapshot(String key) {
         try {
-            // Check if key exists before fetching all values
-             if (Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
-                 Map<String, UserInfoDTO> usersInDocument = hashOperations.entries(key);
-                 logger.info(String.format("[Session: %s, Doc: %s] Fetched %d entries from Redis hash key [%s]. Keys: %s",
-                        sessionId, documentId, usersInDocument != null ? usersInDocument.size() : 0, key, usersInDocument != null ? usersInDocument.keySet() : "null"));
-
-                 if (usersInDocument != null && !usersInDocument.isEmpty()) {
-                     try {
-                         participants = usersInDocument.entrySet().stream()
-                                .filter(entry -> requestingUserId == null || !entry.getKey().equals(requestingUserId))
-                                .map(Map.Entry::getValue)
-                                .collect(Collectors.toList());
-
-                         logger.info(String.format("[Session: %s, Doc: %s] Successfully mapped entries to %d participants (excluding user [%s]). Key: %s",
-                                 sessionId, documentId, participants.size(), requestingUserId, key));
-                     } catch (Exception e) {
-                         logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Error during stream processing of Redis entries for key [%s]: %s",
-                                sessionId, documentId, key, e.getMessage()), e);
-                         participants = Collections.emptyList(); // Return empty list on processing error
-                     }
-                     touchKey(key); // Refresh TTL when accessed
-                 } else {
-                     logger.fine(String.format("Redis key not found for session/document: %s", key));
-                 }
-             } else {
-                 logger.fine(String.format("Redis key not found for session/document: %s", key));
-             }
+            Map<String, UserInfoDTO> snapshot = new ConcurrentHashMap<>(PresenceCodec.decode(hashOperations.entries(key)));
+            redisSnapshot.put(key, snapshot);
+            return snapshot;
         } catch (Exception e) {
             logger.severe(String.format("Redis error getting participants for key [%s]: %s", key, e.getMessage()));
-            // Return empty list on error
-            participants = Collections.emptyList();
+            return null;
+        }
+    }
+
+    /**
+     * Writes dirty local entries to Redis in a single pipeline: HSET of the changed fields for
+     * present users and HDEL for users that left. TTLs of the written keys are refreshed by
+     * KeyExpiryService.
+     */
+    @Scheduled(fixedDelayString = "${codecafe.presence.replication-interval-ms:200}")
+    public void replicateToRedis() {
+        if (dirtyUsers.isEmpty()) {
+            return;
+        }
+        Map<String, Map<String, Integer>> batch = new LinkedHashMap<>();
+        for (String key : dirtyUsers.keySet()) {
+            Map<String, Integer> users = dirtyUsers.remove(key);
+            if (users != null && !users.isEmpty()) {
+                batch.put(key, users);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    HashOperations<String, String, String> hashOps = ((RedisOperations<String, String>) operations).opsForHash();
+                    for (Map.Entry<String, Map<String, Integer>> entry : batch.entrySet()) {
+                        String key = entry.getKey();
+                        Map<String, UserInfoDTO> local = localPresence.getOrDefault(key, Collections.emptyMap());
+                        entry.getValue().forEach((userId, flags) -> {
+                            UserInfoDTO user = local.get(userId);
+                            if (user == null) {
+                                hashOps.delete(key, PresenceCodec.infoField(userId), PresenceCodec.cursorField(userId));
+                                return;
+                            }
+                            Map<String, String> fields = new HashMap<>(2);
+                            if ((flags & DIRTY_INFO) != 0) {
+                                fields.put(PresenceCodec.infoField(userId), PresenceCodec.encodeInfo(user));
+                            }
+                            if ((flags & DIRTY_CURSOR) != 0) {
+                                fields.put(PresenceCodec.cursorField(userId), PresenceCodec.encodeCursor(user.getCursorPosition(), user.getSelection()));
+                            }
+                            hashOps.putAll(key, fields);
+                        });
+                    }
+                    return null;
+                }
+            });
+            batch.keySet().forEach(key -> keyExpiryService.touch(key, SESSION_EXPIRY_MINUTES, TimeUnit.MINUTES));
+            logger.fine(String.format("Replicated presence changes for %d document key(s) to Redis.", batch.size()));
+        } catch (Exception e) {
+            // Put the entries back so the next run retries them
+            batch.forEach((key, users) -> users.forEach((userId, flags) -> markDirty(key, userId, flags)));
+            logger.severe(String.format("Redis error replicating presence for %d document key(s): %s", batch.size(), e.getMessage()));
+        }
+    }
+
+    /**
+     * Periodically rewrites every local user to Redis (covering lost writes and expired keys)
+     * and refreshes the snapshot of documents this node has looked at, so users on other
+     * nodes show up in participant lists.
+     */
+    @Scheduled(fixedDelayString = "${codecafe.presence.reconcile-interval-ms:5000}")
+    public void reconcileWithRedis() {
+        // Forget documents nobody on this node is in any more
+        redisSnapshot.keySet().removeIf(key -> !localPresence.containsKey(key));
+        lineIndexes.keySet().removeIf(key -> !localPresence.containsKey(key));
+        if (localPresence.isEmpty()) {
+            return;
+        }
+        localPresence.forEach((key, users) -> users.keySet().forEach(userId -> markDirty(key, userId, DIRTY_ALL)));
+        replicateToRedis();
+
+        List<String> keys = new ArrayList<>(localPresence.keySet());
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                    keys.forEach(key -> ops.opsForHash().entries(key));
+                    return null;
+                }
+            });
+            for (int i = 0; i < keys.size() && i < results.size(); i++) {
+                @SuppressWarnings("unchecked")
+                Map<String, String> fields = (Map<String, String>) results.get(i);
+                redisSnapshot.put(keys.get(i), new ConcurrentHashMap<>(PresenceCodec.decode(fields)));
+            }
+        } catch (Exception e) {
+            logger.severe(String.format("Redis error reconciling presence for %d document key(s): %s", keys.size(), e.getMessage()));
         }
-        logger.info(String.format("[Session: %s, Doc: %s] Returning %d participants.", sessionId, documentId, participants.size()));
-        return participants;
     }
 
     /**
@@ -215,6 +514,17 @@ public class SessionRegistryService {
             return Collections.emptyList();
         }
         List<Map.Entry<String, String>> affectedEntries = new ArrayList<>();
+        localPresence.forEach((key, users) -> {
+            if (users.remove(userId) != null) {
+                markDirty(key, userId, DIRTY_ALL);
+                String[] parts = splitSessionDocumentKey(key);
+                if (parts.length == 2) {
+                    affectedEntries.add(new AbstractMap.SimpleEntry<>(parts[0], parts[1]));
+                }
+            }
+        });
+        localPresence.keySet().forEach(key -> localPresence.computeIfPresent(key, (k, current) -> current.isEmpty() ? null : current));
+        redisSnapshot.values().forEach(snapshot -> snapshot.remove(userId));
         String pattern = SESSION_USERS_KEY_PREFIX + "*"; // Pattern to scan session keys
 
         logger.info(String.format("Scanning Redis keys with pattern '%s' to remove user [%s]...", pattern, userId));
@@ -223,24 +533,26 @@ public class SessionRegistryService {
             // Note: SCAN is preferred over KEYS in production for performance reasons,
             // but RedisTemplate doesn't expose SCAN directly easily for this use case.
             // Consider using Jedis/Lettuce directly or a lua script if performance becomes an issue.
-            Set<String> keys = redisTemplate.keys(pattern);
+            Set<String> keys = stringRedisTemplate.keys(pattern);
             if (keys != null) {
                 for (String key : keys) {
                     try {
                         // Extract sessionId and documentId from the key (simple parsing, adjust if key format changes)
-                        String[] parts = key.substring(SESSION_USERS_KEY_PREFIX.length()).split(":", 2);
+                        String[] parts = splitSessionDocumentKey(key);
                         if (parts.length == 2) {
                             String sessionId = parts[0];
                             String documentId = parts[1];
 
-                            if (hashOperations.delete(key, userId) > 0) {
+                            Map.Entry<String, String> entry = new AbstractMap.SimpleEntry<>(sessionId, documentId);
+                            if (hashOperations.delete(key, PresenceCodec.infoField(userId), PresenceCodec.cursorField(userId)) > 0
+                                    && !affectedEntries.contains(entry)) {
                                 logger.info(String.format("[Session: %s] User [%s] removed from Redis document [%s]. Key: %s",
                                         sessionId, userId, documentId, key));
-                                affectedEntries.add(new AbstractMap.SimpleEntry<>(sessionId, documentId));
+                                affectedEntries.add(entry);
 
                                 // Check if the hash is now empty and delete if necessary
                                 if (hashOperations.size(key) == 0) {
-                                    redisTemplate.delete(key);
+                                    stringRedisTemplate.delete(key);
                                     logger.info(String.format("[Session: %s] Redis key [%s] deleted as it became empty after user [%s] left.",
                                             sessionId, key, userId));
                                 }
@@ -0,0 +1,180 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.SessionInfo;
+import com.codecafe.backend.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registry of created sessions, stored in Redis ({@code session:info:{sessionId}}) so that
+ * sessions survive restarts and are known to every node. Lookups go through a node-local
+ * read-through cache: known sessions are kept for {@code codecafe.sessions.cache.ttl-ms},
+ * unknown ids for the shorter {@code negative-ttl-ms}, so repeated validation of the same id
+ * (every set-document, import and export call) stays in memory. Concurrent misses for one id
+ * share a single Redis read.
+ *
+ * Sessions expire after {@code codecafe.sessions.expiry-hours} without being looked up; each
+ * lookup schedules a TTL refresh through {@link KeyExpiryService}.
+ */
+@Service
+public class SessionStore implements MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(SessionStore.class.getName());
+    private static final String SESSION_INFO_KEY_PREFIX = "session:info:";
+    private static final String CREATOR_NAME_FIELD = "creatorName";
+    private static final String CREATED_AT_FIELD = "createdAt";
+
+    // Cached lookup result; info is null for ids that are not registered
+    private static final class CacheEntry {
+        private final SessionInfo info;
+        private final long expiresAt;
+
+        private CacheEntry(SessionInfo info, long expiresAt) {
+            this.info = info;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final HashOperations<String, String, String> hashOperations;
+    private final KeyExpiryService keyExpiryService;
+    private final long cacheTtlMs;
+    private final long negativeCacheTtlMs;
+    private final int maxCacheEntries;
+    private final long expiryHours;
+
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final SingleFlight<String, SessionInfo> loads = new SingleFlight<>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    public SessionStore(StringRedisTemplate stringRedisTemplate, KeyExpiryService keyExpiryService,
+                        @Value("${codecafe.sessions.cache.ttl-ms:300000}") long cacheTtlMs,
+                        @Value("${codecafe.sessions.cache.negative-ttl-ms:5000}") long negativeCacheTtlMs,
+                        @Value("${codecafe.sessions.cache.max-entries:10000}") int maxCacheEntries,
+                        @Value("${codecafe.sessions.expiry-hours:168}") long expiryHours) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.hashOperations = stringRedisTemplate.opsForHash();
+        this.keyExpiryService = keyExpiryService;
+        this.cacheTtlMs = cacheTtlMs;
+        this.negativeCacheTtlMs = negativeCacheTtlMs;
+        this.maxCacheEntries = maxCacheEntries;
+        this.expiryHours = expiryHours;
+    }
+
+    /**
+     * Registers a new session in Redis and in the local cache.
+     */
+    public SessionInfo create(String sessionId, String creatorName) {
+        SessionInfo info = new SessionInfo(sessionId, creatorName, Instant.now());
+        String key = getSessionInfoKey(sessionId);
+        hashOperations.putAll(key, Map.of(
+                CREATOR_NAME_FIELD, creatorName,
+                CREATED_AT_FIELD, String.valueOf(info.getCreatedAt().toEpochMilli())));
+        stringRedisTemplate.expire(key, expiryHours, TimeUnit.HOURS);
+        cache(sessionId, info);
+        return info;
+    }
+
+    /**
+     * @return The session, or null if no session with this id exists.
+     * @throws org.springframework.dao.DataAccessException if Redis could not be read. Errors are
+     *         not cached, so the next lookup retries; callers must not treat them as a missing session.
+     */
+    public SessionInfo find(String sessionId) {
+        CacheEntry entry = cache.get(sessionId);
+        SessionInfo info;
+        if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+            cacheHits.incrementAndGet();
+            info = entry.info;
+        } else {
+            cacheMisses.incrementAndGet();
+            try {
+                info = loads.load(sessionId, () -> load(sessionId));
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, String.format("Redis error looking up session [%s]: %s", sessionId, e.getMessage()), e);
+                throw e;
+            }
+            cache(sessionId, info);
+        }
+        if (info != null) {
+            keyExpiryService.touch(getSessionInfoKey(sessionId), expiryHours, TimeUnit.HOURS);
+        }
+        return info;
+    }
+
+    /**
+     * @throws org.springframework.dao.DataAccessException if Redis could not be read (see {@link #find}).
+     */
+    public boolean exists(String sessionId) {
+        return find(sessionId) != null;
+    }
+
+    private SessionInfo load(String sessionId) {
+        Map<String, String> fields = hashOperations.entries(getSessionInfoKey(sessionId));
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        Instant createdAt;
+        try {
+            createdAt = Instant.ofEpochMilli(Long.parseLong(fields.get(CREATED_AT_FIELD)));
+        } catch (NumberFormatException e) {
+            createdAt = null;
+        }
+        return new SessionInfo(sessionId, fields.get(CREATOR_NAME_FIELD), createdAt);
+    }
+
+    private void cache(String sessionId, SessionInfo info) {
+        long now = System.currentTimeMillis();
+        if (cache.size() >= maxCacheEntries) {
+            cache.values().removeIf(entry -> entry.expiresAt <= now);
+            if (cache.size() >= maxCacheEntries) {
+                evictOldest(Math.max(1, maxCacheEntries / 10));
+            }
+        }
+        cache.put(sessionId, new CacheEntry(info, now + (info != null ? cacheTtlMs : negativeCacheTtlMs)));
+    }
+
+    // Evicts the entries closest to expiry (the oldest, and unknown ids before known sessions);
+    // a tenth at a time, so a full cache is not sorted again on every insert
+    private void evictOldest(int count) {
+        cache.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().expiresAt))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(cache::remove);
+    }
+
+    String getSessionInfoKey(String sessionId) {
+        return SESSION_INFO_KEY_PREFIX + sessionId;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("codecafe.sessions.cache.size", cache, Map::size)
+                .description("Session lookups cached on this node, including unknown ids")
+                .register(registry);
+        FunctionCounter.builder("codecafe.sessions.cache.hits", cacheHits, AtomicLong::get)
+                .description("Session lookups answered from the local cache")
+                .register(registry);
+        FunctionCounter.builder("codecafe.sessions.cache.misses", cacheMisses, AtomicLong::get)
+                .description("Session lookups that read Redis")
+                .register(registry);
+    }
+}
@@ -0,0 +1,217 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.ResyncRequiredMessage;
+import com.codecafe.backend.util.SessionMessageHeaders;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Tracks how many outbound frames each WebSocket connection has not yet written to the socket
+ * (client outbound channel queue plus the per-session send buffer).
+ *
+ * When a connection falls behind by more than the configured number of frames, operation
+ * broadcasts for that connection are dropped instead of queued, and a single
+ * {@link ResyncRequiredMessage} is sent to /user/queue/resync. Delivery resumes once the client
+ * requests a fresh document state via /app/get-document-state.
+ *
+ * A frame counts from the moment the outbound channel accepts it until it is written to the
+ * socket, or until the channel or the write reports that it will never be written. Only open
+ * connections are tracked, so frames for a closed connection leave no state behind.
+ */
+@Service
+public class SlowConsumerService implements MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(SlowConsumerService.class.getName());
+
+    private static final String TOPIC_SESSIONS_PREFIX = "/topic/sessions/";
+    private static final String[] OPERATION_TOPIC_SEGMENTS = {"/operations/document/", "/operations-bin/document/"};
+    private static final String RESYNC_DESTINATION = "/queue/resync";
+
+    private final boolean enabled;
+    private final int maxPendingFrames;
+    private final OtService otService;
+    private final ObjectProvider<SimpMessagingTemplate> messagingTemplateProvider;
+    // Sends resync markers, which read the revision from Redis, off the outbound channel threads
+    private final Executor resyncExecutor;
+
+    // Keyed by WebSocket (simp) session id
+    private final Map<String, ConnectionBacklog> backlogs = new ConcurrentHashMap<>();
+
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong resyncsRequested = new AtomicLong();
+
+    public SlowConsumerService(@Value("${codecafe.websocket.slow-consumer.enabled:true}") boolean enabled,
+                               @Value("${codecafe.websocket.slow-consumer.max-pending-frames:500}") int maxPendingFrames,
+                               OtService otService,
+                               ObjectProvider<SimpMessagingTemplate> messagingTemplateProvider,
+                               @Qualifier("taskScheduler") Executor resyncExecutor) {
+        this.enabled = enabled;
+        this.maxPendingFrames = maxPendingFrames;
+        this.otService = otService;
+        this.messagingTemplateProvider = messagingTemplateProvider;
+        this.resyncExecutor = resyncExecutor;
+        logger.info(String.format("SlowConsumerService initialized (enabled=%s, maxPendingFrames=%d).", enabled, maxPendingFrames));
+    }
+
+    private static class ConnectionBacklog {
+        private final AtomicInteger pendingFrames = new AtomicInteger();
+        // "sessionId/documentId" entries whose operation delivery is suspended
+        private final Set<String> suspendedDocuments = ConcurrentHashMap.newKeySet();
+    }
+
+    public void connectionOpened(String simpSessionId) {
+        if (enabled && simpSessionId != null) {
+            backlogs.putIfAbsent(simpSessionId, new ConnectionBacklog());
+        }
+    }
+
+    /**
+     * Called for every frame on its way to a connection. A frame let through counts as pending
+     * until {@link #frameWritten} or {@link #frameNotSent} is called for it.
+     *
+     * @param simpSessionId The WebSocket session the frame is addressed to.
+     * @param destination   The STOMP destination of the frame (may be null for non-MESSAGE frames).
+     * @return false if the frame must be dropped.
+     */
+    public boolean beforeSend(String simpSessionId, String destination) {
+        if (!enabled || simpSessionId == null) {
+            return true;
+        }
+        ConnectionBacklog backlog = backlogs.get(simpSessionId);
+        if (backlog == null) {
+            return true; // Not open (yet or anymore); nothing to protect
+        }
+
+        String[] target = parseOperationTopic(destination);
+        if (target != null) {
+            String documentKey = target[0] + "/" + target[1];
+            if (backlog.suspendedDocuments.contains(documentKey)) {
+                droppedFrames.incrementAndGet();
+                return false;
+            }
+            int pending = backlog.pendingFrames.get();
+            if (pending >= maxPendingFrames && backlog.suspendedDocuments.add(documentKey)) {
+                droppedFrames.incrementAndGet();
+                resyncsRequested.incrementAndGet();
+                logger.warning(String.format("[Session: %s, Doc: %s] Connection [%s] has %d unsent frames (limit %d). Suspending operation delivery until resync.",
+                        target[0], target[1], simpSessionId, pending, maxPendingFrames));
+                sendResyncRequired(simpSessionId, target[0], target[1]);
+                return false;
+            }
+        }
+        backlog.pendingFrames.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Called after a write of a frame to the connection's socket, successful or not.
+     */
+    public void frameWritten(String simpSessionId) {
+        releaseFrame(simpSessionId);
+    }
+
+    /**
+     * Called for a frame let through by {@link #beforeSend} that will not reach the socket,
+     * e.g. because a later interceptor dropped it or dispatching it failed.
+     */
+    public void frameNotSent(String simpSessionId) {
+        releaseFrame(simpSessionId);
+    }
+
+    private void releaseFrame(String simpSessionId) {
+        if (!enabled || simpSessionId == null) {
+            return;
+        }
+        ConnectionBacklog backlog = backlogs.get(simpSessionId);
+        if (backlog != null) {
+            // Some frames (e.g. protocol errors) bypass the outbound channel; never go below zero
+            backlog.pendingFrames.updateAndGet(count -> count > 0 ? count - 1 : 0);
+        }
+    }
+
+    /**
+     * Resumes operation delivery for a document after the client asked for a fresh state.
+     */
+    public void resume(String simpSessionId, String sessionId, String documentId) {
+        if (simpSessionId == null) {
+            return;
+        }
+        ConnectionBacklog backlog = backlogs.get(simpSessionId);
+        if (backlog != null && backlog.suspendedDocuments.remove(sessionId + "/" + documentId)) {
+            logger.info(String.format("[Session: %s, Doc: %s] Resuming operation delivery to connection [%s] after resync.",
+                    sessionId, documentId, simpSessionId));
+        }
+    }
+
+    public void connectionClosed(String simpSessionId) {
+        if (simpSessionId != null) {
+            backlogs.remove(simpSessionId);
+        }
+    }
+
+    // Called on an outbound channel thread, so the Redis read and the send happen elsewhere
+    private void sendResyncRequired(String simpSessionId, String sessionId, String documentId) {
+        try {
+            resyncExecutor.execute(() -> {
+                try {
+                    int revision = otService.getRevision(sessionId, documentId);
+                    ResyncRequiredMessage marker = new ResyncRequiredMessage(sessionId, documentId, revision, "slow-consumer");
+                    messagingTemplateProvider.getObject().convertAndSendToUser(simpSessionId, RESYNC_DESTINATION, marker,
+                            SessionMessageHeaders.forSession(simpSessionId));
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Failed to send resync marker to connection [%s]: %s",
+                            sessionId, documentId, simpSessionId, e.getMessage()), e);
+                }
+            });
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Failed to schedule resync marker for connection [%s]: %s",
+                    sessionId, documentId, simpSessionId, e.getMessage()), e);
+        }
+    }
+
+    // Returns {sessionId, documentId} for operation topics, null for anything else
+    private static String[] parseOperationTopic(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_SESSIONS_PREFIX)) {
+            return null;
+        }
+        for (String segment : OPERATION_TOPIC_SEGMENTS) {
+            int index = destination.indexOf(segment, TOPIC_SESSIONS_PREFIX.length());
+            if (index > 0) {
+                String sessionId = destination.substring(TOPIC_SESSIONS_PREFIX.length(), index);
+                String documentId = destination.substring(index + segment.length());
+                return new String[]{sessionId, documentId};
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("codecafe.websocket.slow_consumer.dropped_frames", droppedFrames, AtomicLong::get)
+                .description("Operation frames dropped for connections that fell behind")
+                .register(registry);
+        FunctionCounter.builder("codecafe.websocket.slow_consumer.resyncs", resyncsRequested, AtomicLong::get)
+                .description("Resync markers sent to slow connections")
+                .register(registry);
+        Gauge.builder("codecafe.websocket.slow_consumer.suspended_documents", backlogs,
+                        map -> map.values().stream().mapToInt(b -> b.suspendedDocuments.size()).sum())
+                .description("Connection/document pairs currently waiting for a resync")
+                .register(registry);
+    }
+}
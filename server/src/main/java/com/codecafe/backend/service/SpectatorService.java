@@ -0,0 +1,204 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.SpectatorUpdate;
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.OtUtils;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Read-only spectators for large audiences.
+ *
+ * Spectators are not participants: they have no presence entry, get no cursor stream and
+ * cannot submit operations. Instead of every operation they receive one
+ * {@link SpectatorUpdate} per document and update interval on the spectator topic, holding
+ * all operations applied since the previous update composed into one. Operations are only
+ * composed for documents that currently have spectators on this node.
+ *
+ * A spectator's state is read together with {@link #flushDocument(String, String)} under the
+ * OtService lock, so the first update it receives afterwards is based on exactly that revision.
+ */
+@Service
+public class SpectatorService implements OperationListener, MeterBinder {
+
+    private static final Logger logger = Logger.getLogger(SpectatorService.class.getName());
+
+    private final boolean enabled;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // "sessionId/documentId" -> simp session ids of the spectators watching it
+    private final Map<String, Set<String>> spectatorsByDocument = new ConcurrentHashMap<>();
+    // simp session id -> "sessionId/documentId" keys it watches
+    private final Map<String, Set<String>> documentsBySpectator = new ConcurrentHashMap<>();
+    // "sessionId/documentId" -> operations not yet sent to spectators
+    private final Map<String, PendingUpdate> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong composedOperations = new AtomicLong();
+    private final AtomicLong sentUpdates = new AtomicLong();
+
+    public SpectatorService(@Value("${codecafe.spectator.enabled:true}") boolean enabled,
+                            SimpMessagingTemplate messagingTemplate) {
+        this.enabled = enabled;
+        this.messagingTemplate = messagingTemplate;
+        logger.info(String.format("SpectatorService initialized (enabled=%s).", enabled));
+    }
+
+    private static class PendingUpdate {
+        private final String sessionId;
+        private final String documentId;
+        private final int baseRevision;
+        private TextOperation composed;
+        private int revision;
+        private boolean resync;
+
+        private PendingUpdate(String sessionId, String documentId, int baseRevision) {
+            this.sessionId = sessionId;
+            this.documentId = documentId;
+            this.baseRevision = baseRevision;
+            this.revision = baseRevision;
+        }
+    }
+
+    public static String spectatorDestination(String sessionId, String documentId) {
+        return String.format("/topic/sessions/%s/spectate/document/%s", sessionId, documentId);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Registers a connection as a spectator of a document. From now on the connection is
+     * read-only for that document (see {@link #isSpectator(String, String, String)}); it can
+     * still join and edit other documents.
+     */
+    public void spectatorJoined(String simpSessionId, String sessionId, String documentId) {
+        String documentKey = sessionId + "/" + documentId;
+        documentsBySpectator.computeIfAbsent(simpSessionId, id -> ConcurrentHashMap.newKeySet()).add(documentKey);
+        // compute() keeps this atomic with the removal in connectionClosed()
+        spectatorsByDocument.compute(documentKey, (key, ids) -> {
+            Set<String> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+            target.add(simpSessionId);
+            return target;
+        });
+        logger.info(String.format("[Session: %s, Doc: %s] Connection [%s] is spectating.", sessionId, documentId, simpSessionId));
+    }
+
+    public boolean isSpectator(String simpSessionId, String sessionId, String documentId) {
+        Set<String> documentKeys = simpSessionId != null ? documentsBySpectator.get(simpSessionId) : null;
+        return documentKeys != null && documentKeys.contains(sessionId + "/" + documentId);
+    }
+
+    public void connectionClosed(String simpSessionId) {
+        Set<String> documentKeys = simpSessionId != null ? documentsBySpectator.remove(simpSessionId) : null;
+        if (documentKeys == null) {
+            return;
+        }
+        for (String documentKey : documentKeys) {
+            spectatorsByDocument.computeIfPresent(documentKey, (key, ids) -> {
+                ids.remove(simpSessionId);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    @Override
+    public void operationApplied(String sessionId, String documentId, TextOperation operation, String newContent, int revision) {
+        String documentKey = sessionId + "/" + documentId;
+        if (!enabled || !spectatorsByDocument.containsKey(documentKey)) {
+            return;
+        }
+        composedOperations.incrementAndGet();
+        pending.compute(documentKey, (key, update) -> {
+            PendingUpdate target = update != null ? update : new PendingUpdate(sessionId, documentId, revision - 1);
+            if (!target.resync) {
+                try {
+                    target.composed = target.composed == null ? operation : OtUtils.compose(target.composed, operation);
+                } catch (IllegalArgumentException e) {
+                    logger.warning(String.format("[Session: %s, Doc: %s] Could not compose operation for spectators, sending a resync: %s",
+                            sessionId, documentId, e.getMessage()));
+                    target.resync = true;
+                    target.composed = null;
+                }
+            }
+            target.revision = revision;
+            return target;
+        });
+    }
+
+    @Override
+    public void documentReset(String sessionId, String documentId) {
+        String documentKey = sessionId + "/" + documentId;
+        if (!enabled || !spectatorsByDocument.containsKey(documentKey)) {
+            return;
+        }
+        pending.compute(documentKey, (key, update) -> {
+            PendingUpdate target = update != null ? update : new PendingUpdate(sessionId, documentId, 0);
+            target.resync = true;
+            target.composed = null;
+            return target;
+        });
+    }
+
+    /**
+     * Sends the pending composed update of every document to its spectator topic.
+     */
+    @Scheduled(fixedRateString = "${codecafe.spectator.update-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (String documentKey : pending.keySet()) {
+            send(pending.remove(documentKey));
+        }
+    }
+
+    /**
+     * Sends the document's pending update right away. Called under the OtService lock while a
+     * spectator's state is read, so the next update starts exactly at the state's revision.
+     */
+    public void flushDocument(String sessionId, String documentId) {
+        send(pending.remove(sessionId + "/" + documentId));
+    }
+
+    private void send(PendingUpdate update) {
+        if (update == null) {
+            return;
+        }
+        SpectatorUpdate message = new SpectatorUpdate(update.sessionId, update.documentId, update.baseRevision, update.revision,
+                update.composed != null ? update.composed.getOps() : null, update.resync);
+        try {
+            messagingTemplate.convertAndSend(spectatorDestination(update.sessionId, update.documentId), message);
+            sentUpdates.incrementAndGet();
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, String.format("[Session: %s, Doc: %s] Error sending spectator update: %s",
+                    update.sessionId, update.documentId, e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("codecafe.spectator.composed_operations", composedOperations, AtomicLong::get)
+                .description("Operations composed into spectator updates")
+                .register(registry);
+        FunctionCounter.builder("codecafe.spectator.updates", sentUpdates, AtomicLong::get)
+                .description("Composed updates sent to spectator topics")
+                .register(registry);
+        Gauge.builder("codecafe.spectator.connections", documentsBySpectator, Map::size)
+                .description("Spectator connections on this node")
+                .register(registry);
+    }
+}
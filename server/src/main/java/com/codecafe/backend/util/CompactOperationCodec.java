@@ -0,0 +1,226 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.IncomingOperationPayload;
+import com.codecafe.backend.dto.TextOperation;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of operations for clients on the native WebSocket endpoint.
+ *
+ * Layout (all integers are unsigned LEB128 varints, strings are varint byte length + UTF-8):
+ * <pre>
+ *   incoming operation : version, clientId, sessionId, documentId, revision, ops
+ *   broadcast operation: broadcast version, clientId, sessionId, documentId, revision, ops, selection
+ *   ops                : count, then one header per component
+ *   component header   : (n << 2) | type, type 0 = retain n, 1 = delete n,
+ *                        2 = insert, followed by n bytes of UTF-8 text
+ *   selection          : range count (0 = none), then anchor, head per range
+ * </pre>
+ */
+public final class CompactOperationCodec {
+
+    public static final int VERSION = 1;
+    // Version 1 broadcasts carried neither revision nor selection
+    public static final int BROADCAST_VERSION = 2;
+
+    private static final int TYPE_RETAIN = 0;
+    private static final int TYPE_DELETE = 1;
+    private static final int TYPE_INSERT = 2;
+
+    private CompactOperationCodec() {
+    }
+
+    /**
+     * Encodes a client operation message (the binary counterpart of {@link IncomingOperationPayload}).
+     */
+    public static byte[] encodeIncoming(IncomingOperationPayload payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, VERSION);
+        writeString(out, payload.getClientId());
+        writeString(out, payload.getSessionId());
+        writeString(out, payload.getDocumentId());
+        writeVarint(out, payload.getRevision());
+        writeOps(out, payload.getOperation());
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a client operation message. Selection and cursor are not part of the
+     * binary format and are left null.
+     *
+     * @throws IllegalArgumentException if the bytes are not a valid encoding.
+     */
+    public static IncomingOperationPayload decodeIncoming(byte[] bytes) throws IllegalArgumentException {
+        Reader reader = new Reader(bytes);
+        checkVersion(reader.readVarint());
+        IncomingOperationPayload payload = new IncomingOperationPayload();
+        payload.setClientId(reader.readString());
+        payload.setSessionId(reader.readString());
+        payload.setDocumentId(reader.readString());
+        payload.setRevision(toInt(reader.readVarint()));
+        payload.setOperation(reader.readOps());
+        reader.expectEnd();
+        return payload;
+    }
+
+    /**
+     * Encodes a transformed operation as broadcast to the document's binary operations topic,
+     * carrying the same revision and selection as the JSON broadcast.
+     *
+     * @param selection The sender's selection ({@code {ranges: [{anchor, head}, ...]}}), or null.
+     */
+    public static byte[] encodeBroadcast(String clientId, String sessionId, String documentId, int revision,
+                                         TextOperation operation, Object selection) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, BROADCAST_VERSION);
+        writeString(out, clientId);
+        writeString(out, sessionId);
+        writeString(out, documentId);
+        writeVarint(out, revision);
+        writeOps(out, operation.getOps());
+        writeSelection(out, selection);
+        return out.toByteArray();
+    }
+
+    private static void checkVersion(long version) {
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported compact operation version: " + version);
+        }
+    }
+
+    private static void writeOps(ByteArrayOutputStream out, List<Object> ops) {
+        if (ops == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, ops.size());
+        for (Object op : ops) {
+            if (TextOperation.isRetain(op)) {
+                writeVarint(out, ((long) (Integer) op << 2) | TYPE_RETAIN);
+            } else if (TextOperation.isDelete(op)) {
+                writeVarint(out, ((long) -(Integer) op << 2) | TYPE_DELETE);
+            } else if (TextOperation.isInsert(op)) {
+                byte[] text = ((String) op).getBytes(StandardCharsets.UTF_8);
+                writeVarint(out, ((long) text.length << 2) | TYPE_INSERT);
+                out.write(text, 0, text.length);
+            } else {
+                throw new IllegalArgumentException("Invalid op type in operation: " + op);
+            }
+        }
+    }
+
+    private static void writeSelection(ByteArrayOutputStream out, Object selection) {
+        List<long[]> ranges = new ArrayList<>();
+        if (selection instanceof Map<?, ?> map && map.get("ranges") instanceof List<?> list) {
+            for (Object range : list) {
+                if (range instanceof Map<?, ?> r && r.get("anchor") instanceof Number anchor
+                        && r.get("head") instanceof Number head && anchor.longValue() >= 0 && head.longValue() >= 0) {
+                    ranges.add(new long[]{anchor.longValue(), head.longValue()});
+                }
+            }
+        }
+        writeVarint(out, ranges.size());
+        for (long[] range : ranges) {
+            writeVarint(out, range[0]);
+            writeVarint(out, range[1]);
+        }
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = (value != null ? value : "").getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Varint value must be non-negative: " + value);
+        }
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int toInt(long value) {
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            if (bytes == null) {
+                throw new IllegalArgumentException("No data to decode.");
+            }
+            this.bytes = bytes;
+        }
+
+        long readVarint() {
+            long result = 0;
+            int shift = 0;
+            while (true) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated varint at offset " + position);
+                }
+                int b = bytes[position++] & 0xFF;
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+                if (shift > 56) {
+                    throw new IllegalArgumentException("Varint too long at offset " + position);
+                }
+            }
+        }
+
+        String readString() {
+            int length = toInt(readVarint());
+            String value = new String(readBytes(length), StandardCharsets.UTF_8);
+            return value.isEmpty() ? null : value;
+        }
+
+        List<Object> readOps() {
+            int count = toInt(readVarint());
+            List<Object> ops = new ArrayList<>(Math.min(count, bytes.length));
+            for (int i = 0; i < count; i++) {
+                long header = readVarint();
+                int n = toInt(header >>> 2);
+                switch ((int) (header & 0x3)) {
+                    case TYPE_RETAIN -> ops.add(n);
+                    case TYPE_DELETE -> ops.add(-n);
+                    case TYPE_INSERT -> ops.add(new String(readBytes(n), StandardCharsets.UTF_8));
+                    default -> throw new IllegalArgumentException("Unknown op type in header " + header);
+                }
+            }
+            return ops;
+        }
+
+        byte[] readBytes(int length) {
+            if (length < 0 || position + length > bytes.length) {
+                throw new IllegalArgumentException("Truncated data at offset " + position);
+            }
+            byte[] result = new byte[length];
+            System.arraycopy(bytes, position, result, 0, length);
+            position += length;
+            return result;
+        }
+
+        void expectEnd() {
+            if (position != bytes.length) {
+                throw new IllegalArgumentException("Unexpected trailing bytes at offset " + position);
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.TextOperation;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Line-start index of a document, for converting between flat offsets (as used by
+ * {@link TextOperation} and selections) and Monaco-style 1-based line/column positions.
+ *
+ * Lines are kept in an implicit treap ordered by line number, where each node stores the
+ * length of its line including the trailing '\n' (the last line has none). Lookups in both
+ * directions and each edit take O(log lines), plus O(k) for k inserted line breaks, so the
+ * index can be kept up to date with {@link #apply(TextOperation)} instead of rescanning
+ * the document.
+ *
+ * Not thread-safe; callers must serialize access.
+ */
+public final class LineIndex {
+
+    private static final class Node {
+        int length;      // characters in this line, including its '\n'
+        final int priority;
+        Node left;
+        Node right;
+        int lines;       // lines in this subtree
+        int chars;       // characters in this subtree
+
+        Node(int length) {
+            this.length = length;
+            this.priority = ThreadLocalRandom.current().nextInt();
+            update();
+        }
+
+        void update() {
+            lines = 1 + lines(left) + lines(right);
+            chars = length + chars(left) + chars(right);
+        }
+    }
+
+    private Node root;
+
+    public LineIndex(String content) {
+        String text = content != null ? content : "";
+        int lineStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                root = merge(root, new Node(i + 1 - lineStart));
+                lineStart = i + 1;
+            }
+        }
+        root = merge(root, new Node(text.length() - lineStart));
+    }
+
+    public int getLineCount() {
+        return lines(root);
+    }
+
+    public int getLength() {
+        return chars(root);
+    }
+
+    /**
+     * @param offset A document offset, clamped to [0, length].
+     * @return The 1-based line number containing the offset.
+     */
+    public int lineNumberAt(int offset) {
+        int remaining = clampOffset(offset);
+        int lineNumber = 0;
+        Node node = root;
+        while (node != null) {
+            int leftChars = chars(node.left);
+            if (remaining < leftChars) {
+                node = node.left;
+            } else if (remaining < leftChars + node.length || node.right == null) {
+                // The last line also owns the end-of-document offset
+                return lineNumber + lines(node.left) + 1;
+            } else {
+                remaining -= leftChars + node.length;
+                lineNumber += lines(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return lineNumber;
+    }
+
+    /**
+     * @param lineNumber A 1-based line number, clamped to the existing lines.
+     * @return The offset of the first character of that line.
+     */
+    public int lineStart(int lineNumber) {
+        int index = Math.max(1, Math.min(lineNumber, getLineCount())) - 1;
+        int offset = 0;
+        Node node = root;
+        while (node != null) {
+            int leftLines = lines(node.left);
+            if (index < leftLines) {
+                node = node.left;
+            } else if (index == leftLines) {
+                return offset + chars(node.left);
+            } else {
+                offset += chars(node.left) + node.length;
+                index -= leftLines + 1;
+                node = node.right;
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * @return The 1-based column of the offset within its line.
+     */
+    public int columnAt(int offset) {
+        int clamped = clampOffset(offset);
+        return clamped - lineStart(lineNumberAt(clamped)) + 1;
+    }
+
+    /**
+     * Converts a 1-based line/column position to an offset. Positions past the end of a line
+     * are clamped to the end of that line (before its '\n').
+     */
+    public int offsetAt(int lineNumber, int column) {
+        int line = Math.max(1, Math.min(lineNumber, getLineCount()));
+        int start = lineStart(line);
+        int end = line < getLineCount() ? lineStart(line + 1) - 1 : getLength();
+        return Math.max(start, Math.min(start + column - 1, end));
+    }
+
+    /**
+     * Updates the index for an operation applied to the indexed document.
+     *
+     * @throws IllegalArgumentException if the operation's base length does not match the document length.
+     */
+    public void apply(TextOperation operation) {
+        if (operation.getBaseLength() != getLength()) {
+            throw new IllegalArgumentException("Operation base length " + operation.getBaseLength()
+                    + " does not match indexed document length " + getLength());
+        }
+        int position = 0;
+        for (Object op : operation.getOps()) {
+            if (TextOperation.isRetain(op)) {
+                position += (Integer) op;
+            } else if (TextOperation.isInsert(op)) {
+                String text = (String) op;
+                replace(position, 0, text);
+                position += text.length();
+            } else if (TextOperation.isDelete(op)) {
+                replace(position, -(Integer) op, "");
+            } else {
+                throw new IllegalArgumentException("Invalid op type in operation: " + op);
+            }
+        }
+    }
+
+    // Replaces [offset, offset + deleteLength) with text, rebuilding only the affected lines
+    private void replace(int offset, int deleteLength, String text) {
+        int firstLine = lineNumberAt(offset) - 1;
+        int lastLine = lineNumberAt(offset + deleteLength) - 1;
+        int prefixLength = offset - lineStart(firstLine + 1);
+
+        Node[] beforeRest = split(root, firstLine);
+        Node[] affectedAfter = split(beforeRest[1], lastLine - firstLine + 1);
+        // Characters of the last affected line that survive after the deleted range (incl. its '\n')
+        int suffixLength = chars(affectedAfter[0]) - prefixLength - deleteLength;
+
+        Node replacement = null;
+        int segmentStart = 0;
+        int pending = prefixLength;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                replacement = merge(replacement, new Node(pending + i + 1 - segmentStart));
+                segmentStart = i + 1;
+                pending = 0;
+            }
+        }
+        replacement = merge(replacement, new Node(pending + text.length() - segmentStart + suffixLength));
+
+        root = merge(merge(beforeRest[0], replacement), affectedAfter[1]);
+    }
+
+    private int clampOffset(int offset) {
+        return Math.max(0, Math.min(offset, getLength()));
+    }
+
+    // Splits into the first `count` lines and the rest
+    private static Node[] split(Node node, int count) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        int leftLines = lines(node.left);
+        if (count <= leftLines) {
+            Node[] parts = split(node.left, count);
+            node.left = parts[1];
+            node.update();
+            return new Node[]{parts[0], node};
+        }
+        Node[] parts = split(node.right, count - leftLines - 1);
+        node.right = parts[0];
+        node.update();
+        return new Node[]{node, parts[1]};
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static int lines(Node node) {
+        return node != null ? node.lines : 0;
+    }
+
+    private static int chars(Node node) {
+        return node != null ? node.chars : 0;
+    }
+}
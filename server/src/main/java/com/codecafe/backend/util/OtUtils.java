@@ -4,6 +4,8 @@ import com.codecafe.backend.dto.TextOperation;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class OtUtils {
 
@@ -79,6 +81,61 @@ public class OtUtils {
         return inverse;
     }
 
+    // Below this many operations a range is composed sequentially; forking costs more than it saves
+    static final int COMPOSE_SEQUENTIAL_CUTOFF = 64;
+
+    /**
+     * Composes a list of consecutive operations into one. Composition is associative, so long
+     * lists are reduced as a balanced tree in the common fork-join pool: halves are composed
+     * in parallel and then composed with each other. Lists below the sequential cutoff are
+     * folded left to right on the calling thread.
+     *
+     * @param operations Consecutive operations (each one's base length is the previous one's target length).
+     * @return The composed operation, or null if the list is empty.
+     * @throws IllegalArgumentException If two neighbouring operations do not fit together.
+     */
+    public static TextOperation composeAll(List<TextOperation> operations) throws IllegalArgumentException {
+        if (operations.isEmpty()) {
+            return null;
+        }
+        if (operations.size() <= COMPOSE_SEQUENTIAL_CUTOFF) {
+            return composeRange(operations, 0, operations.size());
+        }
+        return ForkJoinPool.commonPool().invoke(new ComposeTask(operations, 0, operations.size()));
+    }
+
+    private static TextOperation composeRange(List<TextOperation> operations, int from, int to) {
+        TextOperation composed = operations.get(from);
+        for (int i = from + 1; i < to; i++) {
+            composed = compose(composed, operations.get(i));
+        }
+        return composed;
+    }
+
+    private static final class ComposeTask extends RecursiveTask<TextOperation> {
+        private final List<TextOperation> operations;
+        private final int from;
+        private final int to;
+
+        private ComposeTask(List<TextOperation> operations, int from, int to) {
+            this.operations = operations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TextOperation compute() {
+            if (to - from <= COMPOSE_SEQUENTIAL_CUTOFF) {
+                return composeRange(operations, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ComposeTask left = new ComposeTask(operations, from, middle);
+            left.fork();
+            TextOperation right = new ComposeTask(operations, middle, to).compute();
+            return compose(left.join(), right);
+        }
+    }
+
     /**
      * Compose merges two consecutive operations (op1 followed by op2) into one.
      * Based on ot.js TextOperation.prototype.compose
@@ -140,7 +197,7 @@ public class OtUtils {
                 String insertStr = (String) currentOp1;
                 int deleteCount = (Integer) currentOp2;
                 if (insertStr.length() > -deleteCount) {
-                    currentOp1 = insertStr.substring(0, insertStr.length() + deleteCount); // Keep remaining insert
+                    currentOp1 = insertStr.substring(-deleteCount); // The delete removes the start of the insert; keep the rest
                     currentOp2 = (i2 < ops2.size()) ? ops2.get(i2++) : null;
                 } else if (insertStr.length() == -deleteCount) {
                     currentOp1 = (i1 < ops1.size()) ? ops1.get(i1++) : null;
@@ -317,4 +374,36 @@ public class OtUtils {
 
         return Arrays.asList(operation1prime, operation2prime);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Moves a document offset (e.g. a cursor or selection endpoint) through an operation.
+     * Text inserted at the index pushes it to the right; text deleted around it pulls it to
+     * the start of the deletion.
+     * Based on ot.js Selection.Range.prototype.transform
+     *
+     * @param index     The offset in the document before the operation.
+     * @param operation The operation that was applied.
+     * @return The corresponding offset in the document after the operation.
+     */
+    public static int transformIndex(int index, TextOperation operation) {
+        int newIndex = index;
+        int remaining = index;
+        for (Object op : operation.getOps()) {
+            if (TextOperation.isRetain(op)) {
+                remaining -= (Integer) op;
+            } else if (TextOperation.isInsert(op)) {
+                newIndex += ((String) op).length();
+            } else if (TextOperation.isDelete(op)) {
+                int deleteCount = -(Integer) op;
+                newIndex -= Math.min(remaining, deleteCount);
+                remaining -= deleteCount;
+            } else {
+                throw new IllegalArgumentException("Invalid op type in operation: " + op);
+            }
+            if (remaining < 0) {
+                break;
+            }
+        }
+        return newIndex;
+    }
+}
@@ -0,0 +1,139 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.RangeInfo;
+import com.codecafe.backend.dto.SelectionInfo;
+import com.codecafe.backend.dto.UserInfoDTO;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact string encoding of presence entries for Redis hashes.
+ *
+ * Each participant uses two plain string fields in the document's presence hash, so a cursor
+ * move rewrites only a few bytes and no JSON type metadata is stored:
+ * <ul>
+ *   <li>{@code i:{userId}} - static info: {@code <nameLength>:<name><color>}</li>
+ *   <li>{@code c:{userId}} - volatile cursor/selection: {@code <line>,<column>|<anchor>,<head>;...}.
+ *       The cursor part is empty when there is no cursor; the {@code |} part is absent when
+ *       there is no selection.</li>
+ * </ul>
+ * Fields in any other format (e.g. JSON blobs of the previous layout) are ignored on decode.
+ */
+public final class PresenceCodec {
+
+    public static final String INFO_FIELD_PREFIX = "i:";
+    public static final String CURSOR_FIELD_PREFIX = "c:";
+
+    private PresenceCodec() {
+    }
+
+    public static String infoField(String userId) {
+        return INFO_FIELD_PREFIX + userId;
+    }
+
+    public static String cursorField(String userId) {
+        return CURSOR_FIELD_PREFIX + userId;
+    }
+
+    public static String encodeInfo(UserInfoDTO user) {
+        String name = user.getName() != null ? user.getName() : "";
+        String color = user.getColor() != null ? user.getColor() : "";
+        return name.length() + ":" + name + color;
+    }
+
+    public static String encodeCursor(Map<String, Integer> cursorPosition, SelectionInfo selection) {
+        StringBuilder encoded = new StringBuilder(24);
+        if (cursorPosition != null && cursorPosition.get("lineNumber") != null && cursorPosition.get("column") != null) {
+            encoded.append(cursorPosition.get("lineNumber")).append(',').append(cursorPosition.get("column"));
+        }
+        if (selection != null) {
+            encoded.append('|');
+            List<RangeInfo> ranges = selection.getRanges();
+            if (ranges != null) {
+                for (int i = 0; i < ranges.size(); i++) {
+                    if (i > 0) {
+                        encoded.append(';');
+                    }
+                    encoded.append(ranges.get(i).getAnchor()).append(',').append(ranges.get(i).getHead());
+                }
+            }
+        }
+        return encoded.toString();
+    }
+
+    /**
+     * Decodes all participants of a presence hash. Users without an info field are skipped
+     * (their cursor field may outlive them briefly while a leave is replicated).
+     */
+    public static Map<String, UserInfoDTO> decode(Map<String, String> fields) {
+        Map<String, UserInfoDTO> users = new LinkedHashMap<>();
+        if (fields == null) {
+            return users;
+        }
+        fields.forEach((field, value) -> {
+            if (field.startsWith(INFO_FIELD_PREFIX) && value != null) {
+                String userId = field.substring(INFO_FIELD_PREFIX.length());
+                UserInfoDTO user = decodeInfo(userId, value);
+                if (user != null) {
+                    users.put(userId, user);
+                }
+            }
+        });
+        users.forEach((userId, user) -> {
+            String cursor = fields.get(cursorField(userId));
+            if (cursor != null) {
+                applyCursor(user, cursor);
+            }
+        });
+        return users;
+    }
+
+    private static UserInfoDTO decodeInfo(String userId, String value) {
+        int separator = value.indexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        try {
+            int nameLength = Integer.parseInt(value.substring(0, separator));
+            int nameEnd = separator + 1 + nameLength;
+            if (nameLength < 0 || nameEnd > value.length()) {
+                return null;
+            }
+            return new UserInfoDTO(userId, value.substring(separator + 1, nameEnd), value.substring(nameEnd), null, null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void applyCursor(UserInfoDTO user, String value) {
+        try {
+            int bar = value.indexOf('|');
+            String cursorPart = bar >= 0 ? value.substring(0, bar) : value;
+            if (!cursorPart.isEmpty()) {
+                int comma = cursorPart.indexOf(',');
+                Map<String, Integer> cursorPosition = new LinkedHashMap<>();
+                cursorPosition.put("lineNumber", Integer.parseInt(cursorPart.substring(0, comma)));
+                cursorPosition.put("column", Integer.parseInt(cursorPart.substring(comma + 1)));
+                user.setCursorPosition(cursorPosition);
+            }
+            if (bar >= 0) {
+                List<RangeInfo> ranges = new ArrayList<>();
+                String rangesPart = value.substring(bar + 1);
+                if (!rangesPart.isEmpty()) {
+                    for (String range : rangesPart.split(";")) {
+                        int comma = range.indexOf(',');
+                        ranges.add(new RangeInfo(Integer.parseInt(range.substring(0, comma)), Integer.parseInt(range.substring(comma + 1))));
+                    }
+                }
+                user.setSelection(new SelectionInfo(ranges));
+            }
+        } catch (RuntimeException e) {
+            // Malformed cursor data only loses the cursor, never the participant
+            user.setCursorPosition(null);
+            user.setSelection(null);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.codecafe.backend.util;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+
+/**
+ * Builds headers for sending to a single STOMP connection through a user destination.
+ * Clients connect without an authenticated principal, so the WebSocket session id
+ * (simpSessionId) is used as the "user" in SimpMessagingTemplate#convertAndSendToUser.
+ * The client subscribes to /user/queue/... and only its own connection receives the message.
+ */
+public final class SessionMessageHeaders {
+
+    /**
+     * Server-side header naming the connection a broadcast originated from. It is not a
+     * native STOMP header, so it never reaches clients; the outbound channel uses it to
+     * skip delivering a broadcast back to its sender.
+     */
+    public static final String ORIGIN_SESSION_HEADER = "codecafeOriginSession";
+
+    private SessionMessageHeaders() {
+    }
+
+    public static MessageHeaders forSession(String simpSessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(simpSessionId);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    /**
+     * Headers for a topic broadcast that should not be delivered back to the given connection.
+     */
+    public static MessageHeaders excludingOrigin(String simpSessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setHeader(ORIGIN_SESSION_HEADER, simpSessionId);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+}
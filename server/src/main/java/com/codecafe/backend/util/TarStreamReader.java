@@ -0,0 +1,231 @@
+package com.codecafe.backend.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal streaming reader for tar archives (ustar, with GNU long names and pax path
+ * records). Entries are read one after another straight from the stream, so an archive is
+ * never buffered as a whole. Usage mirrors {@link java.util.zip.ZipInputStream}: call
+ * {@link #nextEntry()}, then read the entry's data from this stream until it returns -1.
+ */
+public final class TarStreamReader extends InputStream {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream in;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long remaining;   // Unread data bytes of the current entry
+    private long padding;     // Padding after the current entry's data
+    private boolean finished;
+
+    public TarStreamReader(InputStream in) {
+        this.in = in;
+    }
+
+    /** A tar entry header. */
+    public static final class Entry {
+        private final String name;
+        private final long size;
+        private final boolean file;
+
+        private Entry(String name, long size, boolean file) {
+            this.name = name;
+            this.size = size;
+            this.file = file;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /** @return true for regular files; directories, links and devices are false. */
+        public boolean isFile() {
+            return file;
+        }
+    }
+
+    /**
+     * Skips what is left of the current entry and reads the next header.
+     * @return The next entry, or null at the end of the archive.
+     */
+    public Entry nextEntry() throws IOException {
+        String longName = null;
+        while (!finished) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+            if (!readBlock()) {
+                finished = true;
+                return null;
+            }
+            if (isZeroBlock()) {
+                finished = true; // End-of-archive marker
+                return null;
+            }
+            char type = (char) header[156];
+            long size = parseSize();
+            remaining = size;
+            padding = (BLOCK_SIZE - (size % BLOCK_SIZE)) % BLOCK_SIZE;
+
+            if (type == 'L') { // GNU long name for the next entry
+                longName = trimName(readEntryData(size));
+                continue;
+            }
+            if (type == 'x') { // pax extended header; only the path record matters here
+                String path = parsePaxPath(readEntryData(size));
+                if (path != null) {
+                    longName = path;
+                }
+                continue;
+            }
+            if (type == 'g') { // pax global header
+                continue;
+            }
+            String name = longName != null ? longName : headerName();
+            return new Entry(name, size, type == '0' || type == '\0' || type == '7');
+        }
+        return null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (remaining <= 0) {
+            return -1;
+        }
+        int n = in.read(buffer, offset, (int) Math.min(length, remaining));
+        if (n < 0) {
+            throw new EOFException("Truncated tar entry");
+        }
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private byte[] readEntryData(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("Tar header entry too large: " + size);
+        }
+        byte[] data = in.readNBytes((int) size);
+        if (data.length != size) {
+            throw new EOFException("Truncated tar header entry");
+        }
+        remaining = 0;
+        return data;
+    }
+
+    private boolean readBlock() throws IOException {
+        int read = in.readNBytes(header, 0, BLOCK_SIZE);
+        if (read == 0) {
+            return false;
+        }
+        if (read != BLOCK_SIZE) {
+            throw new EOFException("Truncated tar header");
+        }
+        return true;
+    }
+
+    private boolean isZeroBlock() {
+        for (byte b : header) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipFully(long count) throws IOException {
+        long left = count;
+        while (left > 0) {
+            long skipped = in.skip(left);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Truncated tar entry");
+                }
+                skipped = 1;
+            }
+            left -= skipped;
+        }
+    }
+
+    private String headerName() {
+        String name = field(0, 100);
+        boolean ustar = field(257, 6).startsWith("ustar");
+        String prefix = ustar ? field(345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    private long parseSize() {
+        if ((header[124] & 0x80) != 0) { // GNU base-256 encoding for large sizes
+            long size = 0;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+        String octal = field(124, 12).trim();
+        return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+    }
+
+    private String field(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String trimName(byte[] data) {
+        int end = 0;
+        while (end < data.length && data[end] != 0) {
+            end++;
+        }
+        return new String(data, 0, end, StandardCharsets.UTF_8);
+    }
+
+    // Records are "<length> <key>=<value>\n"
+    private static String parsePaxPath(byte[] data) {
+        int position = 0;
+        while (position < data.length) {
+            int space = position;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            if (space >= data.length) {
+                return null;
+            }
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, position, space - position, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (length <= 0 || position + length > data.length) {
+                return null;
+            }
+            String record = new String(data, space + 1, position + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            position += length;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,137 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.TextOperation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns two versions of a document into the {@link TextOperation} that transforms one into
+ * the other, using Myers' O((N+M)D) difference algorithm on UTF-16 code units (the unit
+ * operation lengths are counted in). The common prefix and suffix are stripped first, so the
+ * typical re-upload with a few changed lines only diffs the changed region.
+ *
+ * Myers needs O(D^2) memory for the backtracking trace. If the edit distance exceeds
+ * maxEditDistance, the changed region is replaced as a whole (one delete and one insert),
+ * which is still a valid, if larger, operation.
+ */
+public final class TextDiff {
+
+    private TextDiff() {
+    }
+
+    /**
+     * @return An operation with base length oldText.length() that produces newText.
+     */
+    public static TextOperation diff(String oldText, String newText, int maxEditDistance) {
+        int prefix = 0;
+        int maxPrefix = Math.min(oldText.length(), newText.length());
+        while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix
+                && oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+            suffix++;
+        }
+        String a = oldText.substring(prefix, oldText.length() - suffix);
+        String b = newText.substring(prefix, newText.length() - suffix);
+
+        TextOperation operation = new TextOperation().retain(prefix);
+        if (a.isEmpty() || b.isEmpty()) {
+            operation.delete(a.length()).insert(b);
+        } else {
+            List<int[]> trace = shortestEditTrace(a, b, Math.max(0, maxEditDistance));
+            if (trace == null) {
+                operation.delete(a.length()).insert(b);
+            } else {
+                appendEdits(operation, a, b, trace);
+            }
+        }
+        return operation.retain(suffix);
+    }
+
+    /**
+     * Runs the forward Myers search. trace.get(d) holds the furthest x per diagonal k in
+     * [-d, d] before step d (index k + d).
+     *
+     * @return The trace up to the step that reached the end, or null if that takes more than maxD edits.
+     */
+    private static List<int[]> shortestEditTrace(String a, String b, int maxD) {
+        int n = a.length();
+        int m = b.length();
+        int max = Math.min(n + m, maxD);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= max; d++) {
+            int[] snapshot = new int[2 * d + 1];
+            System.arraycopy(v, offset - d, snapshot, 0, 2 * d + 1);
+            trace.add(snapshot);
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1] < v[offset + k + 1])) {
+                    x = v[offset + k + 1]; // Move down: insert b[y]
+                } else {
+                    x = v[offset + k - 1] + 1; // Move right: delete a[x]
+                }
+                int y = x - k;
+                while (x < n && y < m && a.charAt(x) == b.charAt(y)) {
+                    x++;
+                    y++;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    return trace;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Walks the trace back from (n, m) and appends the edits to the operation in forward order
+    private static void appendEdits(TextOperation operation, String a, String b, List<int[]> trace) {
+        // Per step, from the end: the diagonal run length, and the edit before it (-1 delete, +1 insert)
+        int steps = trace.size() - 1;
+        int[] snakes = new int[steps + 1];
+        int[] edits = new int[steps + 1];
+        int x = a.length();
+        int y = b.length();
+        for (int d = steps; d > 0; d--) {
+            int[] v = trace.get(d);
+            int k = x - y;
+            boolean down = k == -d || (k != d && v[k - 1 + d] < v[k + 1 + d]);
+            int prevK = down ? k + 1 : k - 1;
+            int prevX = v[prevK + d];
+            int prevY = prevX - prevK;
+            int startX = down ? prevX : prevX + 1;
+            snakes[d] = x - startX;
+            edits[d] = down ? 1 : -1;
+            x = prevX;
+            y = prevY;
+        }
+        snakes[0] = x; // Diagonal from (0, 0)
+
+        int bi = 0;
+        StringBuilder inserted = new StringBuilder();
+        int deleted = 0;
+        for (int d = 0; d <= steps; d++) {
+            if (d > 0) {
+                if (edits[d] < 0) {
+                    deleted++;
+                } else {
+                    inserted.append(b.charAt(bi));
+                    bi++;
+                }
+            }
+            if (snakes[d] > 0) {
+                operation.delete(deleted).insert(inserted.toString()).retain(snakes[d]);
+                deleted = 0;
+                inserted.setLength(0);
+                bi += snakes[d];
+            }
+        }
+        operation.delete(deleted).insert(inserted.toString());
+    }
+}
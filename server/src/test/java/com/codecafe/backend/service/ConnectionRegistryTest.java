@@ -0,0 +1,60 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ConnectionRegistryTest {
+
+    private final ConnectionRegistry registry = new ConnectionRegistry();
+
+    @Test
+    @DisplayName("Closing one tab keeps the user in documents another tab still has open")
+    void closingOneTabOnlyAffectsItsConnection() {
+        registry.connectionOpened("tab-1");
+        registry.connectionOpened("tab-2");
+        registry.documentJoined("tab-1", "alice", "s1", "index.html");
+        registry.documentJoined("tab-1", "alice", "s1", "style.css");
+        registry.documentJoined("tab-2", "alice", "s1", "index.html");
+
+        assertThat(registry.connectionClosed("tab-1")).containsExactly(Map.entry("s1", "style.css"));
+        assertThat(registry.connectionClosed("tab-2")).containsExactly(Map.entry("s1", "index.html"));
+        assertThat(registry.connectionClosed("tab-2")).as("second close is a no-op").isEmpty();
+    }
+
+    @Test
+    @DisplayName("A destination has subscribers until its last subscription is dropped or its connection closes")
+    void countsSubscribersPerDestination() {
+        String topic = "/topic/sessions/s1/operations-bin/document/index.html";
+        registry.connectionOpened("tab-1");
+        registry.connectionOpened("tab-2");
+        registry.subscribed("tab-1", "sub-0", topic);
+        registry.subscribed("tab-2", "sub-0", topic);
+        registry.subscribed("tab-2", "sub-1", "/user/queue/ack");
+
+        registry.unsubscribed("tab-1", "sub-0");
+        assertThat(registry.hasSubscribers(topic)).isTrue();
+        assertThat(registry.getUserId("tab-1")).isNull();
+
+        registry.connectionClosed("tab-2");
+        assertThat(registry.hasSubscribers(topic)).isFalse();
+        assertThat(registry.hasSubscribers("/user/queue/ack")).isFalse();
+    }
+
+    @Test
+    @DisplayName("A join or subscription handled after the connection closed is not recorded")
+    void ignoresFramesAfterClose() {
+        String topic = "/topic/sessions/s1/operations-bin/document/index.html";
+        registry.connectionOpened("tab-1");
+        registry.connectionClosed("tab-1");
+
+        registry.documentJoined("tab-1", "alice", "s1", "index.html");
+        registry.subscribed("tab-1", "sub-0", topic);
+
+        assertThat(registry.hasSubscribers(topic)).isFalse();
+        assertThat(registry.getUserId("tab-1")).isNull();
+        assertThat(registry.connectionClosed("tab-1")).isEmpty();
+    }
+}
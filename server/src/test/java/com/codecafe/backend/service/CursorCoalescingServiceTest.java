@@ -0,0 +1,93 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.codecafe.backend.dto.CursorMessage;
+import com.codecafe.backend.dto.Position;
+import com.codecafe.backend.dto.UserInfo;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class CursorCoalescingServiceTest {
+
+    private static final String SELECTIONS_TOPIC = "/topic/sessions/s1/selections/document/index.html";
+
+    private SessionRegistryService sessionRegistryService;
+    private SimpMessagingTemplate messagingTemplate;
+    private CursorCoalescingService service;
+
+    @BeforeEach
+    void setUp() {
+        sessionRegistryService = mock(SessionRegistryService.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        service = new CursorCoalescingService(true, sessionRegistryService, messagingTemplate);
+    }
+
+    private CursorMessage cursor(String userId, int line, int column) {
+        Position position = new Position();
+        position.setLineNumber(line);
+        position.setColumn(column);
+        UserInfo userInfo = new UserInfo();
+        userInfo.setId(userId);
+        userInfo.setCursorPosition(position);
+        CursorMessage message = new CursorMessage();
+        message.setSessionId("s1");
+        message.setDocumentId("index.html");
+        message.setUserInfo(userInfo);
+        return message;
+    }
+
+    @Test
+    @DisplayName("Only the latest update per user is persisted, and users are batched into one frame")
+    @SuppressWarnings("unchecked")
+    void keepsLatestPerUserAndBatches() {
+        service.submit(cursor("alice", 1, 1));
+        service.submit(cursor("alice", 1, 2));
+        service.submit(cursor("alice", 3, 7));
+        service.submit(cursor("bob", 2, 4));
+
+        service.flush();
+
+        verify(sessionRegistryService, times(1)).updateUserState(eq("s1"), eq("index.html"), eq("alice"),
+                eq(Map.of("lineNumber", 3, "column", 7)), any());
+        verify(sessionRegistryService, times(1)).updateUserState(eq("s1"), eq("index.html"), eq("bob"), any(), any());
+
+        ArgumentCaptor<Object> frame = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq(SELECTIONS_TOPIC), frame.capture());
+        List<CursorMessage> batch = (List<CursorMessage>) frame.getValue();
+        assertThat(batch).hasSize(2);
+        assertThat(batch).extracting(m -> m.getUserInfo().getId()).containsExactlyInAnyOrder("alice", "bob");
+    }
+
+    @Test
+    @DisplayName("A flush with nothing pending does not touch Redis or the broker")
+    void idleFlushDoesNothing() {
+        service.submit(cursor("alice", 1, 1));
+        service.flush();
+
+        service.flush();
+
+        verify(sessionRegistryService, times(1)).updateUserState(anyString(), anyString(), anyString(), any(), any());
+        verify(messagingTemplate, times(1)).convertAndSend(anyString(), any(Object.class));
+    }
+
+    @Test
+    @DisplayName("Nothing is sent before the first flush")
+    void nothingSentBeforeFlush() {
+        service.submit(cursor("alice", 1, 1));
+
+        verifyNoInteractions(sessionRegistryService, messagingTemplate);
+    }
+}
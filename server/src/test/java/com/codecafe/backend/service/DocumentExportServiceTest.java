@@ -0,0 +1,76 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DocumentExportServiceTest {
+
+    @Test
+    @DisplayName("All documents are written to the zip in batches, tagged with their snapshot revision")
+    void writesZipInBatches() throws IOException {
+        OtService otService = mock(OtService.class);
+        when(otService.getSessionDocumentIds("s1")).thenReturn(List.of("index.html", "src/app.js", "style.css"));
+        Map<String, OtService.DocumentSnapshot> first = new LinkedHashMap<>();
+        first.put("index.html", new OtService.DocumentSnapshot("<p>hi</p>", 4));
+        first.put("src/app.js", new OtService.DocumentSnapshot("let x = 1;", 12));
+        when(otService.getDocumentSnapshots("s1", List.of("index.html", "src/app.js"))).thenReturn(first);
+        when(otService.getDocumentSnapshots("s1", List.of("style.css")))
+                .thenReturn(Map.of("style.css", new OtService.DocumentSnapshot("", 0)));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = new DocumentExportService(otService, 2).writeZip("s1", out);
+
+        assertThat(written).isEqualTo(3);
+        Map<String, String> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                entries.put(entry.getName(), new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+        assertThat(entries).containsExactly(Map.entry("index.html", "<p>hi</p>"),
+                Map.entry("src/app.js", "let x = 1;"), Map.entry("style.css", ""));
+    }
+
+    @Test
+    @DisplayName("Document ids that are not safe file names are left out of the zip and listed in its comment")
+    void skipsUnsafeNames() throws IOException {
+        OtService otService = mock(OtService.class);
+        List<String> ids = List.of("../../etc/passwd", "./a.txt", "a.txt", "b.txt");
+        when(otService.getSessionDocumentIds("s1")).thenReturn(ids);
+        Map<String, OtService.DocumentSnapshot> snapshots = new LinkedHashMap<>();
+        ids.forEach(id -> snapshots.put(id, new OtService.DocumentSnapshot(id, 1)));
+        when(otService.getDocumentSnapshots("s1", ids)).thenReturn(snapshots);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int written = new DocumentExportService(otService, 10).writeZip("s1", out);
+
+        assertThat(written).isEqualTo(2);
+        Path file = Files.createTempFile("export", ".zip");
+        try {
+            Files.write(file, out.toByteArray());
+            try (ZipFile zip = new ZipFile(file.toFile())) {
+                assertThat(zip.stream().map(ZipEntry::getName)).containsExactly("a.txt", "b.txt");
+                assertThat(zip.getComment()).isEqualTo("Skipped documents without a safe file name: ../../etc/passwd, a.txt");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.codecafe.backend.dto.DocumentPlayback;
+import com.codecafe.backend.dto.DocumentRevision;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+class DocumentHistoryServiceTest {
+
+    private static final String CHECKPOINT_KEY = "doc:{s1}:checkpoints:index.html";
+
+    private OtService otService;
+    private HashOperations<String, Object, Object> hashOperations;
+    private DocumentHistoryService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        otService = mock(OtService.class);
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        service = new DocumentHistoryService(otService, redisTemplate, 2000);
+
+        when(otService.getRevision("s1", "index.html")).thenReturn(230);
+        when(otService.getCheckpointKey("s1", "index.html")).thenReturn(CHECKPOINT_KEY);
+        when(hashOperations.keys(CHECKPOINT_KEY)).thenReturn(Set.of("100", "200", "0"));
+        when(hashOperations.get(CHECKPOINT_KEY, "200")).thenReturn("ab");
+    }
+
+    @Test
+    @DisplayName("A revision is rebuilt from the nearest earlier checkpoint, not from the start")
+    void rebuildsFromNearestCheckpoint() {
+        when(otService.readHistory("s1", "index.html", 200, 202)).thenReturn(List.of(
+                HistoryEntry.span("tab-1", 1L, 200, 201, List.of(2, "c")),
+                HistoryEntry.span("tab-2", 2L, 201, 202, List.of("x", 3))));
+
+        DocumentRevision revision = service.getDocumentAtRevision("s1", "index.html", 202);
+
+        assertThat(revision.getCheckpointRevision()).isEqualTo(200);
+        assertThat(revision.getContent()).isEqualTo("xabc");
+    }
+
+    @Test
+    @DisplayName("A composed playback holds one step that turns the base content into the target")
+    void composedPlaybackIsOneStep() {
+        when(otService.readHistory("s1", "index.html", 200, 200)).thenReturn(List.of());
+        when(otService.readHistory("s1", "index.html", 200, 202)).thenReturn(List.of(
+                HistoryEntry.span("tab-1", 1L, 200, 201, List.of(2, "c")),
+                HistoryEntry.span("tab-2", 2L, 201, 202, List.of("x", 3))));
+
+        DocumentPlayback playback = service.getPlayback("s1", "index.html", 200, 202, true);
+
+        assertThat(playback.getBaseContent()).isEqualTo("ab");
+        assertThat(playback.getSteps()).hasSize(1);
+        assertThat(playback.getSteps().get(0).getOperation()).containsExactly("x", 2, "c");
+    }
+
+    @Test
+    @DisplayName("Revisions whose history is gone cannot be rebuilt")
+    void missingHistoryIsNotRebuilt() {
+        when(otService.readHistory("s1", "index.html", 100, 150)).thenReturn(null);
+
+        assertThat(service.getDocumentAtRevision("s1", "index.html", 150)).isNull();
+    }
+
+    @Test
+    @DisplayName("A revision inside a compacted span is served as the span's base revision")
+    void servesSpanBaseInsideCompactedSpan() {
+        HistoryEntry span = HistoryEntry.span("tab-1", 1L, 200, 203, List.of(2, "cde"));
+        when(otService.readHistory("s1", "index.html", 200, 201)).thenReturn(List.of());
+        when(otService.readHistory("s1", "index.html", 200, 203)).thenReturn(List.of(span));
+
+        DocumentRevision revision = service.getDocumentAtRevision("s1", "index.html", 201);
+        assertThat(revision.getRevision()).isEqualTo(200);
+        assertThat(revision.getContent()).isEqualTo("ab");
+
+        DocumentPlayback playback = service.getPlayback("s1", "index.html", 201, 203, false);
+        assertThat(playback.getBaseRevision()).isEqualTo(200);
+        assertThat(playback.getRevision()).isEqualTo(203);
+        assertThat(playback.getBaseContent()).isEqualTo("ab");
+        assertThat(playback.getSteps()).hasSize(1);
+        assertThat(playback.getSteps().get(0).getOperation()).containsExactly(2, "cde");
+    }
+}
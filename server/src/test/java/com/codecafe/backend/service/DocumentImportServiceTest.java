@@ -0,0 +1,144 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class DocumentImportServiceTest {
+
+    private OtService otService;
+    private DocumentImportService service;
+
+    @BeforeEach
+    void setUp() {
+        otService = mock(OtService.class);
+        service = new DocumentImportService(otService, new ObjectMapper(), 2, 10, 1024);
+    }
+
+    @Test
+    @DisplayName("Zip entries become documents; directories, metadata and binary files are skipped")
+    void importsZip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("src/"));
+            zip.putNextEntry(new ZipEntry("src/main.js"));
+            zip.write("console.log(1);".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("__MACOSX/src/._main.js"));
+            zip.write("meta".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("logo.png"));
+            zip.write(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 0});
+            zip.putNextEntry(new ZipEntry("index.html"));
+            zip.write("<p>hi</p>".getBytes(StandardCharsets.UTF_8));
+        }
+
+        DocumentImportService.ImportResult result = service.importDocuments("s1",
+                new ByteArrayInputStream(bytes.toByteArray()), DocumentImportService.Format.ZIP);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getSkipped()).hasSize(2);
+        verify(otService).importDocuments("s1", Map.of("src/main.js", "console.log(1);", "index.html", "<p>hi</p>"));
+    }
+
+    @Test
+    @DisplayName("Gzipped tar archives are detected and GNU long names are honoured")
+    void importsGzippedTar() throws IOException {
+        String longName = "src/" + "nested/".repeat(20) + "deep.txt";
+        ByteArrayOutputStream tar = new ByteArrayOutputStream();
+        writeTarEntry(tar, "././@LongLink", 'L', (longName + "\0").getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, longName.substring(0, 99), '0', "deep".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "docs/", '5', new byte[0]);
+        writeTarEntry(tar, "./README.md", '0', "# Readme".getBytes(StandardCharsets.UTF_8));
+        writeTarEntry(tar, "big.txt", '0', new byte[2048]);
+        tar.write(new byte[1024]);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(tar.toByteArray());
+        }
+
+        DocumentImportService.ImportResult result = service.importDocuments("s1",
+                new ByteArrayInputStream(gzipped.toByteArray()), DocumentImportService.Format.TAR);
+
+        assertThat(result.getImported()).isEqualTo(2);
+        assertThat(result.getSkipped()).containsExactly("big.txt (too large)");
+        verify(otService).importDocuments("s1", Map.of(longName, "deep", "README.md", "# Readme"));
+    }
+
+    @Test
+    @DisplayName("JSON documents are written in batches and the document limit truncates the import")
+    @SuppressWarnings("unchecked")
+    void importsJsonInBatches() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 12; i++) {
+            json.append(i > 0 ? "," : "").append("{\"documentId\":\"f").append(i).append(".txt\",\"content\":\"").append(i).append("\",\"extra\":[1]}");
+        }
+        json.append("]");
+
+        DocumentImportService.ImportResult result = service.importDocuments("s1",
+                new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)), DocumentImportService.Format.JSON);
+
+        assertThat(result.getImported()).isEqualTo(10);
+        assertThat(result.isTruncated()).isTrue();
+        ArgumentCaptor<Map<String, String>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(otService, times(5)).importDocuments(eq("s1"), batches.capture());
+        assertThat(batches.getAllValues()).allSatisfy(batch -> assertThat(batch).hasSize(2));
+        assertThat(batches.getAllValues().get(0)).containsExactly(Map.entry("f0.txt", "0"), Map.entry("f1.txt", "1"));
+    }
+
+    @Test
+    @DisplayName("JSON content is limited in UTF-8 bytes and repeated ids are skipped, not counted twice")
+    void jsonLimitsAndDuplicates() throws IOException {
+        service = new DocumentImportService(otService, new ObjectMapper(), 10, 10, 8);
+        // 6 characters but 12 UTF-8 bytes
+        String json = "[{\"documentId\":\"a.txt\",\"content\":\"\u00e4\u00e4\u00e4\u00e4\u00e4\u00e4\"},"
+                + "{\"documentId\":\"b.txt\",\"content\":\"one\"},"
+                + "{\"documentId\":\"./b.txt\",\"content\":\"two\"}]";
+
+        DocumentImportService.ImportResult result = service.importDocuments("s1",
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), DocumentImportService.Format.JSON);
+
+        assertThat(result.getImported()).isEqualTo(1);
+        assertThat(result.getSkipped()).containsExactly("a.txt (too large)", "./b.txt (duplicate)");
+        verify(otService).importDocuments("s1", Map.of("b.txt", "one"));
+    }
+
+    @Test
+    @DisplayName("Archive paths that escape the root are not valid document ids")
+    void rejectsUnsafePaths() {
+        assertThat(DocumentImportService.toDocumentId("./a/b.txt")).isEqualTo("a/b.txt");
+        assertThat(DocumentImportService.toDocumentId("/abs.txt")).isEqualTo("abs.txt");
+        assertThat(DocumentImportService.toDocumentId("a/../../etc/passwd")).isNull();
+        assertThat(DocumentImportService.toDocumentId("dir/.DS_Store")).isNull();
+        assertThat(DocumentImportService.Format.from("application/x-tar; charset=binary")).isEqualTo(DocumentImportService.Format.TAR);
+        assertThat(DocumentImportService.Format.from("text/plain")).isNull();
+    }
+
+    private static void writeTarEntry(ByteArrayOutputStream out, String name, char type, byte[] data) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(nameBytes.length, 100));
+        byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = (byte) type;
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.codecafe.backend.service;
+
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.OtUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryEntryTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("Runs of one client within the window become one span with the right revisions")
+    void composesRunsPerClientAndWindow() {
+        List<HistoryEntry> entries = List.of(
+                HistoryEntry.raw("a", 1000, List.of("h")),
+                HistoryEntry.raw("a", 1100, List.of(1, "i")),
+                HistoryEntry.raw("b", 1200, List.of(2, "!")),
+                HistoryEntry.raw("b", 9000, List.of(3, "?")),
+                HistoryEntry.raw(null, 0, List.of(4, ".")));
+
+        List<HistoryEntry> spans = HistoryEntry.composeRuns(entries, 11, 2000, 50, 0);
+
+        assertEquals(4, spans.size());
+        assertEquals(10, spans.get(0).getBaseRevision());
+        assertEquals(12, spans.get(0).getRevision());
+        assertEquals(List.of("hi"), spans.get(0).toOperation().getOps());
+        assertEquals(12, spans.get(1).getBaseRevision());
+        assertEquals(13, spans.get(1).getRevision());
+        assertEquals(14, spans.get(2).getRevision());
+        assertEquals(15, spans.get(3).getRevision());
+
+        // Applying the spans gives the same document as applying every raw entry
+        String fromRaw = "";
+        for (HistoryEntry entry : entries) {
+            fromRaw = OtUtils.apply(fromRaw, entry.toOperation());
+        }
+        String fromSpans = "";
+        for (HistoryEntry span : spans) {
+            fromSpans = OtUtils.apply(fromSpans, span.toOperation());
+        }
+        assertEquals("hi!?.", fromRaw);
+        assertEquals(fromRaw, fromSpans);
+
+        // With checkpoints every 11 revisions, the first run has to end at revision 11
+        List<HistoryEntry> bounded = HistoryEntry.composeRuns(entries, 11, 2000, 50, 11);
+        assertEquals(11, bounded.get(0).getRevision());
+        assertEquals(11, bounded.get(1).getBaseRevision());
+        assertEquals(12, bounded.get(1).getRevision());
+    }
+
+    @Test
+    @DisplayName("Legacy bare-array entries and spans round-trip through JSON")
+    void parsesLegacyAndSpanEntries() throws Exception {
+        HistoryEntry legacy = HistoryEntry.parse(objectMapper, "[3,\"x\",-1]");
+        assertFalse(legacy.isSpan());
+        assertNull(legacy.getClientId());
+        assertEquals(new TextOperation(List.of(3, "x", -1)), legacy.toOperation());
+
+        String json = HistoryEntry.span("tab-1", 42L, 7, 9, List.of(1, "yz")).toJson(objectMapper);
+        HistoryEntry span = HistoryEntry.parse(objectMapper, json);
+        assertTrue(span.isSpan());
+        assertEquals("tab-1", span.getClientId());
+        assertEquals(42L, span.getTimestamp());
+        assertEquals(7, span.getBaseRevision());
+        assertEquals(9, span.getRevision());
+        assertEquals(List.of(1, "yz"), span.toOperation().getOps());
+    }
+
+    @Test
+    @DisplayName("A span is stored as one composed operation")
+    void storesComposedSpans() throws Exception {
+        List<HistoryEntry> entries = List.of(
+                HistoryEntry.raw("a", 1000, List.of("h")),
+                HistoryEntry.raw("a", 1100, List.of(1, "e")),
+                HistoryEntry.raw("a", 1200, List.of(2, "y")));
+        String json = HistoryEntry.composeRuns(entries, 11, 2000, 50, 0).get(0).toJson(objectMapper);
+        assertEquals("{\"b\":10,\"r\":13,\"c\":\"a\",\"t\":1000,\"o\":[\"hey\"]}", json);
+    }
+}
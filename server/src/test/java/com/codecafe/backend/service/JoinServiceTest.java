@@ -0,0 +1,77 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codecafe.backend.dto.DocumentState;
+import com.codecafe.backend.dto.UserInfoDTO;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+class JoinServiceTest {
+
+    private RedisTemplate<String, Object> redisTemplate;
+    @SuppressWarnings("rawtypes")
+    private RedisScript<List> joinDocumentScript;
+    private OtService otService;
+    private StringRedisTemplate stringRedisTemplate;
+    private SessionRegistryService sessionRegistryService;
+    private JoinService joinService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        joinDocumentScript = mock(RedisScript.class);
+        otService = mock(OtService.class);
+
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        when(stringRedisTemplate.opsForHash()).thenReturn(mock(HashOperations.class));
+        sessionRegistryService = new SessionRegistryService(stringRedisTemplate, mock(KeyExpiryService.class));
+
+        joinService = new JoinService(redisTemplate, joinDocumentScript, sessionRegistryService, otService);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("One script call registers the user and returns the participants; content comes from the shared snapshot read")
+    @SuppressWarnings("unchecked")
+    void joinUsesOneScriptCall() {
+        when(redisTemplate.execute(eq(joinDocumentScript), any(RedisSerializer.class), any(RedisSerializer.class), anyList(), any(Object[].class)))
+                .thenReturn(List.of(bytes("i:alice"), bytes("5:Alice#f00"), bytes("c:alice"), bytes(""),
+                        bytes("i:bob"), bytes("3:Bob#0f0"), bytes("c:bob"), bytes("1,4")));
+        when(otService.getDocumentSnapshot("s1", "index.html")).thenReturn(new OtService.DocumentSnapshot("hello", 7));
+
+        JoinService.JoinResult result = joinService.join("s1", "index.html", new UserInfoDTO("alice", "Alice", "#f00", null, null));
+
+        DocumentState state = result.getState();
+        assertThat(result.isNewParticipant()).isTrue();
+        assertThat(state.getDocument()).isEqualTo("hello");
+        assertThat(state.getRevision()).isEqualTo(7);
+        assertThat(state.getParticipants()).extracting(UserInfoDTO::getId).containsExactlyInAnyOrder("alice", "bob");
+        verify(redisTemplate).execute(eq(joinDocumentScript), any(RedisSerializer.class), any(RedisSerializer.class),
+                eq(List.of("session:users:{s1}:index.html")), any(Object[].class));
+        verify(otService, never()).getDocumentContent(any(), any());
+        // The script already wrote the presence fields, nothing is left to replicate
+        sessionRegistryService.replicateToRedis();
+        verify(stringRedisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+}
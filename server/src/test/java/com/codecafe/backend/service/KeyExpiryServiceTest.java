@@ -0,0 +1,67 @@
+package com.codecafe.backend.service;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class KeyExpiryServiceTest {
+
+    private StringRedisTemplate stringRedisTemplate;
+    private KeyExpiryService service;
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = mock(StringRedisTemplate.class);
+        service = new KeyExpiryService(stringRedisTemplate);
+    }
+
+    @Test
+    @DisplayName("Repeated touches are sent as one pipelined batch per flush")
+    void touchesAreBatched() {
+        for (int i = 0; i < 50; i++) {
+            service.touch("session:users:{s1}:index.html", 60, TimeUnit.MINUTES);
+            service.touch("user:active_docs:alice", 24, TimeUnit.HOURS);
+        }
+
+        service.flush();
+        service.flush();
+
+        verify(stringRedisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+        verify(stringRedisTemplate, never()).expire(any(String.class), any(Long.class), any(TimeUnit.class));
+    }
+
+    @Test
+    @DisplayName("Nothing is sent when no key was touched")
+    void idleFlushDoesNothing() {
+        service.flush();
+
+        verifyNoInteractions(stringRedisTemplate);
+    }
+
+    @Test
+    @DisplayName("Keys are retried on the next flush after a Redis error")
+    void retriesAfterFailure() {
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(List.of());
+        service.touch("session:users:{s1}:index.html", 60, TimeUnit.MINUTES);
+
+        service.flush();
+        service.flush();
+
+        verify(stringRedisTemplate, times(2)).executePipelined(any(SessionCallback.class));
+    }
+}
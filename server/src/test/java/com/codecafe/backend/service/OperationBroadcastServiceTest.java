@@ -0,0 +1,80 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codecafe.backend.dto.AppliedOperation;
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.CompactOperationCodec;
+import com.codecafe.backend.util.SessionMessageHeaders;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.ByteArrayMessageConverter;
+import org.springframework.messaging.converter.CompositeMessageConverter;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.converter.StringMessageConverter;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.AbstractMessageChannel;
+import org.springframework.util.MimeTypeUtils;
+
+class OperationBroadcastServiceTest {
+
+    private static final String BINARY_DESTINATION = "/topic/sessions/s1/operations-bin/document/doc";
+
+    private final List<Message<?>> sent = new ArrayList<>();
+    private final ConnectionRegistry connectionRegistry = new ConnectionRegistry();
+    private final OperationBroadcastService service = new OperationBroadcastService(template(), connectionRegistry, true, false);
+
+    private SimpMessagingTemplate template() {
+        AbstractMessageChannel channel = new AbstractMessageChannel() {
+            @Override
+            protected boolean sendInternal(Message<?> message, long timeout) {
+                sent.add(message);
+                return true;
+            }
+        };
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        // The broker's default converters
+        template.setMessageConverter(new CompositeMessageConverter(List.of(
+                new StringMessageConverter(), new ByteArrayMessageConverter(), new MappingJackson2MessageConverter())));
+        return template;
+    }
+
+    @Test
+    @DisplayName("Without echo to the sender, the binary broadcast is still sent as an octet-stream frame")
+    void binaryBroadcastKeepsItsContentType() {
+        connectionRegistry.connectionOpened("ws-2");
+        connectionRegistry.subscribed("ws-2", "sub-0", BINARY_DESTINATION);
+        TextOperation operation = new TextOperation().retain(2).insert("x");
+
+        service.broadcast("s1", "doc", "tab-1", new AppliedOperation(operation, 5), null, null, "ws-1");
+
+        assertThat(sent).hasSize(2);
+        MessageHeaders binaryHeaders = sent.get(1).getHeaders();
+        assertThat(binaryHeaders.get(MessageHeaders.CONTENT_TYPE).toString())
+                .isEqualTo(MimeTypeUtils.APPLICATION_OCTET_STREAM_VALUE);
+        assertThat(binaryHeaders.get(SessionMessageHeaders.ORIGIN_SESSION_HEADER)).isEqualTo("ws-1");
+        assertThat((byte[]) sent.get(1).getPayload())
+                .isEqualTo(CompactOperationCodec.encodeBroadcast("tab-1", "s1", "doc", 5, operation, null));
+        assertThat(sent.get(0).getHeaders().get(MessageHeaders.CONTENT_TYPE).toString()).isEqualTo("application/json");
+    }
+
+    @Test
+    @DisplayName("The binary broadcast is skipped while nobody on this node subscribed to the binary topic")
+    void skipsBinaryBroadcastWithoutSubscribers() {
+        TextOperation operation = new TextOperation().retain(2).insert("x");
+        connectionRegistry.connectionOpened("ws-2");
+        connectionRegistry.subscribed("ws-2", "sub-0", BINARY_DESTINATION);
+        connectionRegistry.unsubscribed("ws-2", "sub-0");
+
+        service.broadcast("s1", "doc", "tab-1", new AppliedOperation(operation, 5), null, null, "ws-1");
+
+        assertThat(sent).hasSize(1);
+        assertThat(sent.get(0).getHeaders().get(SimpMessageHeaderAccessor.DESTINATION_HEADER))
+                .isEqualTo("/topic/sessions/s1/operations/document/doc");
+    }
+}
@@ -0,0 +1,232 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codecafe.backend.dto.AppliedOperation;
+import com.codecafe.backend.dto.OperationRange;
+import com.codecafe.backend.dto.TextOperation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+class OtServiceTest {
+
+    private RedisTemplate<String, Object> redisTemplate;
+    private HashOperations<String, Object, Object> hashOperations;
+    private ValueOperations<String, Object> valueOperations;
+    private ListOperations<String, Object> listOperations;
+    private OtService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        valueOperations = mock(ValueOperations.class);
+        listOperations = mock(ListOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.opsForList()).thenReturn(listOperations);
+        service = new OtService(redisTemplate, mock(RedisScript.class), mock(RedisScript.class), new ObjectMapper(), mock(ObjectProvider.class), 100, 50, true, 500);
+
+        // Revision 600 with only the newest 500 ops retained: the list starts after revision 100
+        when(valueOperations.get("doc:{s1}:revision:index.html")).thenReturn(600);
+        when(listOperations.size("doc:{s1}:history:index.html")).thenReturn(500L);
+    }
+
+    @Test
+    @DisplayName("Operations since a revision are read from the right part of a trimmed history")
+    void readsOperationsSinceRevision() {
+        when(listOperations.range("doc:{s1}:history:index.html", 497, 499))
+                .thenReturn(List.of("[1,\"a\"]", "[2,\"b\"]", "[3,\"c\"]"));
+
+        OperationRange range = service.getOperationsSince("s1", "index.html", 597);
+
+        assertThat(range.getBaseRevision()).isEqualTo(597);
+        assertThat(range.getRevision()).isEqualTo(600);
+        assertThat(range.getOperations()).hasSize(3);
+        assertThat(range.getOperations().get(2).getOps()).containsExactly(3, "c");
+    }
+
+    @Test
+    @DisplayName("Revisions older than the retained history or ahead of the server need a full state")
+    void rejectsRevisionsOutsideHistory() {
+        assertThat(service.getOperationsSince("s1", "index.html", 99)).isNull();
+        assertThat(service.getOperationsSince("s1", "index.html", 601)).isNull();
+        assertThat(service.getOperationsSince("s1", "index.html", 600).getOperations()).isEmpty();
+        verify(listOperations, never()).range(eq("doc:{s1}:history:index.html"), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("Revisions before the raw history are served from compacted spans that start there")
+    void readsCompactedSpansBeforeRawHistory() {
+        stubCompactedHistory(
+                "{\"b\":80,\"r\":90,\"c\":\"tab-1\",\"o\":[\"0123456789\"]}",
+                "{\"b\":90,\"r\":100,\"c\":\"tab-2\",\"o\":[10,\"abcdefghij\"]}");
+        when(listOperations.range("doc:{s1}:history:index.html", 0, 499))
+                .thenReturn(IntStream.range(0, 500).mapToObj(i -> (Object) ("[" + (20 + i) + ",\"x\"]")).toList());
+
+        OperationRange fromSpanStart = service.getOperationsSince("s1", "index.html", 90);
+        assertThat(fromSpanStart.getOperations()).hasSize(501);
+        assertThat(fromSpanStart.getOperations().get(0).getOps()).containsExactly(10, "abcdefghij");
+        assertThat(fromSpanStart.getOperations().get(1).getOps()).containsExactly(20, "x");
+
+        // Revision 85 lies inside a span stored with only its composed operation
+        assertThat(service.getOperationsSince("s1", "index.html", 85)).isNull();
+    }
+
+    @Test
+    @DisplayName("A range ending inside a compacted span stops at the span's base; one starting inside a span is not served")
+    void readsHistoryUpToSpanBoundary() {
+        stubCompactedHistory(
+                "{\"b\":96,\"r\":98,\"c\":\"tab-1\",\"o\":[\"ab\"]}",
+                "{\"b\":98,\"r\":100,\"c\":\"tab-2\",\"o\":[2,\"cd\"]}");
+
+        List<HistoryEntry> entries = service.readHistory("s1", "index.html", 96, 99);
+        assertThat(entries).hasSize(1);
+        assertThat(entries.get(0).getRevision()).isEqualTo(98);
+
+        assertThat(service.readHistory("s1", "index.html", 97, 99)).isNull();
+    }
+
+    @Test
+    @DisplayName("A rebuild in long compacted history reads only the spans of its range, found by binary search")
+    void readsOnlyTheSpansOfTheRange() {
+        // 100 spans of one revision each, for revisions 1-100
+        String[] spans = IntStream.range(0, 100)
+                .mapToObj(i -> "{\"b\":" + i + ",\"r\":" + (i + 1) + ",\"o\":[" + (i > 0 ? i + "," : "") + "\"x\"]}")
+                .toArray(String[]::new);
+        stubCompactedHistory(spans);
+
+        List<HistoryEntry> entries = service.readHistory("s1", "index.html", 60, 63);
+
+        assertThat(entries).hasSize(3);
+        assertThat(entries.get(0).getBaseRevision()).isEqualTo(60);
+        assertThat(entries.get(2).getRevision()).isEqualTo(63);
+        verify(listOperations).range("doc:{s1}:history-compacted:index.html", 60, 62);
+        verify(listOperations, never()).range("doc:{s1}:history-compacted:index.html", 0, -1);
+        verify(listOperations, atMost(8)).index(eq("doc:{s1}:history-compacted:index.html"), anyLong());
+    }
+
+    @Test
+    @DisplayName("Documents without a revision counter fall back to the history length")
+    void revisionFallsBackToHistoryLength() {
+        when(valueOperations.get("doc:{s1}:revision:legacy.js")).thenReturn(null);
+        when(listOperations.size("doc:{s1}:history:legacy.js")).thenReturn(42L);
+
+        assertThat(service.getRevision("s1", "legacy.js")).isEqualTo(42);
+        assertThat(service.getRevision("s1", "index.html")).isEqualTo(600);
+    }
+
+    @Test
+    @DisplayName("A retried op whose clientSeq was already committed is acked with its first revision, not applied again")
+    void retriedOperationIsNotAppliedTwice() {
+        when(hashOperations.multiGet("doc:{s1}:clientseq:index.html", List.of("tab-1", "tab-1:revision")))
+                .thenReturn(List.of(7, 598));
+
+        AppliedOperation applied = service.receiveOperation("s1", "index.html", 597, new TextOperation(List.of("x")), "tab-1", 7L);
+
+        assertThat(applied.isDuplicate()).isTrue();
+        assertThat(applied.getRevision()).isEqualTo(598);
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("A resync from before the retained history applies nothing and requires a full state")
+    void resyncOutsideHistoryRequiresFullState() {
+        OtService.ResyncResult result = service.resync("s1", "index.html", 99, new TextOperation(List.of("x")), "tab-1", 8L, 1000);
+
+        assertThat(result.getMissedOperations()).isNull();
+        assertThat(result.getPendingOperation()).isNull();
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("A resync with more missed operations than the catch-up limit applies nothing")
+    void resyncAboveCatchUpLimitAppliesNothing() {
+        OtService.ResyncResult result = service.resync("s1", "index.html", 590, new TextOperation(List.of("x")), "tab-1", 8L, 10);
+
+        assertThat(result.getMissedOperations()).isNull();
+        assertThat(result.getPendingOperation()).isNull();
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Compaction leaves the raw window of the newest 500 revisions untouched")
+    void compactionOnlyMovesEntriesBeyondRawWindow() {
+        assertThat(service.compactHistory("s1", "index.html", 2000, 50, 500)).isZero();
+        verify(redisTemplate, never()).execute(any(RedisScript.class), anyList(), any(Object[].class));
+
+        // 520 raw entries at revision 620: only the 20 oldest (revisions 101-120) leave the window
+        when(valueOperations.get("doc:{s1}:revision:index.html")).thenReturn(620);
+        when(listOperations.size("doc:{s1}:history:index.html")).thenReturn(520L);
+        when(listOperations.range("doc:{s1}:history:index.html", 0, 19))
+                .thenReturn(IntStream.range(0, 20).mapToObj(i -> (Object) ("{\"c\":\"tab-1\",\"t\":1,\"o\":[" + (i > 0 ? i + "," : "") + "\"x\"]}")).toList());
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any(Object[].class))).thenReturn(20L);
+
+        assertThat(service.compactHistory("s1", "index.html", 2000, 50, 500)).isEqualTo(20);
+        verify(listOperations, never()).range(eq("doc:{s1}:history:index.html"), eq(0L), eq(20L));
+    }
+
+    @Test
+    @DisplayName("Documents created before the documents set existed are added to it once")
+    @SuppressWarnings("unchecked")
+    void indexesExistingDocumentsOnce() {
+        SetOperations<String, Object> setOperations = mock(SetOperations.class);
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        Cursor<String> keys = mock(Cursor.class);
+        when(keys.hasNext()).thenReturn(true, true, false);
+        when(keys.next()).thenReturn("doc:{s1}:content:index.html", "doc:{s1}:content:src/a:b.js");
+        doCallRealMethod().when(keys).forEachRemaining(any());
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+        when(redisTemplate.hasKey("doc:{s1}:documents-indexed")).thenReturn(false, true);
+        when(setOperations.members("doc:{s1}:documents")).thenReturn(Set.of("src/a:b.js", "index.html"));
+
+        assertThat(service.getSessionDocumentIds("s1")).containsExactly("index.html", "src/a:b.js");
+        assertThat(service.getSessionDocumentIds("s1")).containsExactly("index.html", "src/a:b.js");
+
+        verify(redisTemplate, times(1)).scan(any(ScanOptions.class));
+        verify(setOperations).add("doc:{s1}:documents", "index.html", "src/a:b.js");
+        verify(valueOperations).set("doc:{s1}:documents-indexed", "1");
+    }
+
+    // Serves LLEN, LINDEX and LRANGE of the compacted history from the given spans
+    private void stubCompactedHistory(String... spans) {
+        String key = "doc:{s1}:history-compacted:index.html";
+        when(listOperations.size(key)).thenReturn((long) spans.length);
+        when(listOperations.index(eq(key), anyLong())).thenAnswer(invocation -> {
+            long index = invocation.getArgument(1);
+            return index >= 0 && index < spans.length ? spans[(int) index] : null;
+        });
+        when(listOperations.range(eq(key), anyLong(), anyLong())).thenAnswer(invocation -> {
+            long start = invocation.getArgument(1);
+            long end = invocation.getArgument(2);
+            return List.<Object>of((Object[]) spans).subList((int) Math.min(start, spans.length), (int) Math.min(end + 1, spans.length));
+        });
+    }
+}
@@ -0,0 +1,129 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.codecafe.backend.dto.RangeInfo;
+import com.codecafe.backend.dto.SelectionInfo;
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.dto.UserInfoDTO;
+import com.codecafe.backend.util.PresenceCodec;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class SessionRegistryServiceTest {
+
+    private StringRedisTemplate redisTemplate;
+    private HashOperations<String, Object, Object> hashOperations;
+    private SessionRegistryService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        service = new SessionRegistryService(redisTemplate, mock(KeyExpiryService.class));
+    }
+
+    private UserInfoDTO user(String id) {
+        return new UserInfoDTO(id, "User " + id, "#fff", null, null);
+    }
+
+    @Test
+    @DisplayName("Joins, cursor updates and participant reads are served from memory")
+    void localOperationsDoNotTouchRedis() {
+        assertThat(service.userJoined("s1", "index.html", user("alice"))).isTrue();
+        assertThat(service.userJoined("s1", "index.html", user("bob"))).isTrue();
+        assertThat(service.userJoined("s1", "index.html", user("bob"))).as("rejoin updates the entry").isFalse();
+        service.updateUserState("s1", "index.html", "alice", Map.of("lineNumber", 2, "column", 5), null);
+
+        List<UserInfoDTO> participants = service.getActiveParticipantsForDocument("s1", "index.html", "bob");
+
+        assertThat(participants).extracting(UserInfoDTO::getId).containsExactly("alice");
+        assertThat(participants.get(0).getCursorPosition()).containsEntry("column", 5);
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+        verifyNoInteractions(hashOperations);
+    }
+
+    @Test
+    @DisplayName("Pending changes are replicated in one pipeline, and only once")
+    void replicatesDirtyEntriesInOneBatch() {
+        service.userJoined("s1", "index.html", user("alice"));
+        service.userJoined("s1", "style.css", user("alice"));
+        assertThat(service.userLeftDocument("s1", "style.css", "alice")).isTrue();
+
+        service.replicateToRedis();
+        service.replicateToRedis();
+
+        verify(redisTemplate, times(1)).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    @DisplayName("Documents without local users are read from Redis once and then cached")
+    void readsRemoteParticipantsOnce() {
+        when(hashOperations.entries("session:users:{s1}:index.html")).thenReturn(Map.of("i:carol", "5:Carol#fff"));
+
+        assertThat(service.getActiveParticipantsForDocument("s1", "index.html", null))
+                .extracting(UserInfoDTO::getId).containsExactly("carol");
+        assertThat(service.getActiveParticipantsForDocument("s1", "index.html", null)).hasSize(1);
+
+        verify(hashOperations, times(1)).entries("session:users:{s1}:index.html");
+    }
+
+    @Test
+    @DisplayName("Presence keys share the session hash tag and are parsed back when a user leaves everywhere")
+    void presenceKeysAreHashTaggedBySession() {
+        String key = service.getSessionDocumentKey("s1", "docs:index.html");
+        when(redisTemplate.keys("session:users:*")).thenReturn(Set.of(key, "session:users:legacy"));
+        when(hashOperations.delete(key, PresenceCodec.infoField("alice"), PresenceCodec.cursorField("alice"))).thenReturn(2L);
+        when(hashOperations.size(key)).thenReturn(1L);
+
+        assertThat(key).isEqualTo("session:users:{s1}:docs:index.html");
+        assertThat(service.userLeftAllSessions("alice")).containsExactly(Map.entry("s1", "docs:index.html"));
+    }
+
+    @Test
+    @DisplayName("Stored selections and cursor positions follow applied operations")
+    void selectionsFollowOperations() {
+        // Cursor of alice on line 2, column 2 of "ab\ncd"
+        service.userJoined("s1", "index.html", new UserInfoDTO("alice", "Alice", "#fff",
+                Map.of("lineNumber", 2, "column", 2), new SelectionInfo(List.of(new RangeInfo(4, 4)))));
+
+        // Someone inserts a new line at the start of the document
+        TextOperation op = new TextOperation().insert("zz\n").retain(5);
+        service.operationApplied("s1", "index.html", op, "zz\nab\ncd", 1);
+
+        UserInfoDTO alice = service.getActiveParticipantsForDocument("s1", "index.html", null).get(0);
+        assertThat(alice.getSelection().getRanges().get(0).getHead()).isEqualTo(7);
+        assertThat(alice.getCursorPosition()).containsEntry("lineNumber", 3).containsEntry("column", 2);
+    }
+
+    @Test
+    @DisplayName("Cursor-only positions are moved through the document's line index")
+    void cursorPositionsFollowOperations() {
+        service.userJoined("s1", "index.html", new UserInfoDTO("bob", "Bob", "#000",
+                Map.of("lineNumber", 2, "column", 3), null));
+        // First op builds the line index for "ab\ncd" (cursor after "cd")
+        service.operationApplied("s1", "index.html", new TextOperation().retain(5), "ab\ncd", 1);
+
+        // Insert "x\n" at the start of line 2
+        service.operationApplied("s1", "index.html", new TextOperation().retain(3).insert("x\n").retain(2), "ab\nx\ncd", 2);
+
+        UserInfoDTO bob = service.getActiveParticipantsForDocument("s1", "index.html", null).get(0);
+        assertThat(bob.getCursorPosition()).containsEntry("lineNumber", 3).containsEntry("column", 3);
+    }
+}
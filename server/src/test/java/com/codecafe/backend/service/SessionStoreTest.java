@@ -0,0 +1,108 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codecafe.backend.dto.SessionInfo;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+class SessionStoreTest {
+
+    private StringRedisTemplate redisTemplate;
+    private HashOperations<String, Object, Object> hashOperations;
+    private SessionStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(StringRedisTemplate.class);
+        hashOperations = mock(HashOperations.class);
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        store = new SessionStore(redisTemplate, mock(KeyExpiryService.class), 60_000, 60_000, 100, 168);
+    }
+
+    @Test
+    @DisplayName("A session created on another node is read from Redis once and then served from memory")
+    void readsThroughOnce() {
+        when(hashOperations.entries("session:info:s1"))
+                .thenReturn(Map.of("creatorName", "Ada", "createdAt", "1700000000000"));
+
+        SessionInfo first = store.find("s1");
+        SessionInfo second = store.find("s1");
+
+        assertThat(first.getCreatorName()).isEqualTo("Ada");
+        assertThat(first.getCreatedAt().toEpochMilli()).isEqualTo(1700000000000L);
+        assertThat(second).isSameAs(first);
+        verify(hashOperations, times(1)).entries("session:info:s1");
+    }
+
+    @Test
+    @DisplayName("Unknown ids are cached as missing instead of hitting Redis on every check")
+    void cachesUnknownIds() {
+        when(hashOperations.entries("session:info:nope")).thenReturn(Map.of());
+
+        assertThat(store.exists("nope")).isFalse();
+        assertThat(store.exists("nope")).isFalse();
+
+        verify(hashOperations, times(1)).entries("session:info:nope");
+    }
+
+    @Test
+    @DisplayName("A created session is stored in Redis and known locally without a read")
+    void createdSessionIsCached() {
+        store.create("s2", "Grace");
+
+        assertThat(store.find("s2").getCreatorName()).isEqualTo("Grace");
+        verify(hashOperations).putAll(eq("session:info:s2"), anyMap());
+        verify(hashOperations, never()).entries("session:info:s2");
+    }
+
+    @Test
+    @DisplayName("Redis errors propagate instead of looking like a missing session, and are not cached")
+    void doesNotCacheErrors() {
+        when(hashOperations.entries("session:info:s3"))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(Map.of("creatorName", "Linus", "createdAt", "0"));
+
+        assertThatThrownBy(() -> store.find("s3")).isInstanceOf(RedisConnectionFailureException.class);
+        assertThat(store.find("s3")).isNotNull();
+    }
+
+    @Test
+    @DisplayName("A full cache evicts its oldest entries instead of dropping every valid one")
+    void evictsOldestWhenFull() {
+        store = new SessionStore(redisTemplate, mock(KeyExpiryService.class), 60_000, 60_000, 10, 168);
+        for (int i = 0; i < 11; i++) {
+            store.create("s" + i, "user" + i);
+            sleepUntilNextMilli();
+        }
+
+        store.find("s1");
+        store.find("s10");
+        store.find("s0");
+
+        verify(hashOperations).entries("session:info:s0");
+        verify(hashOperations, never()).entries("session:info:s1");
+        verify(hashOperations, never()).entries("session:info:s10");
+    }
+
+    private static void sleepUntilNextMilli() {
+        long now = System.currentTimeMillis();
+        while (System.currentTimeMillis() == now) {
+            Thread.onSpinWait();
+        }
+    }
+}
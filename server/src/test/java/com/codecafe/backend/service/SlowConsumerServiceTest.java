@@ -0,0 +1,130 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codecafe.backend.dto.ResyncRequiredMessage;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class SlowConsumerServiceTest {
+
+    private static final String CONNECTION = "ws-1";
+    private static final String OPS_TOPIC = "/topic/sessions/s1/operations/document/index.html";
+
+    private OtService otService;
+    private SimpMessagingTemplate messagingTemplate;
+    private SlowConsumerService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        otService = mock(OtService.class);
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(messagingTemplate);
+        when(otService.getRevision("s1", "index.html")).thenReturn(17);
+        service = new SlowConsumerService(true, 3, otService, provider, Runnable::run);
+        service.connectionOpened(CONNECTION);
+    }
+
+    @Test
+    @DisplayName("Operation frames are dropped and one resync marker is sent once the backlog limit is reached")
+    void dropsOperationsPastLimit() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isTrue();
+        }
+
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isFalse();
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isFalse();
+
+        ArgumentCaptor<Object> marker = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(1)).convertAndSendToUser(eq(CONNECTION), eq("/queue/resync"), marker.capture(), any(MessageHeaders.class));
+        ResyncRequiredMessage resync = (ResyncRequiredMessage) marker.getValue();
+        assertThat(resync.getDocumentId()).isEqualTo("index.html");
+        assertThat(resync.getRevision()).isEqualTo(17);
+    }
+
+    @Test
+    @DisplayName("Non-operation frames are never dropped")
+    void keepsOtherFrames() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(service.beforeSend(CONNECTION, "/topic/sessions/s1/chat")).isTrue();
+        }
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isFalse();
+        assertThat(service.beforeSend(CONNECTION, "/topic/sessions/s1/chat")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Written frames drain the backlog and resume re-enables delivery")
+    void drainAndResume() {
+        for (int i = 0; i < 3; i++) {
+            service.beforeSend(CONNECTION, OPS_TOPIC);
+        }
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isFalse();
+
+        for (int i = 0; i < 3; i++) {
+            service.frameWritten(CONNECTION);
+        }
+        // Still suspended until the client asks for a fresh state
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isFalse();
+
+        service.resume(CONNECTION, "s1", "index.html");
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isTrue();
+    }
+
+    @Test
+    @DisplayName("Frames that are never sent leave the backlog, and closed connections are not tracked")
+    void releasesUnsentFrames() {
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isTrue();
+            service.frameNotSent(CONNECTION);
+        }
+        assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isTrue();
+
+        service.connectionClosed(CONNECTION);
+        for (int i = 0; i < 10; i++) {
+            assertThat(service.beforeSend(CONNECTION, OPS_TOPIC)).isTrue();
+        }
+        verify(messagingTemplate, never()).convertAndSendToUser(any(), any(), any(), any(MessageHeaders.class));
+    }
+
+    @Test
+    @DisplayName("The resync marker is sent from the resync executor, not the calling thread")
+    @SuppressWarnings("unchecked")
+    void sendsResyncOffCallingThread() {
+        List<Runnable> scheduled = new ArrayList<>();
+        ObjectProvider<SimpMessagingTemplate> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(messagingTemplate);
+        SlowConsumerService deferred = new SlowConsumerService(true, 0, otService, provider, scheduled::add);
+        deferred.connectionOpened(CONNECTION);
+
+        assertThat(deferred.beforeSend(CONNECTION, OPS_TOPIC)).isFalse();
+        verify(otService, never()).getRevision(any(), any());
+
+        scheduled.forEach(Runnable::run);
+        verify(messagingTemplate).convertAndSendToUser(eq(CONNECTION), eq("/queue/resync"), any(), any(MessageHeaders.class));
+    }
+
+    @Test
+    @DisplayName("Disabled service lets everything through")
+    @SuppressWarnings("unchecked")
+    void disabled() {
+        SlowConsumerService disabled = new SlowConsumerService(false, 0, otService, mock(ObjectProvider.class), Runnable::run);
+        assertThat(disabled.beforeSend(CONNECTION, OPS_TOPIC)).isTrue();
+        verify(messagingTemplate, never()).convertAndSendToUser(any(), any(), any(), any(MessageHeaders.class));
+    }
+}
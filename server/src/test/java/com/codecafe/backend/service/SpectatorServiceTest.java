@@ -0,0 +1,113 @@
+package com.codecafe.backend.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.codecafe.backend.dto.SpectatorUpdate;
+import com.codecafe.backend.dto.TextOperation;
+import com.codecafe.backend.util.OtUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+class SpectatorServiceTest {
+
+    private SimpMessagingTemplate messagingTemplate;
+    private SpectatorService service;
+
+    @BeforeEach
+    void setUp() {
+        messagingTemplate = mock(SimpMessagingTemplate.class);
+        service = new SpectatorService(true, messagingTemplate);
+    }
+
+    @Test
+    @DisplayName("Operations between flushes reach spectators as one composed update")
+    void composesOperationsBetweenFlushes() {
+        service.spectatorJoined("conn-1", "s1", "index.html");
+        service.operationApplied("s1", "index.html", new TextOperation().insert("a"), "a", 5);
+        service.operationApplied("s1", "index.html", new TextOperation().retain(1).insert("b"), "ab", 6);
+        service.operationApplied("s1", "index.html", new TextOperation().retain(2).insert("c"), "abc", 7);
+
+        service.flush();
+        service.flush();
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(1)).convertAndSend(eq("/topic/sessions/s1/spectate/document/index.html"), sent.capture());
+        SpectatorUpdate update = (SpectatorUpdate) sent.getValue();
+        assertThat(update.getBaseRevision()).isEqualTo(4);
+        assertThat(update.getRevision()).isEqualTo(7);
+        assertThat(OtUtils.apply("", new TextOperation(update.getOperation()))).isEqualTo("abc");
+        assertThat(service.isSpectator("conn-1", "s1", "index.html")).isTrue();
+    }
+
+    @Test
+    @DisplayName("A composed update keeps the rest of an insert whose start a later op deleted")
+    void composesDeleteOfInsertStart() {
+        service.spectatorJoined("conn-1", "s1", "index.html");
+        service.operationApplied("s1", "index.html", new TextOperation().retain(2).insert("abc"), "xyabc", 5);
+        service.operationApplied("s1", "index.html", new TextOperation().retain(2).delete(1).retain(2), "xybc", 6);
+
+        service.flush();
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/sessions/s1/spectate/document/index.html"), sent.capture());
+        SpectatorUpdate update = (SpectatorUpdate) sent.getValue();
+        assertThat(OtUtils.apply("xy", new TextOperation(update.getOperation()))).isEqualTo("xybc");
+    }
+
+    @Test
+    @DisplayName("A connection is read-only only for the documents it spectates")
+    void spectatorStatusIsPerDocument() {
+        service.spectatorJoined("conn-1", "s1", "index.html");
+
+        assertThat(service.isSpectator("conn-1", "s1", "index.html")).isTrue();
+        assertThat(service.isSpectator("conn-1", "s1", "style.css")).isFalse();
+        assertThat(service.isSpectator("conn-1", "s2", "index.html")).isFalse();
+        assertThat(service.isSpectator("conn-2", "s1", "index.html")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Documents without spectators are not tracked")
+    void ignoresDocumentsWithoutSpectators() {
+        service.spectatorJoined("conn-1", "s1", "index.html");
+        service.connectionClosed("conn-1");
+        service.operationApplied("s1", "index.html", new TextOperation().insert("a"), "a", 1);
+
+        service.flush();
+
+        verify(messagingTemplate, never()).convertAndSend(anyString(), any(Object.class));
+        assertThat(service.isSpectator("conn-1", "s1", "index.html")).isFalse();
+    }
+
+    @Test
+    @DisplayName("After a spectator's state read, the next update starts exactly at the state's revision")
+    void updatesAlignWithStateRevision() {
+        service.spectatorJoined("conn-1", "s1", "index.html");
+        service.operationApplied("s1", "index.html", new TextOperation().insert("a"), "a", 5);
+        service.operationApplied("s1", "index.html", new TextOperation().retain(1).insert("b"), "ab", 6);
+
+        // A second spectator joins mid-interval; its state is read at revision 6
+        service.spectatorJoined("conn-2", "s1", "index.html");
+        service.flushDocument("s1", "index.html");
+        service.operationApplied("s1", "index.html", new TextOperation().retain(2).insert("c"), "abc", 7);
+        service.flush();
+
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, times(2)).convertAndSend(eq("/topic/sessions/s1/spectate/document/index.html"), sent.capture());
+        SpectatorUpdate flushed = (SpectatorUpdate) sent.getAllValues().get(0);
+        SpectatorUpdate next = (SpectatorUpdate) sent.getAllValues().get(1);
+        assertThat(flushed.getRevision()).isEqualTo(6);
+        assertThat(next.getBaseRevision()).isEqualTo(6);
+        assertThat(next.getRevision()).isEqualTo(7);
+        assertThat(OtUtils.apply("ab", new TextOperation(next.getOperation()))).isEqualTo("abc");
+    }
+}
@@ -0,0 +1,87 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.IncomingOperationPayload;
+import com.codecafe.backend.dto.TextOperation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactOperationCodecTest {
+
+    private IncomingOperationPayload payload(List<Object> ops) {
+        return new IncomingOperationPayload("client-1", 42, ops, "index.html", "session-1");
+    }
+
+    @Test
+    @DisplayName("Incoming payload survives an encode/decode round trip")
+    void incomingRoundTrip() {
+        TextOperation op = new TextOperation().retain(300).insert("héllo ✓ 😀").delete(17).retain(2);
+        IncomingOperationPayload original = payload(op.getOps());
+
+        IncomingOperationPayload decoded = CompactOperationCodec.decodeIncoming(CompactOperationCodec.encodeIncoming(original));
+
+        assertEquals("client-1", decoded.getClientId());
+        assertEquals("session-1", decoded.getSessionId());
+        assertEquals("index.html", decoded.getDocumentId());
+        assertEquals(42, decoded.getRevision());
+        assertEquals(op, new TextOperation(decoded.getOperation()), "Operation should be unchanged after round trip");
+    }
+
+    @Test
+    @DisplayName("Compact encoding is smaller than the JSON form for a typical keystroke")
+    void encodingIsCompact() {
+        TextOperation op = new TextOperation().retain(1234).insert("a").retain(5678);
+        byte[] encoded = CompactOperationCodec.encodeIncoming(payload(op.getOps()));
+        String json = "{\"clientId\":\"client-1\",\"revision\":42,\"operation\":[1234,\"a\",5678],"
+                + "\"documentId\":\"index.html\",\"sessionId\":\"session-1\"}";
+
+        assertTrue(encoded.length < json.getBytes(StandardCharsets.UTF_8).length / 2,
+                "Expected compact encoding to be well under half the JSON size, was " + encoded.length + " bytes");
+    }
+
+    @Test
+    @DisplayName("Broadcast encoding starts with the version and carries revision, ops and selection")
+    void broadcastEncoding() {
+        TextOperation op = new TextOperation().retain(3).delete(1);
+        Map<String, Object> selection = Map.of("ranges", List.of(Map.of("anchor", 2, "head", 4)));
+        byte[] encoded = CompactOperationCodec.encodeBroadcast("c", "s", "d", 7, op, selection);
+
+        // version, 3 one-byte strings (len + char), revision, op count, retain header, delete header,
+        // range count, anchor, head
+        assertArrayEquals(new byte[]{CompactOperationCodec.BROADCAST_VERSION, 1, 'c', 1, 's', 1, 'd', 7,
+                2, 3 << 2, (1 << 2) | 1, 1, 2, 4}, encoded);
+        byte[] withoutSelection = CompactOperationCodec.encodeBroadcast("c", "s", "d", 7, op, null);
+        byte[] expected = Arrays.copyOf(encoded, encoded.length - 2);
+        expected[expected.length - 1] = 0;
+        assertArrayEquals(expected, withoutSelection, "no selection encodes zero ranges");
+    }
+
+    @Test
+    @DisplayName("Decoding rejects truncated input")
+    void decodeRejectsTruncatedInput() {
+        byte[] encoded = CompactOperationCodec.encodeIncoming(payload(new TextOperation().retain(5).insert("abc").getOps()));
+        byte[] truncated = Arrays.copyOf(encoded, encoded.length - 1);
+
+        assertThrows(IllegalArgumentException.class, () -> CompactOperationCodec.decodeIncoming(truncated));
+    }
+
+    @Test
+    @DisplayName("Decoding rejects unknown versions and trailing bytes")
+    void decodeRejectsInvalidFraming() {
+        byte[] encoded = CompactOperationCodec.encodeIncoming(payload(new TextOperation().retain(5).getOps()));
+
+        byte[] wrongVersion = encoded.clone();
+        wrongVersion[0] = 9;
+        Exception versionError = assertThrows(IllegalArgumentException.class, () -> CompactOperationCodec.decodeIncoming(wrongVersion));
+        assertTrue(versionError.getMessage().contains("Unsupported compact operation version"));
+
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+        assertThrows(IllegalArgumentException.class, () -> CompactOperationCodec.decodeIncoming(trailing));
+    }
+}
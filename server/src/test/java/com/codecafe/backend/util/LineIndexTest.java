@@ -0,0 +1,91 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.TextOperation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineIndexTest {
+
+    // Reference conversion by scanning the text
+    private static int[] scanPosition(String text, int offset) {
+        int line = 1;
+        int lineStart = 0;
+        for (int i = 0; i < offset; i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+                lineStart = i + 1;
+            }
+        }
+        return new int[]{line, offset - lineStart + 1};
+    }
+
+    private static void assertMatches(String text, LineIndex index) {
+        assertEquals(text.length(), index.getLength(), "Indexed length");
+        assertEquals(text.split("\n", -1).length, index.getLineCount(), "Line count");
+        for (int offset = 0; offset <= text.length(); offset++) {
+            int[] expected = scanPosition(text, offset);
+            assertEquals(expected[0], index.lineNumberAt(offset), "Line of offset " + offset + " in " + text);
+            assertEquals(expected[1], index.columnAt(offset), "Column of offset " + offset + " in " + text);
+            assertEquals(offset, index.offsetAt(expected[0], expected[1]), "Round trip of offset " + offset);
+        }
+    }
+
+    @Test
+    @DisplayName("Conversions match a scan of the document, including empty and trailing lines")
+    void conversionsMatchScan() {
+        for (String text : new String[]{"", "a", "\n", "ab\ncd", "ab\ncd\n", "\n\nx\n\n"}) {
+            assertMatches(text, new LineIndex(text));
+        }
+    }
+
+    @Test
+    @DisplayName("Columns past the end of a line clamp to the line end")
+    void offsetAtClampsColumn() {
+        LineIndex index = new LineIndex("ab\ncdef\n");
+
+        assertEquals(2, index.offsetAt(1, 99), "Clamped before the newline of line 1");
+        assertEquals(3, index.offsetAt(2, 0), "Column below 1 clamps to line start");
+        assertEquals(8, index.offsetAt(42, 1), "Line past the end clamps to the last line");
+    }
+
+    @Test
+    @DisplayName("Index stays in sync with the document across random operations")
+    void staysInSyncWithRandomOperations() {
+        Random random = new Random(7);
+        String text = "first\nsecond\n\nthird";
+        LineIndex index = new LineIndex(text);
+
+        for (int round = 0; round < 300; round++) {
+            TextOperation op = new TextOperation();
+            int position = 0;
+            while (position < text.length()) {
+                int step = 1 + random.nextInt(Math.min(6, text.length() - position));
+                switch (random.nextInt(3)) {
+                    case 0 -> op.retain(step);
+                    case 1 -> op.delete(step);
+                    default -> op.insert(random.nextBoolean() ? "x\ny" : "\n").retain(step);
+                }
+                position += step;
+            }
+            if (random.nextBoolean()) {
+                op.insert("tail\n");
+            }
+
+            text = OtUtils.apply(text, op);
+            index.apply(op);
+            assertMatches(text, index);
+        }
+    }
+
+    @Test
+    @DisplayName("Applying an operation for a different document length is rejected")
+    void rejectsMismatchedOperation() {
+        LineIndex index = new LineIndex("abc");
+
+        assertThrows(IllegalArgumentException.class, () -> index.apply(new TextOperation().retain(5)));
+    }
+}
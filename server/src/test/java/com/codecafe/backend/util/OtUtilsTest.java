@@ -4,7 +4,9 @@ import com.codecafe.backend.dto.TextOperation; // Use your actual DTO
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -264,6 +266,66 @@ class OtUtilsTest {
         assertOpsEquals(expectedOp2Prime, result.get(1), "Op2' (delete) transformed incorrectly");
     }
 
+    @Test
+    @DisplayName("TransformIndex: inserts before or at the index push it right")
+    void transformIndexInsert() {
+        TextOperation op = createOp().retain(2).insert("xyz").retain(4); // "abcdef" -> "abxyzcdef"
+
+        assertEquals(1, OtUtils.transformIndex(1, op), "Index before the insert should not move");
+        assertEquals(5, OtUtils.transformIndex(2, op), "Index at the insert position should move past the inserted text");
+        assertEquals(9, OtUtils.transformIndex(6, op), "End of document should move by the insert length");
+    }
+
+    @Test
+    @DisplayName("TransformIndex: deletes around the index pull it to the deletion start")
+    void transformIndexDelete() {
+        TextOperation op = createOp().retain(1).delete(3).retain(2); // "abcdef" -> "aef"
+
+        assertEquals(1, OtUtils.transformIndex(1, op), "Index at the deletion start should not move");
+        assertEquals(1, OtUtils.transformIndex(3, op), "Index inside the deleted range should collapse to its start");
+        assertEquals(2, OtUtils.transformIndex(5, op), "Index after the deletion should shift left");
+    }
+
+    @Test
+    @DisplayName("ComposeAll: the parallel tree reduction equals the sequential fold")
+    void composeAllMatchesSequentialFold() {
+        Random random = new Random(42);
+        String doc = "initial document";
+        List<TextOperation> operations = new ArrayList<>();
+        String current = doc;
+        for (int i = 0; i < 1000; i++) {
+            int position = random.nextInt(current.length() + 1);
+            TextOperation op = createOp().retain(position);
+            if (random.nextBoolean() || current.length() == position) {
+                op.insert(String.valueOf((char) ('a' + random.nextInt(26)))).retain(current.length() - position);
+            } else {
+                op.delete(1).retain(current.length() - position - 1);
+            }
+            operations.add(op);
+            current = OtUtils.apply(current, op);
+        }
+
+        TextOperation sequential = operations.get(0);
+        for (int i = 1; i < operations.size(); i++) {
+            sequential = OtUtils.compose(sequential, operations.get(i));
+        }
+        TextOperation parallel = OtUtils.composeAll(operations);
+
+        assertOpsEquals(sequential, parallel, "Tree reduction should give the same operation");
+        assertEquals(current, OtUtils.apply(doc, parallel), "Composed op should produce the final document");
+        assertNull(OtUtils.composeAll(List.of()), "Nothing to compose");
+    }
+
+    @Test
+    @DisplayName("Compose: deleting the start of an insert keeps the rest of the insert")
+    void composeDeleteStartOfInsert() {
+        TextOperation insert = createOp().insert("abc");
+        TextOperation deleteFirst = createOp().delete(1).retain(2);
+
+        TextOperation composed = OtUtils.compose(insert, deleteFirst);
+
+        assertEquals("bc", OtUtils.apply("", composed));
+    }
 
     // Add more tests here, focusing on cases revealed by your failing stress tests if possible.
     // Consider cases with multiple ops (retain, insert, delete) within a single TextOperation.
@@ -0,0 +1,72 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.RangeInfo;
+import com.codecafe.backend.dto.SelectionInfo;
+import com.codecafe.backend.dto.UserInfoDTO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PresenceCodecTest {
+
+    @Test
+    @DisplayName("Info and cursor fields survive an encode/decode round trip")
+    void roundTrip() {
+        UserInfoDTO user = new UserInfoDTO("u-1", "Ada: the 1st", "#ff00aa",
+                Map.of("lineNumber", 12, "column", 4),
+                new SelectionInfo(List.of(new RangeInfo(10, 10), new RangeInfo(3, 8))));
+        Map<String, String> fields = Map.of(
+                PresenceCodec.infoField("u-1"), PresenceCodec.encodeInfo(user),
+                PresenceCodec.cursorField("u-1"), PresenceCodec.encodeCursor(user.getCursorPosition(), user.getSelection()));
+
+        UserInfoDTO decoded = PresenceCodec.decode(fields).get("u-1");
+
+        assertEquals("Ada: the 1st", decoded.getName());
+        assertEquals("#ff00aa", decoded.getColor());
+        assertEquals(12, decoded.getCursorPosition().get("lineNumber"));
+        assertEquals(4, decoded.getCursorPosition().get("column"));
+        assertEquals(2, decoded.getSelection().getRanges().size());
+        assertEquals(3, decoded.getSelection().getRanges().get(1).getAnchor());
+        assertEquals(8, decoded.getSelection().getRanges().get(1).getHead());
+    }
+
+    @Test
+    @DisplayName("Missing cursor or selection decode as null")
+    void missingCursorAndSelection() {
+        assertEquals("", PresenceCodec.encodeCursor(null, null));
+        assertEquals("1,1", PresenceCodec.encodeCursor(Map.of("lineNumber", 1, "column", 1), null));
+
+        Map<String, String> fields = Map.of(
+                PresenceCodec.infoField("a"), "1:A#000",
+                PresenceCodec.cursorField("a"), "",
+                PresenceCodec.infoField("b"), "1:B#111");
+        Map<String, UserInfoDTO> users = PresenceCodec.decode(fields);
+
+        assertEquals(2, users.size());
+        assertNull(users.get("a").getCursorPosition());
+        assertNull(users.get("a").getSelection());
+        assertNull(users.get("b").getCursorPosition());
+    }
+
+    @Test
+    @DisplayName("Legacy, orphaned and malformed fields never break decoding")
+    void ignoresUnknownFields() {
+        Map<String, String> fields = new HashMap<>();
+        fields.put("alice", "{\"@class\":\"com.codecafe.backend.dto.UserInfoDTO\",\"id\":\"alice\"}");
+        fields.put(PresenceCodec.cursorField("ghost"), "1,1");
+        fields.put(PresenceCodec.infoField("broken"), "99:x");
+        fields.put(PresenceCodec.infoField("bob"), "3:Bob#123");
+        fields.put(PresenceCodec.cursorField("bob"), "x,y|1");
+
+        Map<String, UserInfoDTO> users = PresenceCodec.decode(fields);
+
+        assertEquals(1, users.size());
+        assertEquals("Bob", users.get("bob").getName());
+        assertNull(users.get("bob").getCursorPosition());
+    }
+}
@@ -0,0 +1,79 @@
+package com.codecafe.backend.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    @Test
+    @DisplayName("Concurrent loads of one key share a single loader call and its result")
+    void concurrentLoadsShareOneCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = executor.submit(() -> singleFlight.load("s1/index.html", () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                awaitQuietly(release);
+                return "snapshot";
+            }));
+            assertTrue(loaderStarted.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(executor.submit(() -> singleFlight.load("s1/index.html", () -> {
+                    loads.incrementAndGet();
+                    return "own";
+                })));
+            }
+            // Followers are parked on the leader's load
+            Thread.sleep(50);
+            release.countDown();
+
+            assertEquals("snapshot", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                String result = follower.get(5, TimeUnit.SECONDS);
+                // A follower that only arrived after the leader finished loads on its own
+                assertTrue(result.equals("snapshot") || result.equals("own"));
+            }
+            assertTrue(loads.get() < 8, "Expected loads to be coalesced, got " + loads.get());
+            assertEquals(0, singleFlight.inFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("A failed load is not remembered")
+    void failuresAreNotCached() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        assertThrows(IllegalStateException.class, () -> singleFlight.load("k", () -> {
+            throw new IllegalStateException("redis down");
+        }));
+        assertEquals("loaded", singleFlight.load("k", () -> "loaded"));
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
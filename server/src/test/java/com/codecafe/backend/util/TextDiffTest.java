@@ -0,0 +1,59 @@
+package com.codecafe.backend.util;
+
+import com.codecafe.backend.dto.TextOperation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextDiffTest {
+
+    private static String randomEdit(Random random, String text, int edits) {
+        StringBuilder builder = new StringBuilder(text);
+        for (int i = 0; i < edits; i++) {
+            int position = random.nextInt(builder.length() + 1);
+            if (random.nextBoolean() || position == builder.length()) {
+                builder.insert(position, (char) ('a' + random.nextInt(4)));
+            } else {
+                builder.deleteCharAt(position);
+            }
+        }
+        return builder.toString();
+    }
+
+    @Test
+    @DisplayName("The diff turns the old text into the new one")
+    void diffAppliesToNewText() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            String oldText = randomEdit(random, "", random.nextInt(60));
+            String newText = randomEdit(random, oldText, random.nextInt(20));
+
+            TextOperation operation = TextDiff.diff(oldText, newText, 1000);
+
+            assertEquals(oldText.length(), operation.getBaseLength());
+            assertEquals(newText, OtUtils.apply(oldText, operation), "Round " + round);
+        }
+    }
+
+    @Test
+    @DisplayName("A small change gives a small operation")
+    void smallChangeGivesMinimalOperation() {
+        TextOperation operation = TextDiff.diff("line one\nline two\nline three\n", "line one\nline 2\nline three\n", 1000);
+
+        assertEquals(List.of(14, "2", -3, 12), operation.getOps());
+        assertTrue(TextDiff.diff("same", "same", 1000).isNoop());
+    }
+
+    @Test
+    @DisplayName("Above the edit distance limit the changed region is replaced as a whole")
+    void fallsBackToReplacingTheChangedRegion() {
+        TextOperation operation = TextDiff.diff("<abcd>", "<xbyd>", 1);
+
+        assertEquals(List.of(1, "xby", -3, 2), operation.getOps());
+        assertEquals("<xbyd>", OtUtils.apply("<abcd>", operation));
+    }
+}